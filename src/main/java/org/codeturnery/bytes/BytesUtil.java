@@ -80,6 +80,37 @@ public class BytesUtil {
 		assert inputStream.read(new byte[1]) == -1 : "missing bytes?";
 	}
 
+	/**
+	 * Read the given stream until it is empty and fill the given
+	 * {@link MessageDigest} instance with all data read.
+	 * <p>
+	 * In contrast to {@link #readInto(InputStream, byte[], MessageDigest)} the
+	 * stream may contain more or less data than the buffer can hold, the buffer is
+	 * only used as intermediate storage and reused for each read. This allows to
+	 * digest streams of any length using a single (e.g. pooled) buffer.
+	 * 
+	 * @param inputStream   the stream to read data from
+	 * @param buffer        the buffer to read the data into before passing it to
+	 *                      the digest, must not be empty
+	 * @param messageDigest the digest to fill with the data read from the stream
+	 * @return the number of bytes read from the stream
+	 * @throws IOException thrown if reading from the stream fails for some reason
+	 */
+	public static long updateDigest(final InputStream inputStream, final byte[] buffer,
+			final MessageDigest messageDigest) throws IOException {
+		if (buffer.length == 0) {
+			throw new IllegalArgumentException("given buffer is empty");
+		}
+		long totalLengthRead = 0;
+		int lastLengthRead;
+		while ((lastLengthRead = inputStream.read(buffer, 0, buffer.length)) != -1) {
+			assert lastLengthRead <= buffer.length : lastLengthRead + " is bigger than " + buffer.length;
+			messageDigest.update(buffer, 0, lastLengthRead);
+			totalLengthRead += lastLengthRead;
+		}
+		return totalLengthRead;
+	}
+
 	/**
 	 * 
 	 * @param digest            {@link MessageDigest} to use for the calculation.
@@ -0,0 +1,199 @@
+package org.codeturnery.primitives;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Map from objects to primitive values, using open addressing with linear
+ * probing. This class manages the keys, subclasses store the values in an
+ * array of the primitive type, in the same slots as the keys.
+ * <p>
+ * The keys are compared using {@link Object#equals(Object)} and
+ * {@link Object#hashCode()}.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ * @param <K> the type of the keys
+ */
+abstract class AbstractObjectKeyMap<K> {
+	/**
+	 * The capacity used if no expected size is given.
+	 */
+	static final int MIN_CAPACITY = 8;
+	private static final int NO_SLOT = -1;
+
+	/**
+	 * The keys, <code>null</code> for free slots. The length is always a power of
+	 * two.
+	 */
+	private @Nullable Object[] keys;
+	private int size = 0;
+
+	/**
+	 * @param expectedSize the number of keys that can be added before the
+	 *                     internal arrays need to grow
+	 */
+	AbstractObjectKeyMap(final int expectedSize) {
+		this.keys = new @Nullable Object[PrimitiveHashing.capacityFor(expectedSize, MIN_CAPACITY)];
+	}
+
+	/**
+	 * @return the number of keys in this map
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return <code>true</code> if this map contains no keys
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * @param key the key to look for
+	 * @return <code>true</code> if a value is stored for the given key
+	 */
+	public boolean containsKey(final K key) {
+		return findSlot(key) >= 0;
+	}
+
+	/**
+	 * Remove the given key and its value.
+	 * <p>
+	 * The following entries of the probing sequence are shifted back, so that no
+	 * deletion markers are needed and lookups stay as fast as before.
+	 *
+	 * @param key the key to remove
+	 * @return <code>true</code> if the key was present
+	 */
+	public boolean remove(final K key) {
+		int slot = findSlot(key);
+		if (slot < 0) {
+			return false;
+		}
+		final int mask = this.keys.length - 1;
+		int nextSlot = slot;
+		while (true) {
+			nextSlot = (nextSlot + 1) & mask;
+			final @Nullable Object nextKey = this.keys[nextSlot];
+			if (nextKey == null) {
+				break;
+			}
+			final int idealSlot = PrimitiveHashing.mix(nextKey.hashCode()) & mask;
+			// move the entry back if its ideal slot is not between the freed slot and its
+			// current slot (cyclically)
+			if (((nextSlot - idealSlot) & mask) >= ((nextSlot - slot) & mask)) {
+				this.keys[slot] = nextKey;
+				moveValue(nextSlot, slot);
+				slot = nextSlot;
+			}
+		}
+		this.keys[slot] = null;
+		this.size--;
+		return true;
+	}
+
+	/**
+	 * Remove all keys.
+	 */
+	public void clear() {
+		Arrays.fill(this.keys, null);
+		this.size = 0;
+	}
+
+	/**
+	 * @return the number of slots, i.e. the length of the value array needed
+	 */
+	final int getCapacity() {
+		return this.keys.length;
+	}
+
+	/**
+	 * @param slot the slot to get the key of
+	 * @return the key in the given slot, <code>null</code> if the slot is free
+	 */
+	@SuppressWarnings("unchecked")
+	final @Nullable K getKey(final int slot) {
+		return (K) this.keys[slot];
+	}
+
+	/**
+	 * @return the slot of the given key, <code>-1</code> if not present
+	 */
+	final int findSlot(final Object key) {
+		final int mask = this.keys.length - 1;
+		for (int slot = PrimitiveHashing.mix(key.hashCode()) & mask;; slot = (slot + 1) & mask) {
+			final @Nullable Object slotKey = this.keys[slot];
+			if (slotKey == null) {
+				return NO_SLOT;
+			}
+			if (slotKey == key || slotKey.equals(key)) {
+				return slot;
+			}
+		}
+	}
+
+	/**
+	 * Add the given key, which must not be present yet, growing the table if
+	 * needed.
+	 *
+	 * @return the slot the key was placed in, for the value to be stored in
+	 */
+	final int insert(final Object key) {
+		if (PrimitiveHashing.needsGrowth(this.size + 1, this.keys.length)) {
+			rehash(this.keys.length * 2);
+		}
+		final int slot = findFreeSlot(this.keys, key);
+		this.keys[slot] = key;
+		this.size++;
+		return slot;
+	}
+
+	/**
+	 * Move the value of the given slot to another one, as its key was moved.
+	 *
+	 * @param fromSlot the slot to move the value from
+	 * @param toSlot   the slot to move the value to
+	 */
+	abstract void moveValue(int fromSlot, int toSlot);
+
+	/**
+	 * Replace the values with an array of the given length, moving each value to
+	 * the new slot of its key.
+	 *
+	 * @param capacity the length of the new array
+	 * @param newSlots the new slot for each old slot, <code>-1</code> for free
+	 *                 slots
+	 */
+	abstract void rehashValues(int capacity, int[] newSlots);
+
+	private void rehash(final int capacity) {
+		final @Nullable Object[] oldKeys = this.keys;
+		final var newKeys = new @Nullable Object[capacity];
+		final var newSlots = new int[oldKeys.length];
+		for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+			final @Nullable Object key = oldKeys[oldSlot];
+			if (key == null) {
+				newSlots[oldSlot] = NO_SLOT;
+			} else {
+				final int slot = findFreeSlot(newKeys, key);
+				newKeys[slot] = key;
+				newSlots[oldSlot] = slot;
+			}
+		}
+		this.keys = newKeys;
+		rehashValues(capacity, newSlots);
+	}
+
+	private static int findFreeSlot(final @Nullable Object[] keys, final Object key) {
+		final int mask = keys.length - 1;
+		int slot = PrimitiveHashing.mix(key.hashCode()) & mask;
+		while (keys[slot] != null) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+}
@@ -0,0 +1,487 @@
+package org.codeturnery.primitives;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.codeturnery.typesystem.Iterables;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Map from primitive keys to multiple values each, storing the keys as
+ * <code>long</code> values. Subclasses provide the methods for a specific key
+ * type.
+ * <p>
+ * The distinct keys are stored in insertion order in parallel arrays and found
+ * via an open addressing table. The values of all keys are stored in a single
+ * shared array, with the values of each key chained via an array of indexes.
+ * Thus adding a value neither boxes the key nor allocates a list or entry
+ * object; lists are only created when the values of a key are requested.
+ * <p>
+ * Keys and values are iterated in the order they were added. A key whose values
+ * were all removed is removed as well, hence it is iterated last if it is added
+ * again.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ * @param <K> the boxed type of the keys, used in the {@link #asMap()} view
+ * @param <V> the type of the values
+ */
+abstract class AbstractPrimitiveMultimap<K, V> {
+	/**
+	 * The capacity used if no expected size is given.
+	 */
+	static final int MIN_CAPACITY = 8;
+	private static final int NO_ENTRY = -1;
+
+	/**
+	 * The open addressing table, containing the index of a key in {@link #keys}
+	 * plus one, <code>0</code> for free slots. The length is always a power of
+	 * two.
+	 */
+	private int[] table;
+	/**
+	 * The distinct keys in insertion order. Keys whose values were all removed
+	 * are removed from the {@link #table} immediately, but stay in the array and
+	 * are skipped on iteration until the next compaction.
+	 */
+	private long[] keys;
+	/**
+	 * The index of the first entry of each key in {@link #values}.
+	 */
+	private int[] firstEntries;
+	/**
+	 * The index of the last entry of each key in {@link #values}, to append values
+	 * without walking the chain.
+	 */
+	private int[] lastEntries;
+	/**
+	 * The number of values of each key.
+	 */
+	private int[] valueCounts;
+	/**
+	 * The number of used slots of {@link #keys}, including removed keys not
+	 * compacted yet.
+	 */
+	private int keyCount = 0;
+	/**
+	 * The number of keys with at least one value.
+	 */
+	private int nonEmptyKeyCount = 0;
+
+	/**
+	 * The values of all keys, <code>null</code> for removed entries.
+	 */
+	private @Nullable Object[] values;
+	/**
+	 * The index of the next entry of the same key for each entry, or
+	 * {@link #NO_ENTRY}.
+	 */
+	private int[] nextEntries;
+	private int entryCount = 0;
+	/**
+	 * The number of values currently stored.
+	 */
+	private int size = 0;
+
+	/**
+	 * @param expectedSize the number of values that can be added before the
+	 *                     internal arrays need to grow
+	 */
+	AbstractPrimitiveMultimap(final int expectedSize) {
+		final int capacity = PrimitiveHashing.capacityFor(expectedSize, MIN_CAPACITY);
+		this.table = new int[capacity];
+		this.keys = new long[capacity / 2];
+		this.firstEntries = new int[capacity / 2];
+		this.lastEntries = new int[capacity / 2];
+		this.valueCounts = new int[capacity / 2];
+		this.values = new @Nullable Object[capacity / 2];
+		this.nextEntries = new int[capacity / 2];
+	}
+
+	/**
+	 * @return the number of values in this instance
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return the number of distinct keys with at least one value
+	 */
+	public int keyCount() {
+		return this.nonEmptyKeyCount;
+	}
+
+	/**
+	 * @return a stream of new lists, each containing the values of a key with at
+	 *         least one value, in the order the keys were added
+	 */
+	@SuppressWarnings("null")
+	public Stream<List<V>> valueLists() {
+		return IntStream.range(0, this.keyCount).filter(keyIndex -> this.valueCounts[keyIndex] > 0)
+				.mapToObj(this::getValuesAt);
+	}
+
+	/**
+	 * Provides a read-only {@link Map} view of this instance. Each access to a
+	 * value of the map creates a new list.
+	 *
+	 * @return the view, reflecting later changes of this instance
+	 */
+	public Map<K, List<V>> asMap() {
+		return new MapView();
+	}
+
+	/**
+	 * @param key the key to box
+	 * @return the given key as instance of the key type of this instance
+	 */
+	abstract K box(long key);
+
+	/**
+	 * @param key the object to check
+	 * @return the given object as <code>long</code> key, <code>null</code> if it
+	 *         is not an instance of the key type of this instance
+	 */
+	abstract @Nullable Long unbox(@Nullable Object key);
+
+	/**
+	 * @param key the key to look for
+	 * @return <code>true</code> if at least one value is stored for the given key
+	 */
+	final boolean containsKeyValues(final long key) {
+		final int keyIndex = findKeyIndex(key);
+		return keyIndex >= 0 && this.valueCounts[keyIndex] > 0;
+	}
+
+	/**
+	 * @param key the key to get the number of values for
+	 * @return the number of values stored for the given key
+	 */
+	final int getKeyValueCount(final long key) {
+		final int keyIndex = findKeyIndex(key);
+		return keyIndex < 0 ? 0 : this.valueCounts[keyIndex];
+	}
+
+	/**
+	 * Add the given value to the values of the given key.
+	 *
+	 * @param key   the key to add the value for
+	 * @param value the value to add
+	 */
+	final void addValue(final long key, final V value) {
+		int keyIndex = findKeyIndex(key);
+		if (keyIndex < 0) {
+			keyIndex = insertKey(key);
+		}
+		if (this.entryCount == this.values.length) {
+			growEntries();
+		}
+		final int entry = this.entryCount++;
+		this.values[entry] = value;
+		this.nextEntries[entry] = NO_ENTRY;
+		if (this.valueCounts[keyIndex] == 0) {
+			this.firstEntries[keyIndex] = entry;
+			this.nonEmptyKeyCount++;
+		} else {
+			this.nextEntries[this.lastEntries[keyIndex]] = entry;
+		}
+		this.lastEntries[keyIndex] = entry;
+		this.valueCounts[keyIndex]++;
+		this.size++;
+	}
+
+	/**
+	 * Remove the first value of the given key that is
+	 * {@link Object#equals(Object) equal} to the given value.
+	 *
+	 * @param key   the key to remove the value from
+	 * @param value the value to remove
+	 * @return <code>true</code> if the value was found and removed
+	 */
+	final boolean removeValue(final long key, final Object value) {
+		final int keyIndex = findKeyIndex(key);
+		if (keyIndex < 0 || this.valueCounts[keyIndex] == 0) {
+			return false;
+		}
+		int previousEntry = NO_ENTRY;
+		for (int entry = this.firstEntries[keyIndex]; entry != NO_ENTRY; entry = this.nextEntries[entry]) {
+			if (value.equals(this.values[entry])) {
+				final int nextEntry = this.nextEntries[entry];
+				if (previousEntry == NO_ENTRY) {
+					this.firstEntries[keyIndex] = nextEntry;
+				} else {
+					this.nextEntries[previousEntry] = nextEntry;
+				}
+				if (this.lastEntries[keyIndex] == entry) {
+					this.lastEntries[keyIndex] = previousEntry;
+				}
+				this.values[entry] = null;
+				this.size--;
+				if (--this.valueCounts[keyIndex] == 0) {
+					this.nonEmptyKeyCount--;
+					removeFromTable(key);
+				}
+				// avoid accumulating removed entries and keys in long running instances
+				if (this.entryCount > MIN_CAPACITY && this.size < this.entryCount / 2
+						|| this.keyCount > MIN_CAPACITY && this.nonEmptyKeyCount < this.keyCount / 2) {
+					compact();
+				}
+				return true;
+			}
+			previousEntry = entry;
+		}
+		return false;
+	}
+
+	/**
+	 * Get the values of the given key.
+	 *
+	 * @param key the key to get the values for
+	 * @return a new list containing the values of the given key in insertion
+	 *         order, an empty list if the key is not present
+	 */
+	final List<V> getValues(final long key) {
+		final int keyIndex = findKeyIndex(key);
+		return keyIndex < 0 ? Iterables.emptyList() : getValuesAt(keyIndex);
+	}
+
+	/**
+	 * Pass the values of each key with at least one value to the given consumer,
+	 * in the order the keys were added.
+	 *
+	 * @param consumer called with a new list containing the values of a key and
+	 *                 the key itself
+	 */
+	final void forEachKey(final ObjLongConsumer<List<V>> consumer) {
+		for (int keyIndex = 0; keyIndex < this.keyCount; keyIndex++) {
+			if (this.valueCounts[keyIndex] > 0) {
+				consumer.accept(getValuesAt(keyIndex), this.keys[keyIndex]);
+			}
+		}
+	}
+
+	/**
+	 * @return a new list containing the values of the key with the given index
+	 */
+	@SuppressWarnings("unchecked")
+	private List<V> getValuesAt(final int keyIndex) {
+		final var result = new ArrayList<V>(this.valueCounts[keyIndex]);
+		if (this.valueCounts[keyIndex] > 0) {
+			for (int entry = this.firstEntries[keyIndex]; entry != NO_ENTRY; entry = this.nextEntries[entry]) {
+				result.add((V) this.values[entry]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the index of the given key in {@link #keys}, <code>-1</code> if not
+	 *         present
+	 */
+	private int findKeyIndex(final long key) {
+		final int slot = findSlot(key);
+		return slot < 0 ? -1 : this.table[slot] - 1;
+	}
+
+	/**
+	 * @return the slot of the given key in {@link #table}, <code>-1</code> if not
+	 *         present
+	 */
+	private int findSlot(final long key) {
+		final int mask = this.table.length - 1;
+		for (int slot = PrimitiveHashing.mix(key) & mask;; slot = (slot + 1) & mask) {
+			final int keyIndex = this.table[slot] - 1;
+			if (keyIndex < 0) {
+				return -1;
+			}
+			if (this.keys[keyIndex] == key) {
+				return slot;
+			}
+		}
+	}
+
+	/**
+	 * Remove the given key, which must be present, from {@link #table}. The
+	 * following keys of the same cluster are shifted back into the freed slot if
+	 * their own slot allows it, so that no key becomes unreachable.
+	 */
+	private void removeFromTable(final long key) {
+		final int mask = this.table.length - 1;
+		int freeSlot = findSlot(key);
+		for (int slot = (freeSlot + 1) & mask; this.table[slot] != 0; slot = (slot + 1) & mask) {
+			final int homeSlot = PrimitiveHashing.mix(this.keys[this.table[slot] - 1]) & mask;
+			// the key may be moved if its home slot is not within (freeSlot, slot],
+			// taking the wrap around at the end of the table into account
+			if (((slot - homeSlot) & mask) >= ((slot - freeSlot) & mask)) {
+				this.table[freeSlot] = this.table[slot];
+				freeSlot = slot;
+			}
+		}
+		this.table[freeSlot] = 0;
+	}
+
+	/**
+	 * Add the given key, which must not be present yet, without any values.
+	 *
+	 * @return the index of the key in {@link #keys}
+	 */
+	private int insertKey(final long key) {
+		if (PrimitiveHashing.needsGrowth(this.keyCount + 1, this.table.length)) {
+			rehash(this.table.length * 2);
+		}
+		if (this.keyCount == this.keys.length) {
+			final int newLength = this.table.length / 2;
+			this.keys = Arrays.copyOf(this.keys, newLength);
+			this.firstEntries = Arrays.copyOf(this.firstEntries, newLength);
+			this.lastEntries = Arrays.copyOf(this.lastEntries, newLength);
+			this.valueCounts = Arrays.copyOf(this.valueCounts, newLength);
+		}
+		final int keyIndex = this.keyCount++;
+		this.keys[keyIndex] = key;
+		this.valueCounts[keyIndex] = 0;
+		placeInTable(this.table, key, keyIndex);
+		return keyIndex;
+	}
+
+	private void rehash(final int capacity) {
+		final var newTable = new int[capacity];
+		for (int keyIndex = 0; keyIndex < this.keyCount; keyIndex++) {
+			if (this.valueCounts[keyIndex] > 0) {
+				placeInTable(newTable, this.keys[keyIndex], keyIndex);
+			}
+		}
+		this.table = newTable;
+	}
+
+	private static void placeInTable(final int[] table, final long key, final int keyIndex) {
+		final int mask = table.length - 1;
+		int slot = PrimitiveHashing.mix(key) & mask;
+		while (table[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = keyIndex + 1;
+	}
+
+	private void growEntries() {
+		if (this.values.length >= PrimitiveHashing.MAX_CAPACITY) {
+			throw new IllegalStateException("Maximum capacity reached: " + this.size);
+		}
+		final int newLength = this.values.length * 2;
+		this.values = Arrays.copyOf(this.values, newLength);
+		this.nextEntries = Arrays.copyOf(this.nextEntries, newLength);
+	}
+
+	/**
+	 * Move the remaining keys and values to the start of the arrays, removing the
+	 * gaps left by removed keys and values. The order of the keys is kept and the
+	 * values of each key are placed consecutively.
+	 */
+	private void compact() {
+		final var newValues = new @Nullable Object[this.values.length];
+		final var newNextEntries = new int[this.nextEntries.length];
+		int newEntryCount = 0;
+		int newKeyCount = 0;
+		for (int keyIndex = 0; keyIndex < this.keyCount; keyIndex++) {
+			final int valueCount = this.valueCounts[keyIndex];
+			if (valueCount == 0) {
+				continue;
+			}
+			final int oldFirstEntry = this.firstEntries[keyIndex];
+			this.keys[newKeyCount] = this.keys[keyIndex];
+			this.valueCounts[newKeyCount] = valueCount;
+			this.firstEntries[newKeyCount] = newEntryCount;
+			for (int entry = oldFirstEntry; entry != NO_ENTRY; entry = this.nextEntries[entry]) {
+				newValues[newEntryCount] = this.values[entry];
+				newNextEntries[newEntryCount] = newEntryCount + 1;
+				newEntryCount++;
+			}
+			newNextEntries[newEntryCount - 1] = NO_ENTRY;
+			this.lastEntries[newKeyCount] = newEntryCount - 1;
+			newKeyCount++;
+		}
+		this.values = newValues;
+		this.nextEntries = newNextEntries;
+		this.entryCount = newEntryCount;
+		this.keyCount = newKeyCount;
+		// the key indexes changed
+		rehash(this.table.length);
+	}
+
+	/**
+	 * Read-only view of the keys with at least one value.
+	 */
+	private class MapView extends AbstractMap<K, List<V>> {
+		@Override
+		public int size() {
+			return AbstractPrimitiveMultimap.this.nonEmptyKeyCount;
+		}
+
+		@Override
+		public boolean containsKey(final @Nullable Object key) {
+			final @Nullable Long unboxedKey = unbox(key);
+			return unboxedKey != null && containsKeyValues(unboxedKey.longValue());
+		}
+
+		@Override
+		public @Nullable List<V> get(final @Nullable Object key) {
+			final @Nullable Long unboxedKey = unbox(key);
+			return unboxedKey != null && containsKeyValues(unboxedKey.longValue())
+					? getValues(unboxedKey.longValue())
+					: null;
+		}
+
+		@Override
+		public Set<Entry<K, List<V>>> entrySet() {
+			return new AbstractSet<>() {
+				@Override
+				public int size() {
+					return AbstractPrimitiveMultimap.this.nonEmptyKeyCount;
+				}
+
+				@Override
+				public Iterator<Entry<K, List<V>>> iterator() {
+					return new Iterator<>() {
+						private int nextKeyIndex = skipEmptyKeys(0);
+
+						@Override
+						public boolean hasNext() {
+							return this.nextKeyIndex < AbstractPrimitiveMultimap.this.keyCount;
+						}
+
+						@SuppressWarnings("null")
+						@Override
+						public Entry<K, List<V>> next() {
+							if (!hasNext()) {
+								throw new NoSuchElementException();
+							}
+							final int keyIndex = this.nextKeyIndex;
+							this.nextKeyIndex = skipEmptyKeys(keyIndex + 1);
+							return new SimpleImmutableEntry<>(box(AbstractPrimitiveMultimap.this.keys[keyIndex]),
+									getValuesAt(keyIndex));
+						}
+					};
+				}
+			};
+		}
+
+		private int skipEmptyKeys(final int startIndex) {
+			int keyIndex = startIndex;
+			while (keyIndex < AbstractPrimitiveMultimap.this.keyCount
+					&& AbstractPrimitiveMultimap.this.valueCounts[keyIndex] == 0) {
+				keyIndex++;
+			}
+			return keyIndex;
+		}
+	}
+}
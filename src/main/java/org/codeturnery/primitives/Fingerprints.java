@@ -0,0 +1,75 @@
+package org.codeturnery.primitives;
+
+/**
+ * Provides functions to build well-mixed 64-bit fingerprints from smaller
+ * hashes and other fingerprints.
+ * <p>
+ * In contrast to combining values via {@link java.util.Arrays#hashCode(long[])}
+ * each step passes the state through a full avalanche mixer (the finalizer of
+ * MurmurHash3), so that similar inputs result in fingerprints differing in about
+ * half of their bits. With 64 bits a collision between two unrelated inputs is
+ * expected only after about four billion fingerprints were created.
+ */
+public class Fingerprints {
+	private static final long SEED = 0x9E3779B97F4A7C15L;
+
+	private Fingerprints() {
+	}
+
+	/**
+	 * Mix the bits of the given value so that each input bit affects each output
+	 * bit.
+	 *
+	 * @param value the value to mix
+	 * @return the mixed value
+	 */
+	public static long mix(final long value) {
+		long h = value;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * Create the start value of a fingerprint from the given hash.
+	 *
+	 * @param hash e.g. the {@link Object#hashCode()} of the object the fingerprint
+	 *             is created for
+	 * @return the mixed value to {@link #combine} further values into
+	 */
+	public static long of(final int hash) {
+		return mix(SEED ^ hash);
+	}
+
+	/**
+	 * Combine the given value into the given fingerprint. The order of the values
+	 * combined matters.
+	 *
+	 * @param fingerprint the fingerprint created so far
+	 * @param value       the value to add
+	 * @return the new fingerprint
+	 */
+	public static long combine(final long fingerprint, final long value) {
+		return mix(Long.rotateLeft(fingerprint, 31) * SEED + value);
+	}
+
+	/**
+	 * Combine the given values into the given fingerprint, in the order they are
+	 * given. Additionally the number of values is combined, so that e.g. appending
+	 * a zero changes the fingerprint.
+	 *
+	 * @param fingerprint the fingerprint created so far
+	 * @param values      the values to add
+	 * @return the new fingerprint
+	 */
+	public static long combine(final long fingerprint, final long[] values) {
+		long result = combine(fingerprint, values.length);
+		for (final long value : values) {
+			result = combine(result, value);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,114 @@
+package org.codeturnery.primitives;
+
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Map from primitive <code>int</code> keys to multiple values each, e.g. to
+ * bucket objects by their hash.
+ * <p>
+ * The distinct keys are stored in insertion order in parallel arrays and found
+ * via an open addressing table. The values of all keys are stored in a single
+ * shared array, with the values of each key chained via an array of indexes.
+ * Thus adding a value neither boxes the key nor allocates a list or entry
+ * object; lists are only created when the values of a key are requested.
+ * <p>
+ * Keys and values are iterated in the order they were added. A key whose values
+ * were all removed is removed as well, hence it is iterated last if it is added
+ * again.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ * @param <V> the type of the values
+ */
+public class IntMultimap<V> extends AbstractPrimitiveMultimap<Integer, V> {
+	/**
+	 * Create an empty instance with a small initial capacity.
+	 */
+	public IntMultimap() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize the number of values that can be added before the
+	 *                     internal arrays need to grow
+	 */
+	public IntMultimap(final int expectedSize) {
+		super(expectedSize);
+	}
+
+	/**
+	 * @param key the key to look for
+	 * @return <code>true</code> if at least one value is stored for the given key
+	 */
+	public boolean containsKey(final int key) {
+		return containsKeyValues(key);
+	}
+
+	/**
+	 * @param key the key to get the number of values for
+	 * @return the number of values stored for the given key
+	 */
+	public int getValueCount(final int key) {
+		return getKeyValueCount(key);
+	}
+
+	/**
+	 * Add the given value to the values of the given key.
+	 *
+	 * @param key   the key to add the value for
+	 * @param value the value to add
+	 */
+	public void add(final int key, final V value) {
+		addValue(key, value);
+	}
+
+	/**
+	 * Remove the first value of the given key that is
+	 * {@link Object#equals(Object) equal} to the given value.
+	 *
+	 * @param key   the key to remove the value from
+	 * @param value the value to remove
+	 * @return <code>true</code> if the value was found and removed
+	 */
+	public boolean remove(final int key, final Object value) {
+		return removeValue(key, value);
+	}
+
+	/**
+	 * Get the values of the given key.
+	 *
+	 * @param key the key to get the values for
+	 * @return a new list containing the values of the given key in insertion
+	 *         order, an empty list if the key is not present
+	 */
+	public List<V> get(final int key) {
+		return getValues(key);
+	}
+
+	/**
+	 * Pass the values of each key with at least one value to the given consumer,
+	 * in the order the keys were added.
+	 *
+	 * @param consumer called with a new list containing the values of a key and
+	 *                 the key itself
+	 */
+	public void forEach(final ObjIntConsumer<List<V>> consumer) {
+		forEachKey((values, key) -> consumer.accept(values, (int) key));
+	}
+
+	@SuppressWarnings("null")
+	@Override
+	Integer box(final long key) {
+		return Integer.valueOf((int) key);
+	}
+
+	@SuppressWarnings("null")
+	@Override
+	@Nullable
+	Long unbox(final @Nullable Object key) {
+		return key instanceof Integer ? Long.valueOf(((Integer) key).intValue()) : null;
+	}
+}
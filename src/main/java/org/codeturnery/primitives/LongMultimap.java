@@ -0,0 +1,109 @@
+package org.codeturnery.primitives;
+
+import java.util.List;
+import java.util.function.ObjLongConsumer;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Map from primitive <code>long</code> keys to multiple values each, e.g. to
+ * bucket objects by their 64-bit fingerprint.
+ * <p>
+ * Works like {@link IntMultimap}, only with <code>long</code> keys.
+ * <p>
+ * Keys and values are iterated in the order they were added. A key whose values
+ * were all removed is removed as well, hence it is iterated last if it is added
+ * again.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ * @param <V> the type of the values
+ */
+public class LongMultimap<V> extends AbstractPrimitiveMultimap<Long, V> {
+	/**
+	 * Create an empty instance with a small initial capacity.
+	 */
+	public LongMultimap() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize the number of values that can be added before the
+	 *                     internal arrays need to grow
+	 */
+	public LongMultimap(final int expectedSize) {
+		super(expectedSize);
+	}
+
+	/**
+	 * @param key the key to look for
+	 * @return <code>true</code> if at least one value is stored for the given key
+	 */
+	public boolean containsKey(final long key) {
+		return containsKeyValues(key);
+	}
+
+	/**
+	 * @param key the key to get the number of values for
+	 * @return the number of values stored for the given key
+	 */
+	public int getValueCount(final long key) {
+		return getKeyValueCount(key);
+	}
+
+	/**
+	 * Add the given value to the values of the given key.
+	 *
+	 * @param key   the key to add the value for
+	 * @param value the value to add
+	 */
+	public void add(final long key, final V value) {
+		addValue(key, value);
+	}
+
+	/**
+	 * Remove the first value of the given key that is
+	 * {@link Object#equals(Object) equal} to the given value.
+	 *
+	 * @param key   the key to remove the value from
+	 * @param value the value to remove
+	 * @return <code>true</code> if the value was found and removed
+	 */
+	public boolean remove(final long key, final Object value) {
+		return removeValue(key, value);
+	}
+
+	/**
+	 * Get the values of the given key.
+	 *
+	 * @param key the key to get the values for
+	 * @return a new list containing the values of the given key in insertion
+	 *         order, an empty list if the key is not present
+	 */
+	public List<V> get(final long key) {
+		return getValues(key);
+	}
+
+	/**
+	 * Pass the values of each key with at least one value to the given consumer,
+	 * in the order the keys were added.
+	 *
+	 * @param consumer called with a new list containing the values of a key and
+	 *                 the key itself
+	 */
+	public void forEach(final ObjLongConsumer<List<V>> consumer) {
+		forEachKey(consumer);
+	}
+
+	@SuppressWarnings("null")
+	@Override
+	Long box(final long key) {
+		return Long.valueOf(key);
+	}
+
+	@Override
+	@Nullable
+	Long unbox(final @Nullable Object key) {
+		return key instanceof Long ? (Long) key : null;
+	}
+}
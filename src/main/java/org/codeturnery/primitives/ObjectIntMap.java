@@ -0,0 +1,121 @@
+package org.codeturnery.primitives;
+
+import java.util.function.ObjIntConsumer;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Map from objects to primitive <code>int</code> values, using open addressing
+ * with linear probing.
+ * <p>
+ * Keys and values are stored in two parallel arrays, so that no entry objects
+ * are created and no values are boxed. The keys are compared using
+ * {@link Object#equals(Object)} and {@link Object#hashCode()}.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ * @param <K> the type of the keys
+ */
+public class ObjectIntMap<K> extends AbstractObjectKeyMap<K> {
+	/**
+	 * The value of the key in the same slot.
+	 */
+	private int[] values;
+
+	/**
+	 * Create an empty instance with a small initial capacity.
+	 */
+	public ObjectIntMap() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize the number of keys that can be added before the
+	 *                     internal arrays need to grow
+	 */
+	public ObjectIntMap(final int expectedSize) {
+		super(expectedSize);
+		this.values = new int[getCapacity()];
+	}
+
+	/**
+	 * Get the value for the given key.
+	 * <p>
+	 * To tell a missing key apart from a key whose value equals the given default
+	 * value, {@link #containsKey(Object)} can be called if this method returned the
+	 * default value.
+	 *
+	 * @param key          the key to get the value for
+	 * @param defaultValue the value to return if the key is not present
+	 * @return the value stored for the key or the given default value
+	 */
+	public int getOrDefault(final K key, final int defaultValue) {
+		final int slot = findSlot(key);
+		return slot < 0 ? defaultValue : this.values[slot];
+	}
+
+	/**
+	 * Store the given value for the given key, replacing a previous value.
+	 *
+	 * @param key   the key to store the value for
+	 * @param value the value to store
+	 */
+	public void put(final K key, final int value) {
+		final int slot = findSlot(key);
+		if (slot >= 0) {
+			this.values[slot] = value;
+		} else {
+			// insert first, as it may replace the value array
+			final int newSlot = insert(key);
+			this.values[newSlot] = value;
+		}
+	}
+
+	/**
+	 * Store the given value for the given key, if no value is stored for it yet.
+	 *
+	 * @param key   the key to store the value for
+	 * @param value the value to store
+	 * @return <code>true</code> if the value was stored, <code>false</code> if
+	 *         the key was already present
+	 */
+	public boolean putIfAbsent(final K key, final int value) {
+		if (findSlot(key) >= 0) {
+			return false;
+		}
+		final int slot = insert(key);
+		this.values[slot] = value;
+		return true;
+	}
+
+	/**
+	 * Pass each key with its value to the given consumer.
+	 *
+	 * @param consumer the consumer to call for each key
+	 */
+	public void forEach(final ObjIntConsumer<K> consumer) {
+		final int capacity = getCapacity();
+		for (int slot = 0; slot < capacity; slot++) {
+			final @Nullable K key = getKey(slot);
+			if (key != null) {
+				consumer.accept(key, this.values[slot]);
+			}
+		}
+	}
+
+	@Override
+	void moveValue(final int fromSlot, final int toSlot) {
+		this.values[toSlot] = this.values[fromSlot];
+	}
+
+	@Override
+	void rehashValues(final int capacity, final int[] newSlots) {
+		final int[] oldValues = this.values;
+		this.values = new int[capacity];
+		for (int oldSlot = 0; oldSlot < newSlots.length; oldSlot++) {
+			if (newSlots[oldSlot] >= 0) {
+				this.values[newSlots[oldSlot]] = oldValues[oldSlot];
+			}
+		}
+	}
+}
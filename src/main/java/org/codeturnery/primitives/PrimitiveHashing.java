@@ -0,0 +1,70 @@
+package org.codeturnery.primitives;
+
+/**
+ * Shared helpers for the open addressing tables in this package.
+ */
+class PrimitiveHashing {
+	/**
+	 * The maximum capacity of a table, the largest power of two that can be used
+	 * as array length.
+	 */
+	static final int MAX_CAPACITY = 1 << 30;
+
+	private PrimitiveHashing() {
+	}
+
+	/**
+	 * Spread the bits of the given hash, so that the lower bits used to determine
+	 * the slot depend on all bits of the hash. Without this, sequential or
+	 * otherwise structured hash codes would cluster in a few slots.
+	 *
+	 * @param hash the hash to mix
+	 * @return the mixed hash
+	 */
+	static int mix(final int hash) {
+		final int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Like {@link #mix(int)}, but for <code>long</code> hashes, folding the upper
+	 * bits into the lower ones.
+	 *
+	 * @param hash the hash to mix
+	 * @return the mixed hash
+	 */
+	static int mix(final long hash) {
+		return mix((int) (hash ^ (hash >>> 32)));
+	}
+
+	/**
+	 * @param size     the number of keys to store
+	 * @param capacity the current length of the table
+	 * @return <code>true</code> if the table would be more than half full
+	 */
+	static boolean needsGrowth(final int size, final int capacity) {
+		if (size > capacity / 2) {
+			if (capacity >= MAX_CAPACITY) {
+				throw new IllegalStateException("Maximum capacity reached: " + size);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param expectedSize the number of keys to store without growing
+	 * @param minCapacity  the smallest capacity to return, a power of two
+	 * @return the smallest power of two that holds the given number of keys while
+	 *         being at most half full
+	 */
+	static int capacityFor(final int expectedSize, final int minCapacity) {
+		if (expectedSize < 0) {
+			throw new IllegalArgumentException("Expected size must not be negative, got " + expectedSize);
+		}
+		if (expectedSize > MAX_CAPACITY / 2) {
+			return MAX_CAPACITY;
+		}
+		return Math.max(minCapacity, Integer.highestOneBit(Math.max(1, expectedSize * 2 - 1)) << 1);
+	}
+}
@@ -0,0 +1,6 @@
+/**
+ * Collections specialized for primitive keys and values, avoiding the boxing
+ * and per-entry allocations of the {@link java.util} collections on hot paths.
+ */
+@org.eclipse.jdt.annotation.NonNullByDefault
+package org.codeturnery.primitives;
@@ -5,8 +5,6 @@ import java.util.Optional;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
-import org.codeturnery.typesystem.Iterables;
-
 /**
  * @param <N> the type of the child nodes
  */
@@ -33,6 +31,6 @@ abstract public class AbstractChildableNode<N extends ChildableNode<N>> implemen
 	
 	@Override
 	public int getChildrenCount() {
-		return Math.toIntExact(getChildrenStream().orElse(Iterables.emptyStream()).count());
+		return getChildren().map(List::size).orElse(0).intValue();
 	}
 }
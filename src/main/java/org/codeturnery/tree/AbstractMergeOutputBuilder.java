@@ -148,7 +148,7 @@ abstract public class AbstractMergeOutputBuilder<N extends ChildableNode<N>> {
 
 	protected abstract void addChildrenStatsHeader();
 
-	protected abstract void addAverage(int childSum, int groupCount, float average);
+	protected abstract void addAverage(long childSum, long groupCount, float average);
 
 	protected abstract void addMergeGroup(int size, String string);
 
@@ -0,0 +1,356 @@
+package org.codeturnery.tree;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * An output builder writing the output incrementally to an {@link Appendable},
+ * e.g. a {@link Writer}, or to a {@link WritableByteChannel}, instead of
+ * building it in memory.
+ * <p>
+ * Subclasses pass their output to the <code>append</code> methods, which
+ * collect it in a buffer of fixed size. The buffer is written whenever it is
+ * full and after each top-level merge added via
+ * {@link #addMerge(NodeMerge, int)}, after which the target is flushed too, if
+ * it is {@link Flushable}. Hence the memory used for the output does not depend
+ * on the size of the output. To keep the memory of the merges themselves
+ * bounded as well, the top-level merges can be received one at a time from a
+ * {@link MergePublisher}.
+ * <p>
+ * Instances must be {@link #close() closed} to write the remaining output.
+ * Channels are expected to be blocking. Instances are not thread-safe.
+ *
+ * @param <N> the type of nodes merged
+ */
+public abstract class AbstractStreamingMergeOutputBuilder<N extends ChildableNode<N>>
+		extends AbstractMergeOutputBuilder<N> implements Flushable, Closeable {
+	/**
+	 * The buffer size used if none is given, in characters.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/**
+	 * The destination of the buffered characters.
+	 */
+	private interface Target {
+		/**
+		 * Write the remaining characters of the given buffer, as far as possible.
+		 *
+		 * @param chars      the characters to write
+		 * @param endOfInput <code>true</code> if no more characters will follow
+		 */
+		void write(CharBuffer chars, boolean endOfInput) throws IOException;
+
+		void flush() throws IOException;
+
+		void close() throws IOException;
+	}
+
+	/**
+	 * The characters not yet written, in write mode.
+	 */
+	private final CharBuffer buffer;
+	private final Target target;
+	private boolean closed = false;
+
+	/**
+	 * Create an instance writing to the given {@link Appendable}.
+	 *
+	 * @param predicateNaming Mapping from a predicate reference from which groups
+	 *                        were created to the name to display for that group.
+	 * @param statsCalculator Instance to create group statistics.
+	 * @param grouper         Instance to group nodes.
+	 * @param output          the destination of the output; flushed after each
+	 *                        top-level merge if {@link Flushable} and closed on
+	 *                        {@link #close()} if {@link Closeable}
+	 * @param bufferSize      the number of characters to buffer before writing
+	 *                        them, at least 2
+	 * @throws IllegalArgumentException thrown if the buffer size is less than 2
+	 */
+	public AbstractStreamingMergeOutputBuilder(final Map<Predicate<N>, String> predicateNaming,
+			final StatisticsCalculator<N> statsCalculator, final Grouper<N> grouper, final Appendable output,
+			final int bufferSize) throws IllegalArgumentException {
+		this(predicateNaming, statsCalculator, grouper, new AppendableTarget(output), bufferSize);
+	}
+
+	/**
+	 * Create an instance writing to the given channel, encoding the output with
+	 * the given charset. Characters that can't be encoded are replaced.
+	 *
+	 * @param predicateNaming Mapping from a predicate reference from which groups
+	 *                        were created to the name to display for that group.
+	 * @param statsCalculator Instance to create group statistics.
+	 * @param grouper         Instance to group nodes.
+	 * @param output          the destination of the encoded output, closed on
+	 *                        {@link #close()}
+	 * @param charset         the charset to encode the output with
+	 * @param bufferSize      the number of characters to buffer before encoding
+	 *                        and writing them, at least 2
+	 * @throws IllegalArgumentException thrown if the buffer size is less than 2
+	 */
+	public AbstractStreamingMergeOutputBuilder(final Map<Predicate<N>, String> predicateNaming,
+			final StatisticsCalculator<N> statsCalculator, final Grouper<N> grouper,
+			final WritableByteChannel output, final Charset charset, final int bufferSize)
+			throws IllegalArgumentException {
+		this(predicateNaming, statsCalculator, grouper, new ChannelTarget(output, charset, bufferSize), bufferSize);
+	}
+
+	private AbstractStreamingMergeOutputBuilder(final Map<Predicate<N>, String> predicateNaming,
+			final StatisticsCalculator<N> statsCalculator, final Grouper<N> grouper, final Target target,
+			final int bufferSize) throws IllegalArgumentException {
+		super(predicateNaming, statsCalculator, grouper);
+		// a high surrogate may be kept in the buffer until its low surrogate follows
+		if (bufferSize < 2) {
+			throw new IllegalArgumentException("Buffer size must be at least 2, got " + bufferSize);
+		}
+		this.buffer = CharBuffer.allocate(bufferSize);
+		this.target = target;
+	}
+
+	/**
+	 * Adds the given merge and writes it to the output.
+	 *
+	 * @param merge the instance to add
+	 * @param count the amount of merges that will be added to this instance in
+	 *              total
+	 * @throws UncheckedIOException  thrown if the output could not be written
+	 * @throws IllegalStateException thrown if this instance was closed
+	 */
+	@Override
+	public void addMerge(final NodeMerge<N> merge, final int count)
+			throws UncheckedIOException, IllegalStateException {
+		super.addMerge(merge, count);
+		flush();
+	}
+
+	/**
+	 * Add the given characters to the output.
+	 *
+	 * @param chars the characters to add
+	 * @throws UncheckedIOException  thrown if the buffer was full and could not be
+	 *                               written
+	 * @throws IllegalStateException thrown if this instance was closed
+	 */
+	protected void append(final CharSequence chars) throws UncheckedIOException, IllegalStateException {
+		final String string = chars.toString();
+		int start = 0;
+		while (start < string.length()) {
+			ensureRemaining();
+			final int end = Math.min(string.length(), start + this.buffer.remaining());
+			this.buffer.put(string, start, end);
+			start = end;
+		}
+	}
+
+	/**
+	 * Add the given character to the output.
+	 *
+	 * @param character the character to add
+	 * @throws UncheckedIOException  thrown if the buffer was full and could not be
+	 *                               written
+	 * @throws IllegalStateException thrown if this instance was closed
+	 */
+	protected void append(final char character) throws UncheckedIOException, IllegalStateException {
+		ensureRemaining();
+		this.buffer.put(character);
+	}
+
+	/**
+	 * Add the decimal representation of the given number to the output.
+	 *
+	 * @param number the number to add
+	 * @throws UncheckedIOException  thrown if the buffer was full and could not be
+	 *                               written
+	 * @throws IllegalStateException thrown if this instance was closed
+	 */
+	protected void append(final long number) throws UncheckedIOException, IllegalStateException {
+		append(Long.toString(number));
+	}
+
+	/**
+	 * Write the buffered output and flush the target, if it is
+	 * {@link Flushable}.
+	 *
+	 * @throws UncheckedIOException  thrown if the output could not be written
+	 * @throws IllegalStateException thrown if this instance was closed
+	 */
+	@Override
+	public void flush() throws UncheckedIOException, IllegalStateException {
+		writeBuffer(false);
+		try {
+			this.target.flush();
+		} catch (final IOException exception) {
+			throw new UncheckedIOException(exception);
+		}
+	}
+
+	/**
+	 * Write the buffered output and close the target, if it is
+	 * {@link Closeable}. Closing an instance again has no effect.
+	 * <p>
+	 * The target is closed even if the output could not be written. A failure to
+	 * close it is then added as suppressed exception to the failure to write.
+	 *
+	 * @throws UncheckedIOException thrown if the output could not be written or
+	 *                              the target could not be closed
+	 */
+	@Override
+	public void close() throws UncheckedIOException {
+		if (this.closed) {
+			return;
+		}
+		try {
+			writeBuffer(true);
+			this.target.flush();
+		} catch (final IOException exception) {
+			final var failure = new UncheckedIOException(exception);
+			closeTarget(failure);
+			throw failure;
+		} catch (final RuntimeException | Error exception) {
+			closeTarget(exception);
+			throw exception;
+		}
+		closeTarget(null);
+	}
+
+	/**
+	 * @param failure the exception thrown while writing the remaining output, to
+	 *                add a failure to close the target to; <code>null</code> to
+	 *                throw such a failure instead
+	 */
+	private void closeTarget(final @Nullable Throwable failure) throws UncheckedIOException {
+		this.closed = true;
+		try {
+			this.target.close();
+		} catch (final IOException exception) {
+			if (failure == null) {
+				throw new UncheckedIOException(exception);
+			}
+			failure.addSuppressed(exception);
+		} catch (final RuntimeException exception) {
+			if (failure == null) {
+				throw exception;
+			}
+			failure.addSuppressed(exception);
+		}
+	}
+
+	private void ensureRemaining() {
+		if (!this.buffer.hasRemaining()) {
+			writeBuffer(false);
+		}
+	}
+
+	private void writeBuffer(final boolean endOfInput) {
+		if (this.closed) {
+			throw new IllegalStateException("The output was already closed");
+		}
+		this.buffer.flip();
+		try {
+			this.target.write(this.buffer, endOfInput);
+		} catch (final IOException exception) {
+			throw new UncheckedIOException(exception);
+		} finally {
+			// keeps characters that could not be written yet, i.e. a high surrogate
+			this.buffer.compact();
+		}
+	}
+
+	private static final class AppendableTarget implements Target {
+		private final Appendable output;
+
+		AppendableTarget(final Appendable output) {
+			this.output = output;
+		}
+
+		@Override
+		public void write(final CharBuffer chars, final boolean endOfInput) throws IOException {
+			if (this.output instanceof Writer) {
+				((Writer) this.output).write(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+			} else {
+				this.output.append(chars);
+			}
+			chars.position(chars.limit());
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (this.output instanceof Flushable) {
+				((Flushable) this.output).flush();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (this.output instanceof Closeable) {
+				((Closeable) this.output).close();
+			}
+		}
+	}
+
+	private static final class ChannelTarget implements Target {
+		private static final int MINIMAL_BYTE_BUFFER_SIZE = 16;
+
+		private final WritableByteChannel output;
+		private final CharsetEncoder encoder;
+		/**
+		 * The encoded bytes not yet written, in write mode.
+		 */
+		private final ByteBuffer bytes;
+
+		ChannelTarget(final WritableByteChannel output, final Charset charset, final int bufferSize) {
+			this.output = output;
+			this.encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			this.bytes = ByteBuffer.allocate(Math.max(MINIMAL_BYTE_BUFFER_SIZE,
+					(int) Math.ceil(bufferSize * (double) this.encoder.averageBytesPerChar())));
+		}
+
+		@Override
+		public void write(final CharBuffer chars, final boolean endOfInput) throws IOException {
+			CoderResult result = this.encoder.encode(chars, this.bytes, endOfInput);
+			while (result.isOverflow()) {
+				writeBytes();
+				result = this.encoder.encode(chars, this.bytes, endOfInput);
+			}
+			if (endOfInput) {
+				while (this.encoder.flush(this.bytes).isOverflow()) {
+					writeBytes();
+				}
+			}
+			writeBytes();
+		}
+
+		@Override
+		public void flush() {
+			// all encoded bytes were written already
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.output.close();
+		}
+
+		private void writeBytes() throws IOException {
+			this.bytes.flip();
+			while (this.bytes.hasRemaining()) {
+				this.output.write(this.bytes);
+			}
+			this.bytes.clear();
+		}
+	}
+}
@@ -7,6 +7,9 @@ import java.util.stream.Stream;
 
 /**
  * Wraps a given node and automatically filters its children.
+ * <p>
+ * Each child is wrapped into a new instance and each level creates a new
+ * stream. To visit many filtered nodes, a {@link TreeWalker} is cheaper.
  * 
  * @param <N> the type of the original base node and its children
  */
@@ -53,8 +56,22 @@ public class ChildFilteringNode<N extends ChildableNode<N>> implements Childable
 		return this.getChildrenStream().map(Stream::toList);
 	}
 
+	/**
+	 * @return the number of children of the base node matching the filter
+	 */
 	@Override
 	public int getChildrenCount() {
-		return this.baseNode.getChildrenCount();
+		final int[] count = { 0 };
+		this.baseNode.forEachChild(child -> {
+			if (this.filter.test(child)) {
+				count[0]++;
+			}
+		});
+		return count[0];
+	}
+
+	@Override
+	public boolean isLeaf() {
+		return this.baseNode.isLeaf();
 	}
 }
@@ -2,6 +2,7 @@ package org.codeturnery.tree;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
@@ -15,6 +16,13 @@ import java.util.stream.Stream;
  * children. Nodes representing directories on the other hand would always
  * return a non-empty {@link Optional}, but if the directory is empty the
  * contained stream/list would be empty.
+ * <p>
+ * Besides the {@link Optional} based methods, lower-level methods are provided
+ * to check for leaves and to access the children without creating an
+ * {@link Optional}, a {@link Stream} or a {@link List}. By default they are
+ * implemented via {@link #getChildren()}; implementations storing their
+ * children or able to determine them more cheaply should override them, as
+ * they are used in the hot loops of grouping and merging.
  * 
  * @param <N> the type of the child nodes
  */
@@ -71,4 +79,38 @@ public interface ChildableNode<N extends ChildableNode<N>> {
 	 *         children
 	 */
 	public int getChildrenCount();
+
+	/**
+	 * @return <code>true</code> if this node is not a kind of node to have children
+	 *         at all, i.e. {@link #getChildren()} returns an empty {@link Optional}
+	 */
+	public default boolean isLeaf() {
+		return getChildren().isEmpty();
+	}
+
+	/**
+	 * @param index the position of the child to return
+	 * @return the child at the given position
+	 * @throws IndexOutOfBoundsException thrown if the given index is negative or
+	 *                                   not less than the
+	 *                                   {@link #getChildrenCount() number of
+	 *                                   children}
+	 */
+	public default N getChild(final int index) throws IndexOutOfBoundsException {
+		final Optional<List<N>> children = getChildren();
+		if (children.isEmpty()) {
+			throw new IndexOutOfBoundsException("Node can't have children, requested index " + index);
+		}
+		return children.get().get(index);
+	}
+
+	/**
+	 * Pass each child of this node to the given action, in the order of
+	 * {@link #getChildren()}. Does nothing if this node can't have children.
+	 * 
+	 * @param action the action to apply to each child
+	 */
+	public default void forEachChild(final Consumer<? super N> action) {
+		getChildren().ifPresent(children -> children.forEach(action));
+	}
 }
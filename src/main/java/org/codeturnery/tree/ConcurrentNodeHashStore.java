@@ -0,0 +1,94 @@
+package org.codeturnery.tree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Stores node hashes in {@link ConcurrentHashMap}s, allowing to read hashes
+ * without locking. Lists of nodes with the same hash are only modified within
+ * {@link Map#compute}, so concurrent modifications of the same list are
+ * executed one after another.
+ *
+ * @param <N> the type of the nodes whose hashes are stored
+ */
+class ConcurrentNodeHashStore<N extends ChildableNode<N>> implements NodeHashStore<N> {
+	private final Map<ChildableNode<N>, Integer> nodeToHashMapping = new ConcurrentHashMap<>();
+	private final Map<Integer, List<ChildableNode<N>>> hashToNodeMapping = new ConcurrentHashMap<>();
+	private final Map<ChildableNode<N>, Long> nodeToFingerprintMapping = new ConcurrentHashMap<>();
+
+	@Override
+	public int getHash(final ChildableNode<N> node, final int missingValue) {
+		final @Nullable Integer hash = this.nodeToHashMapping.get(node);
+		return hash == null ? missingValue : hash.intValue();
+	}
+
+	@Override
+	public boolean containsNode(final ChildableNode<N> node) {
+		return this.nodeToHashMapping.containsKey(node);
+	}
+
+	@Override
+	public boolean putHashIfAbsent(final ChildableNode<N> node, final int hash) {
+		return this.nodeToHashMapping.putIfAbsent(node, Integer.valueOf(hash)) == null;
+	}
+
+	@Override
+	public void addNode(final int hash, final ChildableNode<N> node) {
+		this.hashToNodeMapping.compute(Integer.valueOf(hash), (key, sameHashNodes) -> {
+			final List<ChildableNode<N>> list = sameHashNodes == null ? new ArrayList<>() : sameHashNodes;
+			list.add(node);
+			return list;
+		});
+	}
+
+	@Override
+	public long getFingerprint(final ChildableNode<N> node, final long missingValue) {
+		final @Nullable Long fingerprint = this.nodeToFingerprintMapping.get(node);
+		return fingerprint == null ? missingValue : fingerprint.longValue();
+	}
+
+	@Override
+	public boolean containsFingerprint(final ChildableNode<N> node) {
+		return this.nodeToFingerprintMapping.containsKey(node);
+	}
+
+	@Override
+	public void putFingerprintIfAbsent(final ChildableNode<N> node, final long fingerprint) {
+		this.nodeToFingerprintMapping.putIfAbsent(node, Long.valueOf(fingerprint));
+	}
+
+	@Override
+	public void remove(final ChildableNode<N> node) {
+		this.nodeToFingerprintMapping.remove(node);
+		final @Nullable Integer hash = this.nodeToHashMapping.remove(node);
+		if (hash != null) {
+			// remove the node and the then possibly empty list in a single atomic step
+			this.hashToNodeMapping.computeIfPresent(hash, (key, sameHashNodes) -> {
+				sameHashNodes.remove(node);
+				return sameHashNodes.isEmpty() ? null : sameHashNodes;
+			});
+		}
+	}
+
+	@Override
+	public List<ChildableNode<N>> getNodes(final int hash) {
+		final var nodes = new ArrayList<ChildableNode<N>>();
+		// copy within computeIfPresent, as the list may be modified concurrently
+		this.hashToNodeMapping.computeIfPresent(Integer.valueOf(hash), (key, sameHashNodes) -> {
+			nodes.addAll(sameHashNodes);
+			return sameHashNodes;
+		});
+		return nodes;
+	}
+
+	@SuppressWarnings("null")
+	@Override
+	public Map<Integer, List<ChildableNode<N>>> getHashToNodeMapping() {
+		return Collections.unmodifiableMap(this.hashToNodeMapping);
+	}
+}
@@ -0,0 +1,107 @@
+package org.codeturnery.tree;
+
+import java.util.Arrays;
+
+/**
+ * A compact, mergeable histogram of non-negative <code>int</code> values, e.g.
+ * group sizes, to determine quantiles without keeping every value.
+ * <p>
+ * Values below {@link #EXACT_LIMIT} are counted exactly. Larger values are
+ * counted in log-linear buckets: each range between two powers of two is split
+ * into {@link #SUB_BUCKETS} buckets of equal width, so that the width of a
+ * bucket is at most 1/16 of its values. Hence at most 448 counters are needed
+ * for all <code>int</code> values, allocated only up to the largest added
+ * value. Histograms are merged by adding their counters, giving the same result
+ * as adding all values to a single histogram.
+ */
+class CountHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/**
+	 * Values below this limit have their own bucket.
+	 */
+	private static final int EXACT_LIMIT = 2 * SUB_BUCKETS;
+	private static final long[] NO_COUNTS = {};
+
+	/**
+	 * The number of values per bucket, only up to the highest used bucket.
+	 */
+	private long[] bucketCounts = NO_COUNTS;
+	private long valueCount = 0;
+
+	/**
+	 * @param value the value to add, must not be negative
+	 */
+	void add(final int value) {
+		final int bucket = getBucket(value);
+		if (bucket >= this.bucketCounts.length) {
+			this.bucketCounts = Arrays.copyOf(this.bucketCounts, bucket + 1);
+		}
+		this.bucketCounts[bucket]++;
+		this.valueCount++;
+	}
+
+	/**
+	 * Add all values of the given histogram to this one.
+	 *
+	 * @param other the histogram to add
+	 */
+	void merge(final CountHistogram other) {
+		if (other.bucketCounts.length > this.bucketCounts.length) {
+			this.bucketCounts = Arrays.copyOf(this.bucketCounts, other.bucketCounts.length);
+		}
+		for (int bucket = 0; bucket < other.bucketCounts.length; bucket++) {
+			this.bucketCounts[bucket] += other.bucketCounts[bucket];
+		}
+		this.valueCount += other.valueCount;
+	}
+
+	/**
+	 * @param quantile the quantile to get, between 0 and 1, e.g. 0.95 for the 95th
+	 *                 percentile
+	 * @return the smallest value of which at least the given fraction of all
+	 *         values are less or equal, as the highest value of its bucket; -1 if
+	 *         no values were added
+	 */
+	int getQuantile(final double quantile) {
+		if (!(quantile >= 0 && quantile <= 1)) {
+			throw new IllegalArgumentException("Quantile must be between 0 and 1, got " + quantile);
+		}
+		if (this.valueCount == 0) {
+			return -1;
+		}
+		final long rank = Math.max(1, (long) Math.ceil(quantile * this.valueCount));
+		long cumulativeCount = 0;
+		for (int bucket = 0; bucket < this.bucketCounts.length; bucket++) {
+			cumulativeCount += this.bucketCounts[bucket];
+			if (cumulativeCount >= rank) {
+				return getHighestValue(bucket);
+			}
+		}
+		throw new IllegalStateException("Bucket counts don't sum up to " + this.valueCount);
+	}
+
+	private static int getBucket(final int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("Value must not be negative, got " + value);
+		}
+		if (value < EXACT_LIMIT) {
+			return value;
+		}
+		final int exponent = 31 - Integer.numberOfLeadingZeros(value);
+		final int shift = exponent - SUB_BUCKET_BITS;
+		final int subBucket = (value >>> shift) - SUB_BUCKETS;
+		return EXACT_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+	}
+
+	private static int getHighestValue(final int bucket) {
+		if (bucket < EXACT_LIMIT) {
+			return bucket;
+		}
+		final int exponent = (bucket - EXACT_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+		final int subBucket = (bucket - EXACT_LIMIT) % SUB_BUCKETS;
+		final int shift = exponent - SUB_BUCKET_BITS;
+		final long lowestValue = (long) (subBucket + SUB_BUCKETS) << shift;
+		return (int) Math.min(Integer.MAX_VALUE, lowestValue + (1L << shift) - 1);
+	}
+}
@@ -0,0 +1,200 @@
+package org.codeturnery.tree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.codeturnery.typesystem.Iterables;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Creates the same merges as {@link Merger}, but visits each node in a single
+ * iterative post-order traversal before merging.
+ * <p>
+ * During that traversal the children of each node are retrieved exactly once,
+ * grouped by the {@link Grouper} from the already retrieved children and hashed
+ * by the {@link Hasher} after all its children were hashed. Hence the hashing
+ * never recurses deeper than a single level. The merges are then built with an
+ * explicit stack as well, using the children retrieved during the traversal
+ * instead of retrieving them again. Deep trees therefore can't overflow the
+ * call stack and expensive {@link ChildableNode#getChildren()} implementations,
+ * e.g. listing a directory, are invoked only once per node.
+ * <p>
+ * The retrieved children are kept by the stream returned from
+ * {@link #separateAndCreateMerges(List)}, so that it can be consumed lazily.
+ * They are released together with the stream, not kept by this instance. Thus
+ * an instance can be used for multiple calls at the same time, if its
+ * {@link Hasher} is thread-safe.
+ *
+ * @param <N> the type of the merged nodes
+ */
+public class FusedMerger<N extends ChildableNode<N>> extends Merger<N> {
+	/**
+	 * Creates an instance based on the provided hasher, separating nodes by their
+	 * hashes.
+	 *
+	 * @param hasher provides the logic to create a hash for a given node
+	 */
+	public FusedMerger(final Hasher<N> hasher) {
+		this(hasher, false);
+	}
+
+	/**
+	 * Creates an instance based on the provided hasher.
+	 *
+	 * @param hasher               provides the logic to create a hash for a given
+	 *                             node
+	 * @param verifiedFingerprints see {@link Merger#Merger(Hasher, boolean)}
+	 */
+	public FusedMerger(final Hasher<N> hasher, final boolean verifiedFingerprints) {
+		super(hasher, verifiedFingerprints);
+	}
+
+	@Override
+	public Stream<NodeMerge<N>> separateAndCreateMerges(final List<N> nodes) {
+		return new TraversedMerger<>(getHasher(), isUsingVerifiedFingerprints(), traverse(nodes))
+				.separateAndCreateMerges(nodes);
+	}
+
+	/**
+	 * Visit the given nodes and all their descendants in post-order, retrieving
+	 * the children, the groups and the hash of each node exactly once.
+	 *
+	 * @param nodes the root nodes to start from
+	 * @return the children retrieved from each visited node
+	 */
+	protected Map<N, Optional<List<N>>> traverse(final List<N> nodes) {
+		final Map<N, Optional<List<N>>> retrievedChildren = new HashMap<>();
+		final var stack = new ArrayList<N>();
+		for (int index = nodes.size() - 1; index >= 0; index--) {
+			stack.add(nodes.get(index));
+		}
+		while (!stack.isEmpty()) {
+			final N node = stack.get(stack.size() - 1);
+			final @Nullable Optional<List<N>> children = retrievedChildren.get(node);
+			if (children == null) {
+				// first visit: keep the node on the stack until its children were visited
+				final Optional<List<N>> newChildren = node.getChildren();
+				retrievedChildren.put(node, newChildren);
+				newChildren.ifPresent(list -> {
+					for (int index = list.size() - 1; index >= 0; index--) {
+						final N child = list.get(index);
+						if (!retrievedChildren.containsKey(child)) {
+							stack.add(child);
+						}
+					}
+				});
+			} else {
+				// second visit: all children are hashed, so the node can be hashed as well
+				stack.remove(stack.size() - 1);
+				final Hasher<N> hasher = getHasher();
+				hasher.grouper.getGroups(node, children);
+				hasher.getHash(node);
+				if (isUsingVerifiedFingerprints()) {
+					hasher.getFingerprint(node);
+				}
+			}
+		}
+		return retrievedChildren;
+	}
+
+	/**
+	 * Merges the nodes of a single traversal, using the children retrieved during
+	 * that traversal.
+	 *
+	 * @param <N> the type of the merged nodes
+	 */
+	private static final class TraversedMerger<N extends ChildableNode<N>> extends Merger<N> {
+		/**
+		 * The children retrieved during the traversal.
+		 */
+		private final Map<N, Optional<List<N>>> nodeToChildrenMapping;
+
+		TraversedMerger(final Hasher<N> hasher, final boolean verifiedFingerprints,
+				final Map<N, Optional<List<N>>> nodeToChildrenMapping) {
+			super(hasher, verifiedFingerprints);
+			this.nodeToChildrenMapping = nodeToChildrenMapping;
+		}
+
+		@Override
+		public Stream<NodeMerge<N>> separateAndCreateMerges(final List<N> nodes) {
+			return separate(nodes, Function.identity()).map(this::createMerge);
+		}
+
+		@Override
+		protected boolean isLeaf(final N node) {
+			final @Nullable Optional<List<N>> children = this.nodeToChildrenMapping.get(node);
+			return children == null ? node.isLeaf() : children.isEmpty();
+		}
+
+		@Override
+		protected void forEachChild(final N node, final Consumer<? super N> action) {
+			final @Nullable Optional<List<N>> children = this.nodeToChildrenMapping.get(node);
+			if (children == null) {
+				node.forEachChild(action);
+			} else {
+				children.ifPresent(list -> list.forEach(action));
+			}
+		}
+
+		/**
+		 * Create a merge from the given nodes with equal hashes, building the merges
+		 * of all descendants bottom-up using an explicit stack.
+		 */
+		private NodeMerge<N> createMerge(final List<N> nodes) {
+			final var stack = new ArrayList<MergeFrame>();
+			stack.add(new MergeFrame(nodes, Iterables.emptyList()));
+			while (true) {
+				final MergeFrame frame = stack.get(stack.size() - 1);
+				if (frame.hasPendingChildren()) {
+					stack.add(frame.nextChildFrame());
+					continue;
+				}
+				stack.remove(stack.size() - 1);
+				if (stack.isEmpty()) {
+					return new NodeMerge<>(frame.leaves, frame.submerges);
+				}
+				stack.get(stack.size() - 1).submerges
+						.add(new NodeSubMerge<>(frame.leaves, frame.submerges, frame.parents));
+			}
+		}
+
+		/**
+		 * The state of a merge under construction: the separated nodes and the
+		 * submerges created so far from their children.
+		 */
+		private final class MergeFrame {
+			private final List<N> parents;
+			private final List<N> leaves;
+			private final List<List<Pair<N, List<N>>>> nonLeaves;
+			private final List<NodeSubMerge<N>> submerges = new ArrayList<>();
+			private int nextNonLeafIndex = 0;
+
+			MergeFrame(final List<N> nodes, final List<N> parents) {
+				this.parents = parents;
+				final var leavesAndNonLeaves = separateLeavesAndNonLeaves(nodes);
+				this.leaves = leavesAndNonLeaves.getX();
+				this.nonLeaves = leavesAndNonLeaves.getY().toList();
+			}
+
+			boolean hasPendingChildren() {
+				return this.nextNonLeafIndex < this.nonLeaves.size();
+			}
+
+			MergeFrame nextChildFrame() {
+				final var mergedParents = new ArrayList<N>();
+				final var mergedChildren = new ArrayList<N>();
+				for (final Pair<N, List<N>> pair : this.nonLeaves.get(this.nextNonLeafIndex++)) {
+					mergedParents.add(pair.getX());
+					mergedChildren.addAll(pair.getY());
+				}
+				return new MergeFrame(mergedChildren, mergedParents);
+			}
+		}
+	}
+}
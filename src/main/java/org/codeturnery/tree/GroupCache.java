@@ -0,0 +1,139 @@
+package org.codeturnery.tree;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The policy used by a {@link Grouper} to cache the groups of the nodes it
+ * grouped.
+ * <p>
+ * By default all groups are kept for the lifetime of the {@link Grouper},
+ * keeping the complete tree reachable. To process trees that don't fit into
+ * the heap, a {@link #leastRecentlyUsed size-bounded} cache keeps only the
+ * groups of the most recently used nodes. Evicted groups are simply calculated
+ * again if they are requested later. A cache with {@link #weakKeys weak keys}
+ * instead releases the groups of a tree once its root is no longer referenced
+ * elsewhere, e.g. to group multiple trees one after another with the same
+ * {@link Grouper}.
+ * <p>
+ * Each instance counts its hits and misses, to tune the policy and its size.
+ *
+ * @param <N> the type of the nodes whose groups are cached
+ */
+public interface GroupCache<N extends ChildableNode<N>> {
+	/**
+	 * Get the cached groups of the given node, calculating and caching them if
+	 * none are cached.
+	 *
+	 * @param node     the node to get the groups for
+	 * @param grouping calculates the groups of the node on a cache miss
+	 * @return the cached or calculated groups
+	 */
+	Optional<List<Group<N>>> computeIfAbsent(ChildableNode<N> node,
+			Function<ChildableNode<N>, Optional<List<Group<N>>>> grouping);
+
+	/**
+	 * @param node the node whose groups shall be removed
+	 * @return the removed groups, <code>null</code> if none were cached
+	 */
+	@Nullable
+	Optional<List<Group<N>>> remove(ChildableNode<N> node);
+
+	/**
+	 * @return the number of nodes whose groups are currently cached
+	 */
+	int size();
+
+	/**
+	 * @return the number of requests answered from the cache
+	 */
+	long getHitCount();
+
+	/**
+	 * @return the number of requests that required the groups to be calculated
+	 */
+	long getMissCount();
+
+	/**
+	 * @return <code>true</code> if this instance can be used by multiple threads
+	 *         concurrently
+	 */
+	boolean isThreadSafe();
+
+	/**
+	 * @param <N> the type of the nodes whose groups are cached
+	 * @return a cache keeping all groups, not to be shared between threads
+	 */
+	static <N extends ChildableNode<N>> GroupCache<N> unbounded() {
+		return new MapGroupCache<>(new HashMap<>(), false);
+	}
+
+	/**
+	 * @param <N> the type of the nodes whose groups are cached
+	 * @return a cache keeping all groups, which can be shared between threads;
+	 *         cached groups are read without locking
+	 */
+	static <N extends ChildableNode<N>> GroupCache<N> concurrent() {
+		return new MapGroupCache<>(new ConcurrentHashMap<>(), true);
+	}
+
+	/**
+	 * Create a cache referencing the nodes weakly, so that their groups are
+	 * released once the nodes are no longer referenced elsewhere.
+	 * <p>
+	 * Note that the cached groups of a node reference its children strongly. Thus
+	 * the groups of a node are only released after the groups of its parent were,
+	 * i.e. a subtree is not released while the groups of its parent are cached,
+	 * even if it was completely processed. Likewise a {@link Hasher} references
+	 * the nodes and groups it hashed, so the groups of a tree hashed by it are
+	 * only released once the hasher is no longer referenced either. Use a
+	 * {@link #leastRecentlyUsed size-bounded} cache to limit the memory used by
+	 * the groups of a single large tree.
+	 *
+	 * @param <N>        the type of the nodes whose groups are cached
+	 * @param threadSafe <code>true</code> if the cache is to be used by multiple
+	 *                   threads; all accesses are synchronized in that case,
+	 *                   but the groups are calculated without holding the lock
+	 * @return the new cache
+	 */
+	static <N extends ChildableNode<N>> GroupCache<N> weakKeys(final boolean threadSafe) {
+		final Map<ChildableNode<N>, Optional<List<Group<N>>>> map = new WeakHashMap<>();
+		return new MapGroupCache<>(threadSafe ? Collections.synchronizedMap(map) : map, threadSafe);
+	}
+
+	/**
+	 * Create a cache keeping the groups of the given number of nodes at most,
+	 * evicting the groups of the least recently used node if more are added.
+	 *
+	 * @param <N>         the type of the nodes whose groups are cached
+	 * @param maximumSize the maximum number of nodes to keep the groups of
+	 * @param threadSafe  <code>true</code> if the cache is to be used by multiple
+	 *                    threads; all accesses are synchronized in that case,
+	 *                    but the groups are calculated without holding the
+	 *                    lock
+	 * @return the new cache
+	 */
+	@SuppressWarnings("serial")
+	static <N extends ChildableNode<N>> GroupCache<N> leastRecentlyUsed(final int maximumSize,
+			final boolean threadSafe) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("Maximum size must be positive, got " + maximumSize);
+		}
+		final Map<ChildableNode<N>, Optional<List<Group<N>>>> map = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<ChildableNode<N>, Optional<List<Group<N>>>> eldest) {
+				return size() > maximumSize;
+			}
+		};
+		return new MapGroupCache<>(threadSafe ? Collections.synchronizedMap(map) : map, threadSafe);
+	}
+}
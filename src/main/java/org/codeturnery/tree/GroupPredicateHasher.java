@@ -3,13 +3,16 @@ package org.codeturnery.tree;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
+import org.codeturnery.primitives.Fingerprints;
 import org.eclipse.jdt.annotation.Nullable;
 
 /**
- * Uses the {@link Predicate} hash code of the predicate determining groups as
- * hash. I.e. groups are considered equal if they were created from the same
- * predicate.
+ * Uses the {@link #getPredicateId(Predicate) id} of the predicate determining
+ * groups as hash. I.e. groups are considered equal if they were created from
+ * the same predicate. As the ids depend on the order of the predicates only, the
+ * hashes are the same in each JVM run for the same configuration.
  * <p>
  * If you assign a predicate to simply match every directory, this means that
  * directory content will be ignored for the hash calculation.
@@ -22,6 +25,12 @@ import org.eclipse.jdt.annotation.Nullable;
  */
 public class GroupPredicateHasher<N extends ChildableNode<N>> extends Hasher<N> {
 	private final Map<Predicate<N>, HashApproach> hashApproaches;
+	/**
+	 * Provides the content hash of nodes in groups using
+	 * {@link HashApproach#CONTENT_DIGEST}. <code>null</code> if that approach is
+	 * not supported by this instance.
+	 */
+	private final @Nullable ToIntFunction<N> contentHashFunction;
 
 	/**
 	 * Creates a new instance using the given grouper and hashing approaches.
@@ -33,41 +42,148 @@ public class GroupPredicateHasher<N extends ChildableNode<N>> extends Hasher<N>
 	 *                       items sorted into the group
 	 */
 	public GroupPredicateHasher(final Grouper<N> grouper, final Map<Predicate<N>, HashApproach> hashApproaches) {
+		this(grouper, hashApproaches, null);
+	}
+
+	/**
+	 * Creates a new instance using the given grouper and hashing approaches,
+	 * supporting {@link HashApproach#CONTENT_DIGEST} by using the given function.
+	 * 
+	 * @param grouper             the given implementation determines how children
+	 *                            in a node are grouped
+	 * @param hashApproaches      determines how different groups should be hashed,
+	 *                            groups are identified by the predicate that
+	 *                            matched items sorted into the group
+	 * @param contentHashFunction provides the hash of the content of a node in a
+	 *                            group using {@link HashApproach#CONTENT_DIGEST},
+	 *                            e.g. a {@link java.security.MessageDigest digest}
+	 *                            of the content of a file; <code>null</code> if
+	 *                            that approach is not used
+	 */
+	public GroupPredicateHasher(final Grouper<N> grouper, final Map<Predicate<N>, HashApproach> hashApproaches,
+			final @Nullable ToIntFunction<N> contentHashFunction) {
 		super(grouper);
 		this.hashApproaches = hashApproaches;
+		this.contentHashFunction = contentHashFunction;
 	}
 
 	@Override
 	protected int calculateHash(final Group<N> group) {
 		final Predicate<N> groupPredicate = group.getPredicate();
 		final HashApproach hashApproach = this.hashApproaches.getOrDefault(groupPredicate, HashApproach.EXACT_COUNT);
-		final int predicateHashCode = groupPredicate.hashCode();
+		final int predicateHashCode = getPredicateId(groupPredicate);
 		if (HashApproach.PREDICATE_ONLY.equals(hashApproach)) {
 			return predicateHashCode;
 		}
 
-		final int[] subgroupHashes = group.getNodes().stream().mapToInt(this::getHash).sorted().toArray();
+		final int[] subgroupHashes = HashApproach.CONTENT_DIGEST.equals(hashApproach)
+				? group.getNodes().stream().mapToInt(this::getContentAwareHash).sorted().toArray()
+				: group.getNodes().stream().mapToInt(this::getHash).sorted().toArray();
 		if (subgroupHashes.length == 0) {
 			return predicateHashCode;
 		}
 
 		if (HashApproach.GROUP_EXISTENCE.equals(hashApproach)) {
 			final int[] distinctSubgroupHashes = Arrays.stream(subgroupHashes).distinct().toArray();
-			return Arrays.hashCode(new int[] { predicateHashCode, Arrays.hashCode(distinctSubgroupHashes) });
+			return combine(predicateHashCode, Arrays.hashCode(distinctSubgroupHashes));
 		}
 
 		if (HashApproach.DIFFERENCIATE_NONE_ONE_MULTIPLE.equals(hashApproach)) {
 			final int[] distinctSubgroupHashes = reduceDuplicatesTo(subgroupHashes, 2);
-			return Arrays.hashCode(new int[] { predicateHashCode, Arrays.hashCode(distinctSubgroupHashes) });
+			return combine(predicateHashCode, Arrays.hashCode(distinctSubgroupHashes));
+		}
+
+		if (HashApproach.EXACT_COUNT.equals(hashApproach) || HashApproach.CONTENT_DIGEST.equals(hashApproach)) {
+			return combine(predicateHashCode, Arrays.hashCode(subgroupHashes));
+		}
+
+		throw new IllegalArgumentException(hashApproach.name());
+	}
+
+	/**
+	 * Combine the given hashes like {@link Arrays#hashCode(int[])} would for an
+	 * array containing both, without allocating that array for each group.
+	 */
+	private static int combine(final int predicateHash, final int subgroupsHash) {
+		return 31 * (31 + predicateHash) + subgroupsHash;
+	}
+
+	/**
+	 * Applies the {@link HashApproach} of the group to the fingerprints of the
+	 * nodes in the group, like {@link #calculateHash(Group)} does for the hashes.
+	 */
+	@Override
+	protected long[] calculateFingerprintInput(final Group<N> group) {
+		final HashApproach hashApproach = this.hashApproaches.getOrDefault(group.getPredicate(),
+				HashApproach.EXACT_COUNT);
+		if (HashApproach.PREDICATE_ONLY.equals(hashApproach)) {
+			return new long[0];
+		}
+
+		final long[] fingerprints = HashApproach.CONTENT_DIGEST.equals(hashApproach)
+				? group.getNodes().stream()
+						.mapToLong(node -> Fingerprints.combine(getFingerprint(node), getContentHash(node))).sorted()
+						.toArray()
+				: group.getNodes().stream().mapToLong(this::getFingerprint).sorted().toArray();
+
+		if (HashApproach.GROUP_EXISTENCE.equals(hashApproach)) {
+			return Arrays.stream(fingerprints).distinct().toArray();
+		}
+
+		if (HashApproach.DIFFERENCIATE_NONE_ONE_MULTIPLE.equals(hashApproach)) {
+			return reduceDuplicatesTo(fingerprints, 2);
 		}
 
-		if (HashApproach.EXACT_COUNT.equals(hashApproach)) {
-			return Arrays.hashCode(new int[] { predicateHashCode, Arrays.hashCode(subgroupHashes) });
+		if (HashApproach.EXACT_COUNT.equals(hashApproach) || HashApproach.CONTENT_DIGEST.equals(hashApproach)) {
+			return fingerprints;
 		}
 
 		throw new IllegalArgumentException(hashApproach.name());
 	}
 
+	/**
+	 * Combine the structural hash of the given node with the hash of its content.
+	 * 
+	 * @param node the node to get the hash for
+	 * @return the combined hash
+	 * @throws IllegalStateException thrown if no content hash function was given
+	 *                               to this instance
+	 */
+	protected int getContentAwareHash(final N node) throws IllegalStateException {
+		return 31 * getHash(node) + getContentHash(node);
+	}
+
+	private int getContentHash(final N node) throws IllegalStateException {
+		final @Nullable ToIntFunction<N> function = this.contentHashFunction;
+		if (function == null) {
+			throw new IllegalStateException(
+					HashApproach.CONTENT_DIGEST.name() + " used without a content hash function being set.");
+		}
+		return function.applyAsInt(node);
+	}
+
+	/**
+	 * Like {@link #reduceDuplicatesTo(int[], int)}, but for fingerprints.
+	 * 
+	 * @param fingerprints the sorted fingerprints to filter
+	 * @param duplicateMax the maximum number of times a distinct fingerprint is
+	 *                     allowed to be present in the output array
+	 * @return the new array without the fingerprints filtered out, or the given
+	 *         array, if nothing was filtered
+	 */
+	private static long[] reduceDuplicatesTo(final long[] fingerprints, final int duplicateMax) {
+		final var result = new long[fingerprints.length];
+		int resultLength = 0;
+		int currentValueCount = 0;
+		for (int i = 0; i < fingerprints.length; i++) {
+			currentValueCount = i > 0 && fingerprints[i - 1] == fingerprints[i] ? currentValueCount + 1 : 1;
+			if (currentValueCount <= duplicateMax) {
+				result[resultLength++] = fingerprints[i];
+			}
+		}
+		return resultLength == fingerprints.length ? fingerprints : Arrays.copyOf(result, resultLength);
+	}
+
 	/**
 	 * Create a new array containing the given hashes, but each distinct value being
 	 * present a maximum amount of times.
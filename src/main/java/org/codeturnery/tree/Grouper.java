@@ -1,13 +1,13 @@
 package org.codeturnery.tree;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
+import org.codeturnery.typesystem.Optionals;
+import org.eclipse.jdt.annotation.Nullable;
+
 /**
  * Allows to separate a node's children different groups, based on provided
  * predicates.
@@ -30,20 +30,84 @@ import java.util.stream.Stream;
  * However, when attempting to merge the two directories you may want to
  * consider group <code>A1</code> equal to <code>B1</code> only if they contain
  * the same number of images.
+ * <p>
+ * Instances created with <code>threadSafe</code> set to <code>true</code> can
+ * be shared between threads, e.g. to group the subtrees of a node in parallel.
+ * Cached groups are then read without locking and each node is grouped only
+ * once, even if requested by multiple threads at the same time.
+ * <p>
+ * By default the groups of all nodes are cached for the lifetime of the
+ * instance. A different {@link GroupCache} can be given to bound the memory
+ * used by the cache.
  * 
  * @param <N> the type of the nodes
  */
 public class Grouper<N extends ChildableNode<N>> {
-	private final Iterable<Predicate<N>> predicates;
+	/**
+	 * The predicates to group nodes by, compiled on construction.
+	 */
+	private final PredicateDispatcher<N> predicates;
 
-	private final Map<ChildableNode<N>, Optional<List<Group<N>>>> nodeToGroupsMapping = new HashMap<>();
+	private final GroupCache<N> nodeToGroupsMapping;
 
 	/**
+	 * Creates an instance that must not be shared between threads.
+	 * <p>
+	 * The given predicates are compiled into a dispatch structure on
+	 * construction, later changes of the given {@link Iterable} are not
+	 * reflected.
+	 * 
 	 * @param predicates the predicates to apply to items to group them into a group
 	 *                   corresponding to the matching predicate instance
 	 */
 	public Grouper(final Iterable<Predicate<N>> predicates) {
-		this.predicates = predicates;
+		this(predicates, false);
+	}
+
+	/**
+	 * @param predicates the predicates to apply to items to group them into a group
+	 *                   corresponding to the matching predicate instance
+	 * @param threadSafe <code>true</code> if this instance is to be used by
+	 *                   multiple threads concurrently; the given predicates must
+	 *                   be thread-safe too in that case
+	 */
+	public Grouper(final Iterable<Predicate<N>> predicates, final boolean threadSafe) {
+		this(predicates, threadSafe ? GroupCache.concurrent() : GroupCache.unbounded());
+	}
+
+	/**
+	 * @param predicates the predicates to apply to items to group them into a group
+	 *                   corresponding to the matching predicate instance
+	 * @param cache      the cache to store the groups of the grouped nodes in; the
+	 *                   instance is thread-safe if the cache is, the given
+	 *                   predicates must be thread-safe too in that case
+	 */
+	public Grouper(final Iterable<Predicate<N>> predicates, final GroupCache<N> cache) {
+		this.predicates = new PredicateDispatcher<>(predicates);
+		this.nodeToGroupsMapping = cache;
+	}
+
+	/**
+	 * @return <code>true</code> if this instance can be used by multiple threads
+	 *         concurrently
+	 */
+	public boolean isThreadSafe() {
+		return this.nodeToGroupsMapping.isThreadSafe();
+	}
+
+	/**
+	 * @return the compiled predicates of this instance, e.g. to index per-predicate
+	 *         data by their ordinals
+	 */
+	PredicateDispatcher<N> getPredicates() {
+		return this.predicates;
+	}
+
+	/**
+	 * @return the cache of this instance, e.g. to retrieve its hit and miss counts
+	 */
+	public GroupCache<N> getCache() {
+		return this.nodeToGroupsMapping;
 	}
 
 	/**
@@ -54,7 +118,38 @@ public class Grouper<N extends ChildableNode<N>> {
 	 *         have children
 	 */
 	public Optional<List<Group<N>>> getGroups(final ChildableNode<N> parent) {
-		return this.nodeToGroupsMapping.computeIfAbsent(parent, key -> getGroupsForChildren(key).map(Stream::toList));
+		return this.nodeToGroupsMapping.computeIfAbsent(parent,
+				key -> key.isLeaf() ? Optionals.empty() : Optionals.of(this.predicates.groupChildren(key)));
+	}
+
+	/**
+	 * Like {@link #getGroups(ChildableNode)}, but using children that were already
+	 * retrieved from the given node, to avoid retrieving them again if the groups
+	 * are not cached yet.
+	 * 
+	 * @param parent   the node whose children are grouped
+	 * @param children the result of {@link ChildableNode#getChildren()} of the
+	 *                 given node
+	 * @return the grouped children or an empty optional, if the given node can't
+	 *         have children
+	 */
+	public Optional<List<Group<N>>> getGroups(final ChildableNode<N> parent, final Optional<List<N>> children) {
+		return this.nodeToGroupsMapping.computeIfAbsent(parent,
+				key -> children.map(list -> this.predicates.group(list.stream())));
+	}
+
+	/**
+	 * Remove the cached groups of the given node, e.g. because its children
+	 * changed. The groups will be calculated again on the next
+	 * {@link #getGroups} call for that node.
+	 * 
+	 * @param parent the node whose groups shall be removed from the cache
+	 * @return the groups removed from the cache; an empty {@link Optional} if no
+	 *         groups were cached or the node can't have children
+	 */
+	public Optional<List<Group<N>>> invalidate(final ChildableNode<N> parent) {
+		final @Nullable Optional<List<Group<N>>> removedGroups = this.nodeToGroupsMapping.remove(parent);
+		return removedGroups == null ? Optionals.empty() : removedGroups;
 	}
 
 	/**
@@ -82,29 +177,14 @@ public class Grouper<N extends ChildableNode<N>> {
 	 * This method is non-recursive, i.e. it will group the given children only and
 	 * <strong>not</strong> step into them to discover potential grand children.
 	 * <p>
-	 * Each returned group contains a different predicate.
+	 * Each returned group contains a different predicate. The groups are returned
+	 * in the order of their predicates.
 	 * 
 	 * @param nodes the nodes to be grouped according to the set {@link #predicates}
 	 * @return mapping from the first group matcher matching one of the given
 	 *         children to all matching children; order of the children is preserved
 	 */
 	public Stream<Group<N>> getGroupsForNodes(final Stream<N> nodes) {
-		final var preGrouping = new HashMap<Predicate<N>, List<N>>();
-		// iterate through each child
-		nodes.forEach(node -> {
-			// sort the current child into the first matching group
-			for (final Predicate<N> matcher : this.predicates) {
-				// this matching step to put the child _into_ a group must not be confused with
-				// the hash calculation _for_ a (filled) group, which does not happen here
-				if (matcher.test(node)) {
-					final List<N> nodesInGroup = preGrouping.computeIfAbsent(matcher, key -> new ArrayList<>());
-					nodesInGroup.add(node);
-					break;
-				}
-			}
-		});
-
-		return preGrouping.entrySet().stream()
-				.map(groupEntry -> new Group<>(groupEntry.getKey(), groupEntry.getValue()));
+		return this.predicates.group(nodes).stream();
 	}
 }
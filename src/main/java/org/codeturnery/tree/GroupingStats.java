@@ -3,6 +3,12 @@ package org.codeturnery.tree;
 /**
  * Represents information for children of multiple nodes, that matched the same
  * predicate.
+ * <p>
+ * Besides the minimum, maximum and average, quantiles of the group sizes can
+ * be retrieved, e.g. the 95th percentile. They are determined from a compact
+ * histogram with a relative error of at most 1/16 for sizes of 32 and above,
+ * instead of keeping every size. Instances calculated from different nodes,
+ * e.g. in different threads, can be {@link #merge merged}.
  */
 public class GroupingStats {
 	/**
@@ -18,12 +24,17 @@ public class GroupingStats {
 	/**
 	 * The sum of all children in all groups.
 	 */
-	private int childSum = 0;
+	private long childSum = 0;
 
 	/**
 	 * The number of groups.
 	 */
-	private int groupCount = 0;
+	private long groupCount = 0;
+
+	/**
+	 * The distribution of the group sizes.
+	 */
+	private final CountHistogram groupSizes = new CountHistogram();
 
 	GroupingStats(final int firstGroupChildCount) {
 		this.minimalCount = firstGroupChildCount;
@@ -67,7 +78,7 @@ public class GroupingStats {
 	 * 
 	 * @param nodeCount the number of items in a group of a merge
 	 */
-	public void addGroupChildCount(int nodeCount) {
+	public void addGroupChildCount(final int nodeCount) {
 		if (nodeCount > this.maximalCount) {
 			this.maximalCount = nodeCount;
 		}
@@ -77,12 +88,51 @@ public class GroupingStats {
 
 		this.childSum += nodeCount;
 		this.groupCount += 1;
+		this.groupSizes.add(nodeCount);
+	}
+
+	/**
+	 * Add the groups added to the given instance to this one, as if they had
+	 * been added to this instance directly.
+	 * 
+	 * @param other the statistics for the same predicate to add
+	 */
+	public void merge(final GroupingStats other) {
+		if (other.groupCount == 0) {
+			return;
+		}
+		if (this.groupCount == 0 || other.maximalCount > this.maximalCount) {
+			this.maximalCount = other.maximalCount;
+		}
+		if (this.groupCount == 0 || other.minimalCount < this.minimalCount) {
+			this.minimalCount = other.minimalCount;
+		}
+		this.childSum += other.childSum;
+		this.groupCount += other.groupCount;
+		this.groupSizes.merge(other.groupSizes);
+	}
+
+	/**
+	 * Get the size a given fraction of the groups don't exceed, e.g. the median
+	 * for <code>0.5</code>.
+	 * <p>
+	 * The result is exact for sizes below 32. Larger sizes are approximated by the
+	 * upper bound of a histogram bucket, which is at most 1/16 larger than the
+	 * exact size, but never larger than the {@link #getMaximalCount() maximum}.
+	 * 
+	 * @param quantile the fraction of the groups, between 0 and 1
+	 * @return the group size of the quantile
+	 * @throws IllegalArgumentException thrown if the quantile is not between 0 and
+	 *                                  1
+	 */
+	public int getQuantile(final double quantile) throws IllegalArgumentException {
+		return Math.min(this.maximalCount, this.groupSizes.getQuantile(quantile));
 	}
 
 	/**
 	 * @return the sum of all items in all previously added groups
 	 */
-	public int getChildSum() {
+	public long getChildSum() {
 		return this.childSum;
 	}
 
@@ -90,7 +140,7 @@ public class GroupingStats {
 	 * @return the number of groups that were added to this instance from different
 	 *         merges
 	 */
-	public int getGroupCount() {
+	public long getGroupCount() {
 		return this.groupCount;
 	}
 }
@@ -67,5 +67,15 @@ public enum HashApproach {
 	 * Count each encountered matching item in a group. When comparing two groups
 	 * both counts must match for the groups to be considered equal.
 	 */
-	EXACT_COUNT
+	EXACT_COUNT,
+	/**
+	 * Like {@link #EXACT_COUNT}, but additionally the content of each item in a
+	 * group is considered, e.g. a digest of the content of a file. When comparing
+	 * two groups both counts must match and the items must have pairwise equal
+	 * content for the groups to be considered equal.
+	 * <p>
+	 * The content hash of an item is provided by the function given to
+	 * {@link GroupPredicateHasher}.
+	 */
+	CONTENT_DIGEST
 }
@@ -1,43 +1,81 @@
 package org.codeturnery.tree;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import org.codeturnery.primitives.Fingerprints;
 import org.codeturnery.typesystem.Iterables;
 import org.eclipse.jdt.annotation.Nullable;
 
 /**
  * Calculates hashes for nodes and stores them for later retrieval to avoid
  * re-calculation.
+ * <p>
+ * An instance is thread-safe if its {@link Grouper} is
+ * {@link Grouper#isThreadSafe() thread-safe}. In that case subtrees can be hashed
+ * by multiple threads concurrently, e.g. within a
+ * {@link java.util.concurrent.ForkJoinPool}. Cached hashes are read without
+ * locking and the hash of each node is calculated only once: threads requesting
+ * a hash currently calculated by another thread wait for that calculation. As
+ * the lists returned by {@link #getNodes(int)} and
+ * {@link #getHashToNodeMapping(Set)} are still filled concurrently, they should
+ * be read after the hashing is complete.
+ * <p>
+ * Besides the <code>int</code> hashes, which are prone to collisions in large
+ * trees, 64-bit {@link #getFingerprint(ChildableNode) fingerprints} can be
+ * calculated. As even those may collide, nodes with equal fingerprints can be
+ * verified with the cheap {@link #isStructurallyEqual} check.
  * 
  * @param <N> the type of the nodes and child nodes hashed by this instance
  */
 abstract public class Hasher<N extends ChildableNode<N>> {
 	/**
-	 * Cached mapping from a hash to corresponding nodes (i.e. nodes for which this
-	 * hash was calculated).
+	 * Returned by {@link NodeHashStore#getHash} if no hash is stored. As it may be
+	 * a valid hash as well, the store needs to be checked again in that case.
 	 */
-	private final Map<Integer, List<ChildableNode<N>>> hashToNodeMapping = new HashMap<>();
+	private static final int MISSING_HASH = Integer.MIN_VALUE;
 	/**
-	 * Cached mapping from a node to its hash.
+	 * Returned by {@link NodeHashStore#getFingerprint} if no fingerprint is stored.
 	 */
-	private final Map<ChildableNode<N>, Integer> nodeToHashMapping = new HashMap<>();
+	private static final long MISSING_FINGERPRINT = Long.MIN_VALUE;
+
+	/**
+	 * Cached mapping from a node to its hash and from a hash to corresponding nodes
+	 * (i.e. nodes for which this hash was calculated). Uses primitive maps if this
+	 * instance is not thread-safe, avoiding to box each hash.
+	 */
+	private final NodeHashStore<N> nodeHashes;
 	/**
 	 * Cached mapping from a hash to the corresponding groups.
 	 */
-	private final Map<Integer, List<Group<N>>> hashToGroupMapping = new HashMap<>();
+	private final Map<Integer, List<Group<N>>> hashToGroupMapping;
 	/**
 	 * Cached mapping from a group to its hash.
 	 */
-	private final Map<Group<N>, Integer> groupToHashMapping = new HashMap<>();
+	private final Map<Group<N>, Integer> groupToHashMapping;
+	/**
+	 * Cached mapping from a group to its
+	 * {@link #calculateFingerprintInput(Group) fingerprint input}, which is needed
+	 * for the fingerprint of its node and for each
+	 * {@link #isStructurallyEqual structural comparison} of it.
+	 */
+	private final Map<Group<N>, long[]> groupToFingerprintInputMapping;
+	/**
+	 * The hash calculations currently in progress, <code>null</code> if this
+	 * instance is not thread-safe.
+	 */
+	private final @Nullable ConcurrentMap<ChildableNode<N>, CompletableFuture<Integer>> pendingHashes;
 
 	/**
 	 * The instance to calculate groups from nodes with.
@@ -49,6 +87,28 @@ abstract public class Hasher<N extends ChildableNode<N>> {
 	 */
 	public Hasher(final Grouper<N> grouper) {
 		this.grouper = grouper;
+		if (grouper.isThreadSafe()) {
+			this.nodeHashes = new ConcurrentNodeHashStore<>();
+			this.hashToGroupMapping = new ConcurrentHashMap<>();
+			this.groupToHashMapping = new ConcurrentHashMap<>();
+			this.groupToFingerprintInputMapping = new ConcurrentHashMap<>();
+			this.pendingHashes = new ConcurrentHashMap<>();
+		} else {
+			this.nodeHashes = new PrimitiveNodeHashStore<>();
+			this.hashToGroupMapping = new HashMap<>();
+			this.groupToHashMapping = new HashMap<>();
+			this.groupToFingerprintInputMapping = new HashMap<>();
+			this.pendingHashes = null;
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if this instance can be used by multiple threads
+	 *         concurrently, which is the case if its {@link Grouper} is
+	 *         thread-safe
+	 */
+	public boolean isThreadSafe() {
+		return this.pendingHashes != null;
 	}
 
 	/**
@@ -61,7 +121,8 @@ abstract public class Hasher<N extends ChildableNode<N>> {
 	 */
 	public Map<Integer, List<ChildableNode<N>>> getHashToNodeMapping(
 			final Set<Predicate<Entry<Integer, List<ChildableNode<N>>>>> predicates) {
-		Stream<Entry<Integer, List<ChildableNode<N>>>> stream = this.hashToNodeMapping.entrySet().stream();
+		Stream<Entry<Integer, List<ChildableNode<N>>>> stream = this.nodeHashes.getHashToNodeMapping().entrySet()
+				.stream();
 		for (final Predicate<Entry<Integer, List<ChildableNode<N>>>> predicate : predicates) {
 			stream = stream.filter(predicate);
 		}
@@ -77,11 +138,16 @@ abstract public class Hasher<N extends ChildableNode<N>> {
 	 * A node is known to correspond to a hash, if it was previously calculated by
 	 * calling the {@link #getHash} method.
 	 * 
+	 * <p>
+	 * The returned list is a copy, which neither reflects nodes added later nor
+	 * can be used to modify the nodes known to this instance.
+	 * 
 	 * @param hash the hash the returned nodes match
-	 * @return the nodes stored in this instance so far, that match the given hash
+	 * @return a new list of the nodes stored in this instance so far, that match
+	 *         the given hash
 	 */
 	public List<ChildableNode<N>> getNodes(final int hash) {
-		return this.hashToNodeMapping.getOrDefault(hash, Iterables.emptyList());
+		return this.nodeHashes.getNodes(hash);
 	}
 
 	/**
@@ -109,15 +175,88 @@ abstract public class Hasher<N extends ChildableNode<N>> {
 	 *         implementation of this method
 	 */
 	public int getHash(final ChildableNode<N> node) {
-		final @Nullable Integer maybeHash = this.nodeToHashMapping.get(node);
-		if (maybeHash == null) {
-			// do not calculate the hash within computeIfAbsend, to avoid concurrent map
-			// accesses
+		final int maybeHash = this.nodeHashes.getHash(node, MISSING_HASH);
+		if (maybeHash != MISSING_HASH || this.nodeHashes.containsNode(node)) {
+			return maybeHash;
+		}
+		final @Nullable ConcurrentMap<ChildableNode<N>, CompletableFuture<Integer>> pending = this.pendingHashes;
+		if (pending == null) {
 			final int hash = calculateHashFromGroupHashes(node);
-			return this.nodeToHashMapping.computeIfAbsent(node, key -> hash);
+			this.nodeHashes.putHashIfAbsent(node, hash);
+			return hash;
+		}
+		return getHashConcurrently(node, pending);
+	}
+
+	/**
+	 * Calculate the hash of the given node, unless another thread is already doing
+	 * so, in which case its result is awaited.
+	 * <p>
+	 * The calculation can not be done within
+	 * {@link ConcurrentHashMap#computeIfAbsent}, as it recursively requests the
+	 * hashes of the children, which would result in recursive updates of the same
+	 * map. Instead a future is registered per node, so that only the threads
+	 * requesting the same node wait for each other. As trees contain no cycles,
+	 * this can't result in a deadlock.
+	 */
+	@SuppressWarnings("null")
+	private int getHashConcurrently(final ChildableNode<N> node,
+			final ConcurrentMap<ChildableNode<N>, CompletableFuture<Integer>> pending) {
+		final var calculation = new CompletableFuture<Integer>();
+		final @Nullable CompletableFuture<Integer> otherCalculation = pending.putIfAbsent(node, calculation);
+		if (otherCalculation != null) {
+			return otherCalculation.join();
+		}
+		try {
+			// another thread may have finished the calculation after our first lookup
+			final int hash = this.nodeHashes.containsNode(node) ? this.nodeHashes.getHash(node, MISSING_HASH)
+					: calculateHashFromGroupHashes(node);
+			// store the hash before removing the pending calculation, so it is always found
+			this.nodeHashes.putHashIfAbsent(node, hash);
+			calculation.complete(hash);
+			return hash;
+		} catch (final RuntimeException | Error exception) {
+			calculation.completeExceptionally(exception);
+			throw exception;
+		} finally {
+			pending.remove(node, calculation);
+		}
+	}
+
+	/**
+	 * Store a hash for the given node that was calculated previously, e.g. by an
+	 * earlier process that persisted it. Subsequent {@link #getHash} calls for the
+	 * node will return the given hash instead of calculating it.
+	 * <p>
+	 * If a hash is already cached for the node, this call has no effect.
+	 * 
+	 * @param node the node the hash was calculated for
+	 * @param hash the hash previously calculated for the node
+	 */
+	public void putHash(final ChildableNode<N> node, final int hash) {
+		if (this.nodeHashes.putHashIfAbsent(node, hash)) {
+			this.nodeHashes.addNode(hash, node);
 		}
-		return maybeHash;
+	}
 
+	/**
+	 * Remove the cached hash of the given node, e.g. because its children changed.
+	 * The cached groups of the node are removed from the {@link #grouper} as well,
+	 * including their cached hashes.
+	 * <p>
+	 * As the hash of a node depends on the hashes of its children, the ancestors
+	 * of a changed node need to be invalidated too. As {@link ChildableNode}s
+	 * don't know their parent, this is the responsibility of the caller.
+	 * 
+	 * @param node the node whose hash shall be calculated again the next time it
+	 *             is requested
+	 */
+	public void invalidate(final ChildableNode<N> node) {
+		this.nodeHashes.remove(node);
+		this.grouper.invalidate(node).ifPresent(groups -> groups.forEach(group -> {
+			this.groupToHashMapping.remove(group);
+			this.groupToFingerprintInputMapping.remove(group);
+		}));
 	}
 
 	/**
@@ -128,7 +267,15 @@ abstract public class Hasher<N extends ChildableNode<N>> {
 	 * @return the hash of the given group
 	 */
 	public int getHash(final Group<N> group) {
-		return this.groupToHashMapping.computeIfAbsent(group, this::calculateHash);
+		final @Nullable Integer cachedHash = this.groupToHashMapping.get(group);
+		if (cachedHash != null) {
+			return cachedHash;
+		}
+		// calculated outside of the map, as it requests the hashes of the nodes in
+		// the group, which may block for a longer time
+		final int hash = calculateHash(group);
+		final @Nullable Integer previousHash = this.groupToHashMapping.putIfAbsent(group, hash);
+		return previousHash == null ? hash : previousHash;
 	}
 
 	/**
@@ -142,8 +289,8 @@ abstract public class Hasher<N extends ChildableNode<N>> {
 	 * groups are equal. This will not cover some cases, like considering two nodes
 	 * to be equal if they simply contain at least three groups.
 	 * <p>
-	 * The node will be added to {@link #hashToNodeMapping}, but
-	 * <strong>not</strong> {@link #nodeToHashMapping}.
+	 * The node will be added to the nodes of the calculated hash, but the hash will
+	 * <strong>not</strong> be stored for the node.
 	 * 
 	 * @param node the node to calculate the hash for
 	 * @return the hash calculated for the given node
@@ -157,13 +304,159 @@ abstract public class Hasher<N extends ChildableNode<N>> {
 			groupHashes[groupIndex++] = calculateHash(group);
 		}
 		final int nodeHash = Arrays.hashCode(groupHashes);
-		final List<ChildableNode<N>> sameHashNodes = this.hashToNodeMapping.computeIfAbsent(nodeHash,
-				hash -> new ArrayList<>());
-		sameHashNodes.add(node);
+		this.nodeHashes.addNode(nodeHash, node);
 
 		return nodeHash;
 	}
 
+	/**
+	 * Returns the 64-bit fingerprint of the given node.
+	 * <p>
+	 * Fingerprints are calculated from the same groups as the hashes, but the
+	 * values are combined using {@link Fingerprints}, resulting in far less
+	 * collisions. Once calculated, the fingerprint of a node is stored in this
+	 * instance. In thread-safe instances the fingerprint of a node requested by
+	 * multiple threads at the same time may be calculated more than once, but all
+	 * threads will get the same result.
+	 * 
+	 * @param node the node to get the fingerprint for
+	 * @return the fingerprint of the given node
+	 */
+	public long getFingerprint(final ChildableNode<N> node) {
+		final long maybeFingerprint = this.nodeHashes.getFingerprint(node, MISSING_FINGERPRINT);
+		if (maybeFingerprint != MISSING_FINGERPRINT || this.nodeHashes.containsFingerprint(node)) {
+			return maybeFingerprint;
+		}
+		final long fingerprint = calculateFingerprintFromGroups(node);
+		this.nodeHashes.putFingerprintIfAbsent(node, fingerprint);
+		return fingerprint;
+	}
+
+	/**
+	 * Check if the given nodes, for example nodes with the same fingerprint, are
+	 * equal in structure.
+	 * <p>
+	 * This check is cheap, as it is not done recursively: for each group of one
+	 * node a group with the same predicate must exist in the other node, with both
+	 * groups having the same {@link #calculateFingerprintInput fingerprint input}
+	 * and the same {@link #getHash(Group) hash}. As the {@link #grouper} returns
+	 * the groups in the order of their predicates, the groups are compared by
+	 * position. The fingerprint inputs are cached per group, so comparing a node
+	 * with multiple other nodes calculates them once. I.e. the fingerprints of the
+	 * children are trusted, only the combination of them is verified. As the
+	 * hashes are calculated independently of the fingerprints, a collision of
+	 * child fingerprints is detected too, unless their hashes collide as well.
+	 * 
+	 * @param node      the first node to compare
+	 * @param otherNode the second node to compare
+	 * @return <code>true</code> if both nodes have equivalent groups
+	 */
+	public boolean isStructurallyEqual(final ChildableNode<N> node, final ChildableNode<N> otherNode) {
+		if (node == otherNode) {
+			return true;
+		}
+		final List<Group<N>> groups = getGroupsOrEmpty(node);
+		final List<Group<N>> otherGroups = getGroupsOrEmpty(otherNode);
+		if (groups.size() != otherGroups.size()) {
+			return false;
+		}
+		for (int groupIndex = 0; groupIndex < groups.size(); groupIndex++) {
+			final Group<N> group = groups.get(groupIndex);
+			final Group<N> otherGroup = otherGroups.get(groupIndex);
+			if (!group.getPredicate().equals(otherGroup.getPredicate()) || getHash(group) != getHash(otherGroup)
+					|| !Arrays.equals(getFingerprintInput(group), getFingerprintInput(otherGroup))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Calculate the fingerprint of the given node from the fingerprints of its
+	 * groups. The group fingerprints are sorted before combining them, so that the
+	 * order of the groups does not matter.
+	 * 
+	 * @param node the node to calculate the fingerprint for
+	 * @return the fingerprint calculated for the given node
+	 */
+	protected long calculateFingerprintFromGroups(final ChildableNode<N> node) {
+		final List<Group<N>> groups = getGroupsOrEmpty(node);
+		final var groupFingerprints = new long[groups.size()];
+		int groupIndex = 0;
+		for (final Group<N> group : groups) {
+			groupFingerprints[groupIndex++] = Fingerprints.combine(Fingerprints.of(getPredicateId(group.getPredicate())),
+					getFingerprintInput(group));
+		}
+		Arrays.sort(groupFingerprints);
+		return Fingerprints.combine(Fingerprints.of(0), groupFingerprints);
+	}
+
+	/**
+	 * Get the cached {@link #calculateFingerprintInput(Group) fingerprint input}
+	 * of the given group, calculating it on the first request.
+	 */
+	@SuppressWarnings("null")
+	private long[] getFingerprintInput(final Group<N> group) {
+		final long @Nullable [] cachedInput = this.groupToFingerprintInputMapping.get(group);
+		if (cachedInput != null) {
+			return cachedInput;
+		}
+		// calculated outside of the map, as it requests the fingerprints of the nodes
+		// in the group
+		final long[] input = calculateFingerprintInput(group);
+		final long @Nullable [] previousInput = this.groupToFingerprintInputMapping.putIfAbsent(group, input);
+		return previousInput == null ? input : previousInput;
+	}
+
+	/**
+	 * Determine the values that define a group for its fingerprint and the
+	 * {@link #isStructurallyEqual structural comparison}, in addition to its
+	 * predicate.
+	 * <p>
+	 * By default these are the sorted fingerprints of all nodes in the group, i.e.
+	 * two groups are considered equal if they contain the same number of nodes for
+	 * each distinct fingerprint. Implementations that consider groups equal in
+	 * other cases in {@link #calculateHash(Group)} should override this method
+	 * accordingly.
+	 * 
+	 * @param group the group to get the values for
+	 * @return the values to combine into the fingerprint of the group
+	 */
+	protected long[] calculateFingerprintInput(final Group<N> group) {
+		final var fingerprints = new long[group.getNodes().size()];
+		int nodeIndex = 0;
+		for (final N node : group.getNodes()) {
+			fingerprints[nodeIndex++] = getFingerprint(node);
+		}
+		Arrays.sort(fingerprints);
+		return fingerprints;
+	}
+
+	/**
+	 * Get a value identifying the given predicate in hashes and fingerprints.
+	 * <p>
+	 * For the predicates of the {@link #grouper} the value is derived from the
+	 * position of the predicate, not from its {@link Object#hashCode() hash code},
+	 * which is often the identity hash code and thus differs with each JVM run.
+	 * Hence hashes calculated from it can be persisted and compared with hashes
+	 * calculated after a restart, as long as the same predicates are given in the
+	 * same order. Equal predicates get the same value.
+	 * 
+	 * @param predicate the predicate of a group
+	 * @return the id of the predicate; its hash code if it is not one of the
+	 *         predicates of the grouper
+	 */
+	protected int getPredicateId(final Predicate<N> predicate) {
+		final int ordinal = this.grouper.getPredicates().findOrdinal(predicate);
+		return ordinal < 0 ? predicate.hashCode() : (int) Fingerprints.mix(ordinal + 1L);
+	}
+
+	@SuppressWarnings("null")
+	private List<Group<N>> getGroupsOrEmpty(final ChildableNode<N> node) {
+		final Optional<List<Group<N>>> groups = this.grouper.getGroups(node);
+		return groups.orElse(Iterables.emptyList());
+	}
+
 	/**
 	 * Calculate the hash for a single group within a node.
 	 *
@@ -0,0 +1,128 @@
+package org.codeturnery.tree;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * {@link GroupCache} backed by a {@link Map}, whose implementation determines
+ * the policy.
+ *
+ * @param <N> the type of the nodes whose groups are cached
+ */
+class MapGroupCache<N extends ChildableNode<N>> implements GroupCache<N> {
+	private final Map<ChildableNode<N>, Optional<List<Group<N>>>> map;
+	/**
+	 * The groupings currently in progress, <code>null</code> if this instance is
+	 * not thread-safe.
+	 */
+	private final @Nullable ConcurrentMap<ChildableNode<N>, CompletableFuture<Optional<List<Group<N>>>>> pendingGroups;
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * @param map        the map to store the groups in, which must be thread-safe
+	 *                   if this instance is
+	 * @param threadSafe <code>true</code> if this instance is to be used by
+	 *                   multiple threads concurrently
+	 */
+	MapGroupCache(final Map<ChildableNode<N>, Optional<List<Group<N>>>> map, final boolean threadSafe) {
+		this.map = map;
+		this.pendingGroups = threadSafe ? new ConcurrentHashMap<>() : null;
+	}
+
+	@Override
+	public Optional<List<Group<N>>> computeIfAbsent(final ChildableNode<N> node,
+			final Function<ChildableNode<N>, Optional<List<Group<N>>>> grouping) {
+		this.requests.increment();
+		final @Nullable Optional<List<Group<N>>> cachedGroups = this.map.get(node);
+		if (cachedGroups != null) {
+			return cachedGroups;
+		}
+		final var pending = this.pendingGroups;
+		if (pending == null) {
+			this.misses.increment();
+			final Optional<List<Group<N>>> groups = grouping.apply(node);
+			this.map.put(node, groups);
+			return groups;
+		}
+		return computeConcurrently(node, grouping, pending);
+	}
+
+	/**
+	 * Calculate the groups of the given node, unless another thread is already
+	 * doing so, in which case its result is awaited.
+	 * <p>
+	 * The grouping is not done within {@link Map#computeIfAbsent}, as it usually
+	 * lists the children of the node, e.g. from the file system. That would block
+	 * other threads accessing the same bin of a {@link ConcurrentHashMap} or, for
+	 * a synchronized map, the whole map. Instead a future is registered per node,
+	 * so that only the threads requesting the same node wait for each other.
+	 */
+	@SuppressWarnings("null")
+	private Optional<List<Group<N>>> computeConcurrently(final ChildableNode<N> node,
+			final Function<ChildableNode<N>, Optional<List<Group<N>>>> grouping,
+			final ConcurrentMap<ChildableNode<N>, CompletableFuture<Optional<List<Group<N>>>>> pending) {
+		final var calculation = new CompletableFuture<Optional<List<Group<N>>>>();
+		final @Nullable CompletableFuture<Optional<List<Group<N>>>> otherCalculation = pending.putIfAbsent(node,
+				calculation);
+		if (otherCalculation != null) {
+			return otherCalculation.join();
+		}
+		try {
+			// another thread may have finished the grouping after our first lookup
+			@Nullable
+			Optional<List<Group<N>>> groups = this.map.get(node);
+			if (groups == null) {
+				this.misses.increment();
+				groups = grouping.apply(node);
+				// store the groups before removing the pending grouping, so they are always found
+				this.map.put(node, groups);
+			}
+			calculation.complete(groups);
+			return groups;
+		} catch (final RuntimeException | Error exception) {
+			calculation.completeExceptionally(exception);
+			throw exception;
+		} finally {
+			pending.remove(node, calculation);
+		}
+	}
+
+	@Override
+	public @Nullable Optional<List<Group<N>>> remove(final ChildableNode<N> node) {
+		return this.map.remove(node);
+	}
+
+	@Override
+	public int size() {
+		return this.map.size();
+	}
+
+	@Override
+	public long getHitCount() {
+		return this.requests.sum() - this.misses.sum();
+	}
+
+	@Override
+	public long getMissCount() {
+		return this.misses.sum();
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return this.pendingGroups != null;
+	}
+
+	@Override
+	public String toString() {
+		return "size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount();
+	}
+}
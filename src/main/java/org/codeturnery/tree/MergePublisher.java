@@ -0,0 +1,150 @@
+package org.codeturnery.tree;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Publishes the top-level merges of the given nodes one at a time, each merge
+ * being created only when it was requested by the subscriber.
+ * <p>
+ * As no merge is referenced by this publisher after it was passed to
+ * {@link Flow.Subscriber#onNext}, a merge and its node lists can be garbage
+ * collected as soon as the subscriber finished with it. Hence, with a
+ * sequential {@link Merger}, at most the requested merges are held in memory at
+ * the same time instead of all merges of the tree.
+ * <p>
+ * Each subscription merges the nodes on its own, i.e. subscribing multiple
+ * times creates the merges multiple times, using the caches of the
+ * {@link Merger}'s {@link Hasher}. The merges are created and passed to the
+ * subscriber in the thread requesting them.
+ *
+ * @param <N> the type of the merged nodes
+ */
+public class MergePublisher<N extends ChildableNode<N>> implements Flow.Publisher<NodeMerge<N>> {
+	private final Merger<N> merger;
+	private final List<N> nodes;
+
+	/**
+	 * @param merger the merger to create the merges with
+	 * @param nodes  the nodes to merge, see
+	 *               {@link Merger#separateAndCreateMerges(List)}
+	 */
+	public MergePublisher(final Merger<N> merger, final List<N> nodes) {
+		this.merger = merger;
+		this.nodes = nodes;
+	}
+
+	@Override
+	public void subscribe(final Flow.Subscriber<? super NodeMerge<N>> subscriber) {
+		subscriber.onSubscribe(new MergeSubscription(subscriber));
+	}
+
+	/**
+	 * Passes the merges to the subscriber while there is demand. Requests from
+	 * within {@link Flow.Subscriber#onNext} or from other threads while merges are
+	 * passed only increase the demand, so that the subscriber is never called
+	 * recursively or concurrently.
+	 * <p>
+	 * If the subscriber throws, which it must not, the subscription is cancelled
+	 * and the exception is rethrown to the caller of {@link #request}.
+	 */
+	private final class MergeSubscription implements Flow.Subscription {
+		private final Flow.Subscriber<? super NodeMerge<N>> subscriber;
+		private final AtomicLong demand = new AtomicLong();
+		/**
+		 * The number of drain requests not yet handled, the draining thread is the
+		 * one that increased it from zero.
+		 */
+		private final AtomicInteger pendingDrains = new AtomicInteger();
+		/**
+		 * Created on the first request, so that no merging happens on subscription.
+		 */
+		private @Nullable Iterator<NodeMerge<N>> merges;
+		private volatile boolean invalidRequest;
+		private volatile boolean terminated;
+
+		MergeSubscription(final Flow.Subscriber<? super NodeMerge<N>> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(final long count) {
+			if (count <= 0) {
+				this.invalidRequest = true;
+			} else {
+				this.demand.getAndUpdate(current -> current + count < 0 ? Long.MAX_VALUE : current + count);
+			}
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			this.terminated = true;
+			// releases the merges, unless another thread is draining and does so
+			drain();
+		}
+
+		private void drain() {
+			if (this.pendingDrains.getAndIncrement() != 0) {
+				return;
+			}
+			int drains = 1;
+			try {
+				do {
+					drainDemand();
+					drains = this.pendingDrains.addAndGet(-drains);
+				} while (drains != 0);
+			} catch (final RuntimeException | Error exception) {
+				terminate();
+				// allow later calls to drain, which only release the merges again
+				this.pendingDrains.set(0);
+				throw exception;
+			}
+		}
+
+		@SuppressWarnings("null")
+		private void drainDemand() {
+			while (!this.terminated) {
+				if (this.invalidRequest) {
+					terminate();
+					this.subscriber.onError(new IllegalArgumentException("Requested count must be positive"));
+					return;
+				}
+				if (this.demand.get() == 0) {
+					return;
+				}
+				final NodeMerge<N> merge;
+				try {
+					if (this.merges == null) {
+						this.merges = MergePublisher.this.merger.separateAndCreateMerges(MergePublisher.this.nodes)
+								.iterator();
+					}
+					if (!this.merges.hasNext()) {
+						terminate();
+						this.subscriber.onComplete();
+						return;
+					}
+					merge = this.merges.next();
+				} catch (final RuntimeException exception) {
+					terminate();
+					this.subscriber.onError(exception);
+					return;
+				}
+				this.demand.decrementAndGet();
+				this.subscriber.onNext(merge);
+			}
+			// cancelled, the merges not passed yet are no longer needed
+			this.merges = null;
+		}
+
+		private void terminate() {
+			this.terminated = true;
+			this.merges = null;
+		}
+	}
+}
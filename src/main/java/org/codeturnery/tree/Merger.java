@@ -2,27 +2,104 @@ package org.codeturnery.tree;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
+import org.codeturnery.primitives.IntMultimap;
+import org.codeturnery.primitives.LongMultimap;
+import org.eclipse.jdt.annotation.Nullable;
+
 /**
  * Provides logic to merge nodes into instances representing them.
+ * <p>
+ * By default nodes are merged if their <code>int</code>
+ * {@link Hasher#getHash(ChildableNode) hashes} are equal. In large trees
+ * unrelated nodes may have the same hash and will then be merged silently. To
+ * avoid this, instances can be created to use verified fingerprints instead:
+ * nodes are then merged if their 64-bit
+ * {@link Hasher#getFingerprint(ChildableNode) fingerprints} are equal and they
+ * are {@link Hasher#isStructurallyEqual structurally equal}.
+ * <p>
+ * Instances created with a {@link ForkJoinPool} hash the given nodes and build
+ * the merges of independent buckets in parallel within that pool. The result
+ * is identical to the sequential one, including the order of the merges.
  * 
  * @param <N> the type of the merged nodes
  */
 public class Merger<N extends ChildableNode<N>> {
 	private final Hasher<N> hasher;
+	/**
+	 * <code>true</code> if nodes are separated by their verified fingerprints
+	 * instead of their hashes.
+	 */
+	private final boolean verifiedFingerprints;
+	/**
+	 * The pool to merge in parallel with, <code>null</code> to merge sequentially.
+	 */
+	private final @Nullable ForkJoinPool pool;
 
 	/**
-	 * Creates an instance based on the provided hasher.
+	 * Creates an instance based on the provided hasher, separating nodes by their
+	 * hashes.
 	 * 
 	 * @param hasher provides the logic to create a hash for a given node
 	 */
 	public Merger(final Hasher<N> hasher) {
+		this(hasher, false);
+	}
+
+	/**
+	 * Creates an instance based on the provided hasher.
+	 * 
+	 * @param hasher               provides the logic to create a hash for a given
+	 *                             node
+	 * @param verifiedFingerprints <code>true</code> to separate nodes by their
+	 *                             fingerprints, with nodes of equal fingerprints
+	 *                             being checked for structural equality;
+	 *                             <code>false</code> to separate nodes by their
+	 *                             hashes only
+	 */
+	public Merger(final Hasher<N> hasher, final boolean verifiedFingerprints) {
+		this.hasher = hasher;
+		this.verifiedFingerprints = verifiedFingerprints;
+		this.pool = null;
+	}
+
+	/**
+	 * Creates an instance merging in parallel within the given pool.
+	 * 
+	 * @param hasher               provides the logic to create a hash for a given
+	 *                             node; must be {@link Hasher#isThreadSafe()
+	 *                             thread-safe}
+	 * @param verifiedFingerprints see {@link #Merger(Hasher, boolean)}
+	 * @param pool                 the pool to hash and merge the nodes in
+	 */
+	public Merger(final Hasher<N> hasher, final boolean verifiedFingerprints, final ForkJoinPool pool) {
+		if (!hasher.isThreadSafe()) {
+			throw new IllegalArgumentException("Merging in parallel requires a thread-safe hasher");
+		}
 		this.hasher = hasher;
+		this.verifiedFingerprints = verifiedFingerprints;
+		this.pool = pool;
+	}
+
+	/**
+	 * @return the hasher provided on construction
+	 */
+	protected Hasher<N> getHasher() {
+		return this.hasher;
+	}
+
+	/**
+	 * @return <code>true</code> if nodes are separated by their verified
+	 *         fingerprints instead of their hashes
+	 */
+	protected boolean isUsingVerifiedFingerprints() {
+		return this.verifiedFingerprints;
 	}
 
 	/**
@@ -32,11 +109,44 @@ public class Merger<N extends ChildableNode<N>> {
 	 *         without a node being present in multiple instances.
 	 */
 	public Stream<NodeMerge<N>> separateAndCreateMerges(final List<N> nodes) {
-		final Map<Integer, List<N>> separatedNodes = groupByHashes(nodes);
-		return separatedNodes.values().stream().map(list -> {
-			final Pair<List<N>, Stream<NodeSubMerge<N>>> leavesAndSubmerges = mapIntoLeavesAndSubMerges(list);
-			return new NodeMerge<>(leavesAndSubmerges.getX(), leavesAndSubmerges.getY().toList());
-		});
+		final @Nullable ForkJoinPool parallelPool = this.pool;
+		if (parallelPool == null) {
+			return separate(nodes, Function.identity()).map(this::createMerge);
+		}
+		return parallelPool.submit(() -> {
+			// hash the subtrees in parallel first, as separating the nodes would hash
+			// them one after another
+			nodes.parallelStream().forEach(node -> {
+				if (this.verifiedFingerprints) {
+					this.hasher.getFingerprint(node);
+				} else {
+					this.hasher.getHash(node);
+				}
+			});
+			// the buckets are independent of each other, an ordered parallel stream
+			// keeps them in the sequential order
+			return separate(nodes, Function.identity()).toList().parallelStream().map(this::createMerge).toList();
+		}).join().stream();
+	}
+
+	/**
+	 * Like {@link #separateAndCreateMerges(List)}, but passing each merge to the
+	 * given consumer as soon as it was created. The merges are not kept by this
+	 * method, so a merge can be garbage collected once the consumer finished with
+	 * it, unless this instance merges in parallel.
+	 * 
+	 * @param nodes    the nodes to be grouped by their hash, with a
+	 *                 {@link NodeMerge} created for each hash value
+	 * @param consumer receives the created merges one after another
+	 * @see MergePublisher
+	 */
+	public void separateAndCreateMerges(final List<N> nodes, final Consumer<? super NodeMerge<N>> consumer) {
+		separateAndCreateMerges(nodes).forEach(consumer);
+	}
+
+	private NodeMerge<N> createMerge(final List<N> nodes) {
+		final Pair<List<N>, Stream<NodeSubMerge<N>>> leavesAndSubmerges = mapIntoLeavesAndSubMerges(nodes);
+		return new NodeMerge<>(leavesAndSubmerges.getX(), leavesAndSubmerges.getY().toList());
 	}
 
 	/**
@@ -52,39 +162,71 @@ public class Merger<N extends ChildableNode<N>> {
 	}
 
 	protected Pair<List<N>, Stream<NodeSubMerge<N>>> mapIntoLeavesAndSubMerges(final Collection<N> nodes) {
+		final Pair<List<N>, Stream<List<Pair<N, List<N>>>>> leavesAndNonLeaves = separateLeavesAndNonLeaves(nodes);
+
+		// the pairs grouped by the hashes are converted into NodeMerge instances
+		final Stream<NodeSubMerge<N>> subMerges = createSubMerges(leavesAndNonLeaves.getY());
+
+		return new Pair<>(leavesAndNonLeaves.getX(), subMerges);
+	}
+
+	/**
+	 * Separate the given nodes into leaves and the children of the non-leaves,
+	 * without creating any merges.
+	 * 
+	 * @param nodes the nodes to separate
+	 * @return the leaves among the given nodes and the children of the non-leaves
+	 *         separated by their hashes, each list containing pairs of a parent
+	 *         and its children with that hash
+	 */
+	protected Pair<List<N>, Stream<List<Pair<N, List<N>>>>> separateLeavesAndNonLeaves(final Collection<N> nodes) {
 		// the given leaf nodes
 		final var leaves = new ArrayList<N>();
 
-		// Mapping from a hash to the corresponding children retrieved from a non-leaf
-		// node. The children are stored as pairs containing their parent too.
-		final var nonLeaves = new HashMap<Integer, List<Pair<N, List<N>>>>();
+		// The children retrieved from the non-leaf nodes, stored as pairs containing
+		// their parent too.
+		final var parentsWithChild = new ArrayList<Pair<N, N>>();
 
-		// fill the leaves and nonLeaves variables above
+		// fill the leaves and parentsWithChild variables above
 		for (final N node : nodes) {
-			node.getChildren().ifPresentOrElse(children -> {
-				// in case of a non-leaf, group its children by their hashes
-				final Map<Integer, List<N>> groupedChildren = groupByHashes(children);
-				// convert the structure and fill the nonLeaves variable
-				for (final Entry<Integer, List<N>> childGroup : groupedChildren.entrySet()) {
-					final Integer hash = childGroup.getKey();
-					final List<Pair<N, List<N>>> parentsWithChildren = nonLeaves.computeIfAbsent(hash,
-							key -> new ArrayList<>());
-					parentsWithChildren.add(new Pair<>(node, childGroup.getValue()));
-				}
-			}, () -> {
+			if (isLeaf(node)) {
 				// in case of a leaf, simply add it to the other ones
 				leaves.add(node);
-			});
+			} else {
+				forEachChild(node, child -> parentsWithChild.add(new Pair<>(node, child)));
+			}
 		}
 
-		// the pairs grouped by the hashes are converted into NodeMerge instances
-		final Stream<NodeSubMerge<N>> subMerges = createSubMerges(nonLeaves.values().stream());
+		// Separate the children by their hashes. As the children of a parent are
+		// adjacent, each resulting list can be converted into pairs of a parent and
+		// all its children with that hash.
+		return new Pair<>(leaves, separate(parentsWithChild, Pair::getY).map(Merger::groupByParent));
+	}
 
-		return new Pair<>(leaves, subMerges);
+	/**
+	 * @param node the node to check
+	 * @return <code>true</code> if the given node can't have children, by default
+	 *         simply {@link ChildableNode#isLeaf()}
+	 */
+	protected boolean isLeaf(final N node) {
+		return node.isLeaf();
+	}
+
+	/**
+	 * Provides the children of the given non-leaf node to merge.
+	 * 
+	 * @param node   the node to get the children of
+	 * @param action receives the children of the node, by default simply via
+	 *               {@link ChildableNode#forEachChild}
+	 */
+	protected void forEachChild(final N node, final Consumer<? super N> action) {
+		node.forEachChild(action);
 	}
 
 	protected Stream<NodeSubMerge<N>> createSubMerges(final Stream<List<Pair<N, List<N>>>> nonLeaves) {
-		return nonLeaves.map(pairsToMerge -> {
+		// when merging in parallel, this is called within the pool, so the nested
+		// merges are created in parallel within the same pool too
+		return (this.pool == null ? nonLeaves : nonLeaves.parallel()).map(pairsToMerge -> {
 			final var mergedParents = new ArrayList<N>();
 			final var mergedChildren = new ArrayList<N>();
 			for (final Pair<N, List<N>> pair : pairsToMerge) {
@@ -97,20 +239,99 @@ public class Merger<N extends ChildableNode<N>> {
 		});
 	}
 
+	/**
+	 * Separate the given items by the hashes or verified fingerprints of their
+	 * nodes, depending on the setting of this instance.
+	 * 
+	 * @param <T>    the type of the items to separate
+	 * @param items  the items to separate
+	 * @param toNode provides the node of an item
+	 * @return lists of items with equal nodes, in the order the first item of each
+	 *         list was encountered
+	 */
+	protected <T> Stream<List<T>> separate(final List<T> items, final Function<T, N> toNode) {
+		if (!this.verifiedFingerprints) {
+			final var buckets = new IntMultimap<T>(items.size());
+			for (final T item : items) {
+				buckets.add(this.hasher.getHash(toNode.apply(item)), item);
+			}
+			return buckets.valueLists();
+		}
+		final var buckets = new LongMultimap<T>(items.size());
+		for (final T item : items) {
+			buckets.add(this.hasher.getFingerprint(toNode.apply(item)), item);
+		}
+		return buckets.valueLists().flatMap(bucket -> splitByStructure(bucket, toNode));
+	}
+
+	/**
+	 * Split the given items with equal fingerprints into lists of structurally
+	 * equal items. Usually all items are equal, resulting in a single comparison
+	 * per item.
+	 */
+	@SuppressWarnings("null")
+	private <T> Stream<List<T>> splitByStructure(final List<T> bucket, final Function<T, N> toNode) {
+		if (bucket.size() < 2) {
+			return Stream.of(bucket);
+		}
+		final var partitions = new ArrayList<List<T>>();
+		for (final T item : bucket) {
+			final N node = toNode.apply(item);
+			@Nullable
+			List<T> matchingPartition = null;
+			for (final List<T> partition : partitions) {
+				if (this.hasher.isStructurallyEqual(toNode.apply(partition.get(0)), node)) {
+					matchingPartition = partition;
+					break;
+				}
+			}
+			if (matchingPartition == null) {
+				matchingPartition = new ArrayList<>();
+				partitions.add(matchingPartition);
+			}
+			matchingPartition.add(item);
+		}
+		return partitions.stream();
+	}
+
+	/**
+	 * Combine adjacent pairs with the same parent into a single pair, containing
+	 * the parent and all its children.
+	 */
+	private static <N> List<Pair<N, List<N>>> groupByParent(final List<Pair<N, N>> parentsWithChild) {
+		final var result = new ArrayList<Pair<N, List<N>>>();
+		@Nullable
+		N currentParent = null;
+		@Nullable
+		List<N> currentChildren = null;
+		for (final Pair<N, N> parentWithChild : parentsWithChild) {
+			if (currentChildren == null || parentWithChild.getX() != currentParent) {
+				currentParent = parentWithChild.getX();
+				currentChildren = new ArrayList<>();
+				result.add(new Pair<>(currentParent, currentChildren));
+			}
+			currentChildren.add(parentWithChild.getY());
+		}
+		return result;
+	}
+
 	/**
 	 * Calculates the hashes of the given nodes and groups them by their hashes.
 	 * 
 	 * @param nodes The nodes to group by their hashes.
-	 * @return Mapping from an hash to the nodes for which this hash was calculated.
+	 * @return Mapping from an hash to the nodes for which this hash was calculated,
+	 *         in the order the hashes were first encountered.
+	 * @deprecated No longer used when merging, hence overriding it has no effect.
+	 *             The nodes and their children are separated by
+	 *             {@link #separate(List, Function)}, which can be overridden
+	 *             instead.
 	 */
+	@Deprecated
 	protected Map<Integer, List<N>> groupByHashes(final Iterable<N> nodes) {
-		final var groupedNodes = new HashMap<Integer, List<N>>();
+		final var groupedNodes = new IntMultimap<N>();
 		for (final N node : nodes) {
-			final int hash = this.hasher.getHash(node);
-			final List<N> group = groupedNodes.computeIfAbsent(hash, key -> new ArrayList<>());
-			group.add(node);
+			groupedNodes.add(this.hasher.getHash(node), node);
 		}
-
-		return groupedNodes;
+		return groupedNodes.asMap();
 	}
 }
@@ -0,0 +1,98 @@
+package org.codeturnery.tree;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage of the node hashes calculated by a {@link Hasher}, in both
+ * directions: from a node to its hash and from a hash to the nodes it was
+ * calculated for. Additionally the 64-bit fingerprints of the nodes are stored.
+ *
+ * @param <N> the type of the nodes whose hashes are stored
+ */
+interface NodeHashStore<N extends ChildableNode<N>> {
+	/**
+	 * Get the stored hash of the given node.
+	 * <p>
+	 * To tell a node without a hash apart from a node whose hash equals the given
+	 * missing value, {@link #containsNode} must be called if this method returned
+	 * the missing value.
+	 *
+	 * @param node         the node to get the hash for
+	 * @param missingValue the value to return if no hash is stored for the node
+	 * @return the stored hash or the missing value
+	 */
+	int getHash(ChildableNode<N> node, int missingValue);
+
+	/**
+	 * @param node the node to look for
+	 * @return <code>true</code> if a hash is stored for the given node
+	 */
+	boolean containsNode(ChildableNode<N> node);
+
+	/**
+	 * Store the hash for the given node, if none is stored yet. The node is
+	 * <strong>not</strong> added to the nodes of the hash.
+	 *
+	 * @param node the node to store the hash for
+	 * @param hash the hash of the node
+	 * @return <code>true</code> if the hash was stored, <code>false</code> if a
+	 *         hash was already present
+	 */
+	boolean putHashIfAbsent(ChildableNode<N> node, int hash);
+
+	/**
+	 * Add the given node to the nodes with the given hash.
+	 *
+	 * @param hash the hash of the node
+	 * @param node the node to add
+	 */
+	void addNode(int hash, ChildableNode<N> node);
+
+	/**
+	 * Get the stored fingerprint of the given node.
+	 * <p>
+	 * To tell a node without a fingerprint apart from a node whose fingerprint
+	 * equals the given missing value, {@link #containsFingerprint} must be called
+	 * if this method returned the missing value.
+	 *
+	 * @param node         the node to get the fingerprint for
+	 * @param missingValue the value to return if no fingerprint is stored for the
+	 *                     node
+	 * @return the stored fingerprint or the missing value
+	 */
+	long getFingerprint(ChildableNode<N> node, long missingValue);
+
+	/**
+	 * @param node the node to look for
+	 * @return <code>true</code> if a fingerprint is stored for the given node
+	 */
+	boolean containsFingerprint(ChildableNode<N> node);
+
+	/**
+	 * Store the fingerprint for the given node, if none is stored yet.
+	 *
+	 * @param node        the node to store the fingerprint for
+	 * @param fingerprint the fingerprint of the node
+	 */
+	void putFingerprintIfAbsent(ChildableNode<N> node, long fingerprint);
+
+	/**
+	 * Remove the stored hash and fingerprint of the given node and remove the node
+	 * from the nodes of that hash.
+	 *
+	 * @param node the node to remove
+	 */
+	void remove(ChildableNode<N> node);
+
+	/**
+	 * @param hash the hash to get the nodes for
+	 * @return a new list of the nodes with the given hash
+	 */
+	List<ChildableNode<N>> getNodes(int hash);
+
+	/**
+	 * @return a read-only view of the nodes of each hash
+	 */
+	Map<Integer, List<ChildableNode<N>>> getHashToNodeMapping();
+}
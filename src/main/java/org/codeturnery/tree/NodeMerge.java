@@ -1,10 +1,19 @@
 package org.codeturnery.tree;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.stream.Stream;
 
+import org.codeturnery.typesystem.Iterables;
+
 /**
  * Represents multiple nodes merged together.
+ * <p>
+ * Instances are immutable, hence the distinct non-leaf nodes and the node
+ * counts are determined once on construction, making the comparison of
+ * instances, e.g. when sorting, cheap.
  *
  * @param <N> the type of the nodes merged together
  */
@@ -18,10 +27,39 @@ public class NodeMerge<N extends ChildableNode<N>> implements Comparable<NodeMer
 	 * The submerges of this instance.
 	 */
 	private final List<NodeSubMerge<N>> submerges;
+	/**
+	 * The distinct parents of the {@link #submerges}, in the order they were
+	 * encountered.
+	 */
+	private final List<N> nonLeaves;
+	private final int leavesCount;
+	private final int submergeCount;
+	private final int mergedNodesCount;
 
 	NodeMerge(final List<N> leaves, final List<NodeSubMerge<N>> submerges) {
 		this.leaves = leaves;
 		this.submerges = submerges;
+		this.nonLeaves = findNonLeaves(submerges);
+		this.leavesCount = leaves.size();
+		this.submergeCount = submerges.size();
+		this.mergedNodesCount = Math.addExact(this.leavesCount, this.nonLeaves.size());
+	}
+
+	@SuppressWarnings("null")
+	private static <N extends ChildableNode<N>> List<N> findNonLeaves(final List<NodeSubMerge<N>> submerges) {
+		if (submerges.isEmpty()) {
+			return Iterables.emptyList();
+		}
+		final var nonLeaves = new ArrayList<N>();
+		final var seenNonLeaves = new HashSet<N>();
+		for (final NodeSubMerge<N> submerge : submerges) {
+			for (final N parent : submerge.getParents()) {
+				if (seenNonLeaves.add(parent)) {
+					nonLeaves.add(parent);
+				}
+			}
+		}
+		return Collections.unmodifiableList(nonLeaves);
 	}
 
 	/**
@@ -51,7 +89,14 @@ public class NodeMerge<N extends ChildableNode<N>> implements Comparable<NodeMer
 	 *         have children
 	 */
 	public Stream<N> getNonLeavesStream() {
-		return this.submerges.stream().map(NodeSubMerge::getParents).flatMap(List::stream).distinct();
+		return this.nonLeaves.stream();
+	}
+
+	/**
+	 * @return number of non-leaf nodes merged in this instance
+	 */
+	public int getNonLeavesCount() {
+		return this.nonLeaves.size();
 	}
 
 	@Override
@@ -77,20 +122,20 @@ public class NodeMerge<N extends ChildableNode<N>> implements Comparable<NodeMer
 	 * @return number of leaf nodes merged in this instance
 	 */
 	public int getLeavesCount() {
-		return getLeaves().size();
+		return this.leavesCount;
 	}
 
 	/**
 	 * @return number of merges created from non-leaf nodes in this instance
 	 */
 	public int getSubMergeCount() {
-		return getSubmerges().size();
+		return this.submergeCount;
 	}
 
 	/**
 	 * @return number of nodes merged in this instance
 	 */
 	public int getMergedNodesCount() {
-		return Math.toIntExact(getMergedNodesStream().count());
+		return this.mergedNodesCount;
 	}
 }
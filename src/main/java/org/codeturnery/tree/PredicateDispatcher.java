@@ -0,0 +1,313 @@
+package org.codeturnery.tree;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * The predicates of a {@link Grouper}, compiled into a structure to classify
+ * nodes with as little work as possible.
+ * <p>
+ * Each predicate is identified by its ordinal, i.e. its position in the order
+ * the predicates were given. The suffixes and prefixes of all
+ * {@link StringMatcher}s with the same {@link StringMatcher#getStringSourceKey()
+ * string source} and case sensitivity are merged into a shared suffix trie and
+ * a shared prefix trie. Hence the string of a node is derived once and all
+ * these matchers are evaluated with a single pass over it, instead of one
+ * comparison per suffix or prefix. Other predicates, including matchers
+ * overriding the matching itself, are simply tested in order. The result is the
+ * same as testing all predicates in order: a node is classified by the first
+ * matching predicate.
+ * <p>
+ * Instances are immutable and hence thread-safe, if the predicates are.
+ *
+ * @param <N> the type of the classified nodes
+ */
+class PredicateDispatcher<N extends ChildableNode<N>> {
+	private final List<Predicate<N>> predicates;
+	/**
+	 * The ordinal of each predicate; the first one for equal predicates.
+	 */
+	private final Map<Predicate<N>, Integer> ordinals = new HashMap<>();
+	/**
+	 * For each ordinal the index of the string source in {@link #sources}, or -1
+	 * if the predicate of the ordinal is tested directly.
+	 */
+	private final int[] sourceIndexes;
+	private final List<StringSource<N>> sources = new ArrayList<>();
+	/**
+	 * The number of <code>long</code>s needed for a bit set of all ordinals.
+	 */
+	private final int bitSetLength;
+
+	/**
+	 * @param predicates the predicates to compile, in the order they are to be
+	 *                   tested
+	 */
+	@SuppressWarnings("unchecked")
+	PredicateDispatcher(final Iterable<Predicate<N>> predicates) {
+		final var predicateList = new ArrayList<Predicate<N>>();
+		predicates.forEach(predicateList::add);
+		this.predicates = predicateList;
+		this.bitSetLength = (predicateList.size() + 63) >>> 6;
+		this.sourceIndexes = new int[predicateList.size()];
+		for (int ordinal = 0; ordinal < predicateList.size(); ordinal++) {
+			final Predicate<N> predicate = predicateList.get(ordinal);
+			this.ordinals.putIfAbsent(predicate, ordinal);
+			if (predicate instanceof StringMatcher && !overridesMatching(predicate.getClass())) {
+				final var matcher = (StringMatcher<N>) predicate;
+				final int sourceIndex = getOrAddSource(matcher);
+				this.sources.get(sourceIndex).add(ordinal, matcher);
+				this.sourceIndexes[ordinal] = sourceIndex;
+			} else {
+				this.sourceIndexes[ordinal] = -1;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of ordinals
+	 */
+	int getPredicateCount() {
+		return this.predicates.size();
+	}
+
+	/**
+	 * @param ordinal the ordinal of the predicate
+	 * @return the predicate with the given ordinal
+	 */
+	Predicate<N> getPredicate(final int ordinal) {
+		return this.predicates.get(ordinal);
+	}
+
+	/**
+	 * @param predicate a predicate of a group created by this instance
+	 * @return the ordinal of the given predicate, the lowest one if it equals
+	 *         multiple predicates
+	 * @throws IllegalArgumentException thrown if the predicate is not one of the
+	 *                                  compiled predicates
+	 */
+	int getOrdinal(final Predicate<N> predicate) throws IllegalArgumentException {
+		final int ordinal = findOrdinal(predicate);
+		if (ordinal < 0) {
+			throw new IllegalArgumentException("Unknown predicate: " + predicate);
+		}
+		return ordinal;
+	}
+
+	/**
+	 * @param predicate the predicate to look for
+	 * @return the ordinal of the given predicate, the lowest one if it equals
+	 *         multiple predicates; -1 if it is not one of the compiled predicates
+	 */
+	int findOrdinal(final Predicate<N> predicate) {
+		final Integer ordinal = this.ordinals.get(predicate);
+		return ordinal == null ? -1 : ordinal.intValue();
+	}
+
+	/**
+	 * Sort the given nodes into groups, each node into the group of the first
+	 * predicate it matches. Nodes not matching any predicate are dropped.
+	 *
+	 * @param nodes the nodes to group
+	 * @return the non-empty groups, in the order of their predicates; the order
+	 *         of the nodes within a group is preserved
+	 */
+	List<Group<N>> group(final Stream<N> nodes) {
+		final var collector = new GroupCollector();
+		nodes.forEach(collector);
+		return collector.getGroups();
+	}
+
+	/**
+	 * Like {@link #group(Stream)}, but for the children of the given node, passed
+	 * via {@link ChildableNode#forEachChild} without creating a stream.
+	 *
+	 * @param parent the node whose children are to be grouped
+	 * @return the non-empty groups, in the order of their predicates
+	 */
+	List<Group<N>> groupChildren(final ChildableNode<N> parent) {
+		final var collector = new GroupCollector();
+		parent.forEachChild(collector);
+		return collector.getGroups();
+	}
+
+	private int getOrAddSource(final StringMatcher<N> matcher) {
+		final Object key = matcher.getStringSourceKey();
+		for (int sourceIndex = 0; sourceIndex < this.sources.size(); sourceIndex++) {
+			final StringSource<N> source = this.sources.get(sourceIndex);
+			if (source.key.equals(key) && source.representative.isCaseFolding() == matcher.isCaseFolding()) {
+				return sourceIndex;
+			}
+		}
+		this.sources.add(new StringSource<>(key, matcher, this.bitSetLength));
+		return this.sources.size() - 1;
+	}
+
+	/**
+	 * Matchers overriding one of the matching methods can't be merged into the
+	 * tries, as their results may differ from plain suffix and prefix comparisons.
+	 * The overrides in {@link TrieStringMatcher} are equivalent to them.
+	 */
+	private static boolean overridesMatching(final Class<?> type) {
+		for (Class<?> current = type; current != StringMatcher.class
+				&& current != TrieStringMatcher.class; current = current.getSuperclass()) {
+			for (final Method method : current.getDeclaredMethods()) {
+				final Class<?>[] parameterTypes = method.getParameterTypes();
+				if (parameterTypes.length == 1 && ("test".equals(method.getName()) && !method.isBridge()
+						|| "testSuffixes".equals(method.getName()) && parameterTypes[0] == String.class
+						|| "testPrefixes".equals(method.getName()) && parameterTypes[0] == String.class)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sorts the nodes it accepts into arrays indexed by the ordinal of the
+	 * matching predicate.
+	 */
+	private final class GroupCollector implements Consumer<N> {
+		@SuppressWarnings("unchecked")
+		private final List<N>[] nodesByOrdinal = (List<N>[]) new List<?>[PredicateDispatcher.this.predicates.size()];
+		private final Classification classification = new Classification();
+
+		@Override
+		public void accept(final N node) {
+			final int ordinal = this.classification.classify(node);
+			if (ordinal >= 0) {
+				List<N> nodesInGroup = this.nodesByOrdinal[ordinal];
+				if (nodesInGroup == null) {
+					nodesInGroup = new ArrayList<>();
+					this.nodesByOrdinal[ordinal] = nodesInGroup;
+				}
+				nodesInGroup.add(node);
+			}
+		}
+
+		List<Group<N>> getGroups() {
+			final var groups = new ArrayList<Group<N>>();
+			for (int ordinal = 0; ordinal < this.nodesByOrdinal.length; ordinal++) {
+				final List<N> nodesInGroup = this.nodesByOrdinal[ordinal];
+				if (nodesInGroup != null) {
+					groups.add(new Group<>(PredicateDispatcher.this.predicates.get(ordinal), nodesInGroup));
+				}
+			}
+			return groups;
+		}
+	}
+
+	/**
+	 * The state of classifying the nodes of a single {@link #group} call, reused
+	 * for each node to avoid allocations.
+	 */
+	private final class Classification {
+		/**
+		 * The ordinals known to match the current node.
+		 */
+		private final long[] matches = new long[PredicateDispatcher.this.bitSetLength];
+		private final long[] suffixMatches = new long[PredicateDispatcher.this.bitSetLength];
+		private final long[] prefixMatches = new long[PredicateDispatcher.this.bitSetLength];
+		/**
+		 * The sources already evaluated for the current node.
+		 */
+		private final boolean[] evaluatedSources = new boolean[PredicateDispatcher.this.sources.size()];
+
+		/**
+		 * @return the ordinal of the first predicate matching the given node, -1 if
+		 *         none matches
+		 */
+		int classify(final N node) {
+			Arrays.fill(this.matches, 0L);
+			Arrays.fill(this.evaluatedSources, false);
+			final int[] sourceIndexes = PredicateDispatcher.this.sourceIndexes;
+			for (int ordinal = 0; ordinal < sourceIndexes.length; ordinal++) {
+				final int sourceIndex = sourceIndexes[ordinal];
+				if (sourceIndex < 0) {
+					if (PredicateDispatcher.this.predicates.get(ordinal).test(node)) {
+						return ordinal;
+					}
+					continue;
+				}
+				// the string is derived lazily, as the predicates before may not expect
+				// it to be derived for nodes they match
+				if (!this.evaluatedSources[sourceIndex]) {
+					PredicateDispatcher.this.sources.get(sourceIndex).evaluate(node, this.matches, this.suffixMatches,
+							this.prefixMatches);
+					this.evaluatedSources[sourceIndex] = true;
+				}
+				if ((this.matches[ordinal >>> 6] & 1L << ordinal) != 0) {
+					return ordinal;
+				}
+			}
+			return -1;
+		}
+	}
+
+	/**
+	 * The merged tries of all compiled matchers deriving the same string.
+	 */
+	private static final class StringSource<N extends ChildableNode<N>> {
+		private final Object key;
+		/**
+		 * Any matcher with the {@link #key}, used to derive the string.
+		 */
+		private final StringMatcher<N> representative;
+		private final StringTrie suffixTrie;
+		private final StringTrie prefixTrie;
+		/**
+		 * The ordinals of the matchers requiring a suffix and a prefix match.
+		 */
+		private final long[] conjunctions;
+
+		StringSource(final Object key, final StringMatcher<N> representative, final int bitSetLength) {
+			this.key = key;
+			this.representative = representative;
+			this.suffixTrie = new StringTrie(true, representative.isCaseFolding());
+			this.prefixTrie = new StringTrie(false, representative.isCaseFolding());
+			this.conjunctions = new long[bitSetLength];
+		}
+
+		void add(final int ordinal, final StringMatcher<N> matcher) {
+			addAll(this.suffixTrie, matcher.getSuffixes(), ordinal);
+			addAll(this.prefixTrie, matcher.getPrefixes(), ordinal);
+			if (matcher.isConjunction()) {
+				this.conjunctions[ordinal >>> 6] |= 1L << ordinal;
+			}
+		}
+
+		/**
+		 * Set the bits of all matchers of this source matching the given node.
+		 */
+		void evaluate(final N node, final long[] matches, final long[] suffixMatches, final long[] prefixMatches) {
+			final String string = this.representative.getString(node);
+			Arrays.fill(suffixMatches, 0L);
+			Arrays.fill(prefixMatches, 0L);
+			if (!this.suffixTrie.isEmpty()) {
+				this.suffixTrie.addMatches(string, suffixMatches);
+			}
+			if (!this.prefixTrie.isEmpty()) {
+				this.prefixTrie.addMatches(string, prefixMatches);
+			}
+			for (int index = 0; index < matches.length; index++) {
+				final long conjunctions = this.conjunctions[index];
+				matches[index] |= (suffixMatches[index] | prefixMatches[index]) & ~conjunctions
+						| suffixMatches[index] & prefixMatches[index] & conjunctions;
+			}
+		}
+
+		private static void addAll(final StringTrie trie, final Set<String> strings, final int ordinal) {
+			for (final String string : strings) {
+				trie.add(string, ordinal);
+			}
+		}
+	}
+}
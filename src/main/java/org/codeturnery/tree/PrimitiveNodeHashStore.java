@@ -0,0 +1,74 @@
+package org.codeturnery.tree;
+
+import java.util.List;
+import java.util.Map;
+
+import org.codeturnery.primitives.IntMultimap;
+import org.codeturnery.primitives.ObjectIntMap;
+import org.codeturnery.primitives.ObjectLongMap;
+
+/**
+ * Stores node hashes in primitive maps, without boxing the hashes and without a
+ * list per hash. Not thread-safe.
+ *
+ * @param <N> the type of the nodes whose hashes are stored
+ */
+class PrimitiveNodeHashStore<N extends ChildableNode<N>> implements NodeHashStore<N> {
+	private final ObjectIntMap<ChildableNode<N>> nodeToHashMapping = new ObjectIntMap<>();
+	private final IntMultimap<ChildableNode<N>> hashToNodeMapping = new IntMultimap<>();
+	private final ObjectLongMap<ChildableNode<N>> nodeToFingerprintMapping = new ObjectLongMap<>();
+
+	@Override
+	public int getHash(final ChildableNode<N> node, final int missingValue) {
+		return this.nodeToHashMapping.getOrDefault(node, missingValue);
+	}
+
+	@Override
+	public boolean containsNode(final ChildableNode<N> node) {
+		return this.nodeToHashMapping.containsKey(node);
+	}
+
+	@Override
+	public boolean putHashIfAbsent(final ChildableNode<N> node, final int hash) {
+		return this.nodeToHashMapping.putIfAbsent(node, hash);
+	}
+
+	@Override
+	public void addNode(final int hash, final ChildableNode<N> node) {
+		this.hashToNodeMapping.add(hash, node);
+	}
+
+	@Override
+	public long getFingerprint(final ChildableNode<N> node, final long missingValue) {
+		return this.nodeToFingerprintMapping.getOrDefault(node, missingValue);
+	}
+
+	@Override
+	public boolean containsFingerprint(final ChildableNode<N> node) {
+		return this.nodeToFingerprintMapping.containsKey(node);
+	}
+
+	@Override
+	public void putFingerprintIfAbsent(final ChildableNode<N> node, final long fingerprint) {
+		this.nodeToFingerprintMapping.putIfAbsent(node, fingerprint);
+	}
+
+	@Override
+	public void remove(final ChildableNode<N> node) {
+		final int hash = this.nodeToHashMapping.getOrDefault(node, 0);
+		if (this.nodeToHashMapping.remove(node)) {
+			this.hashToNodeMapping.remove(hash, node);
+		}
+		this.nodeToFingerprintMapping.remove(node);
+	}
+
+	@Override
+	public List<ChildableNode<N>> getNodes(final int hash) {
+		return this.hashToNodeMapping.get(hash);
+	}
+
+	@Override
+	public Map<Integer, List<ChildableNode<N>>> getHashToNodeMapping() {
+		return this.hashToNodeMapping.asMap();
+	}
+}
@@ -4,9 +4,20 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
 
+import org.eclipse.jdt.annotation.Nullable;
+
 /**
+ * Calculates statistics about the groups of the children of nodes.
+ * <p>
+ * If a {@link ForkJoinPool} is given, the nodes are split into parts that are
+ * processed in parallel within that pool. Each part is accumulated into its own
+ * array of statistics indexed by the ordinals of the {@link Grouper}'s
+ * predicates, and the arrays are combined at the end. The result is the same as
+ * when calculating sequentially.
+ * 
  * @param <N> the type of the nodes
  */
 public class StatisticsCalculator<N extends ChildableNode<N>> {
@@ -15,6 +26,12 @@ public class StatisticsCalculator<N extends ChildableNode<N>> {
 	 */
 	private final Grouper<N> grouper;
 
+	/**
+	 * The pool to calculate in parallel with, <code>null</code> to calculate
+	 * sequentially.
+	 */
+	private final @Nullable ForkJoinPool pool;
+
 	/**
 	 * Create an instance using the given grouper.
 	 * 
@@ -22,6 +39,23 @@ public class StatisticsCalculator<N extends ChildableNode<N>> {
 	 */
 	public StatisticsCalculator(final Grouper<N> grouper) {
 		this.grouper = grouper;
+		this.pool = null;
+	}
+
+	/**
+	 * Create an instance calculating in parallel within the given pool.
+	 * 
+	 * @param grouper the instance to create group from the children of a node,
+	 *                must be {@link Grouper#isThreadSafe() thread-safe}
+	 * @param pool    the pool to calculate the statistics in
+	 * @throws IllegalArgumentException thrown if the grouper is not thread-safe
+	 */
+	public StatisticsCalculator(final Grouper<N> grouper, final ForkJoinPool pool) throws IllegalArgumentException {
+		if (!grouper.isThreadSafe()) {
+			throw new IllegalArgumentException("Calculating in parallel requires a thread-safe grouper");
+		}
+		this.grouper = grouper;
+		this.pool = pool;
 	}
 
 	/**
@@ -56,22 +90,94 @@ public class StatisticsCalculator<N extends ChildableNode<N>> {
 	 * @return the mapping from a predicate that matched children in the given nodes
 	 *         to a statistic that gives information about the matching count in the
 	 *         different nodes
+	 * @see #combineStats(Map, Map)
 	 */
 	public Map<Predicate<N>, GroupingStats> getStats(final List<N> nonLeavesOfMerge) {
-		final var result = new HashMap<Predicate<N>, GroupingStats>();
-		for (int i = 0; i < nonLeavesOfMerge.size(); i++) {
-			final var parent = nonLeavesOfMerge.get(i);
-			final Optional<List<Group<N>>> groups = this.grouper.getGroups(parent);
+		final @Nullable ForkJoinPool parallelPool = this.pool;
+		final StatsAccumulator accumulator;
+		if (parallelPool == null) {
+			accumulator = new StatsAccumulator();
+			for (int i = 0; i < nonLeavesOfMerge.size(); i++) {
+				accumulator.add(nonLeavesOfMerge.get(i));
+			}
+		} else {
+			// each split of the list is accumulated by a single thread, only the
+			// accumulators are combined
+			accumulator = parallelPool.submit(() -> nonLeavesOfMerge.parallelStream().collect(StatsAccumulator::new,
+					StatsAccumulator::add, StatsAccumulator::combine)).join();
+		}
+
+		return accumulator.toMap();
+	}
+
+	/**
+	 * Add the statistics calculated for some nodes to the statistics calculated
+	 * for other nodes, as if {@link #getStats(List)} had been invoked with all
+	 * these nodes at once.
+	 * <p>
+	 * This allows to calculate partial statistics for parts of a node list, e.g.
+	 * in different threads if the {@link Grouper} is
+	 * {@link Grouper#isThreadSafe() thread-safe}, and combine them afterwards. The
+	 * given partial statistics are not changed.
+	 * 
+	 * @param <N>    the type of the nodes
+	 * @param target the statistics to add to
+	 * @param stats  the statistics to add
+	 */
+	public static <N> void combineStats(final Map<Predicate<N>, GroupingStats> target,
+			final Map<Predicate<N>, GroupingStats> stats) {
+		stats.forEach((predicate, partial) -> target
+				.computeIfAbsent(predicate, key -> new GroupingStats(partial.getMinimalCount())).merge(partial));
+	}
+
+	/**
+	 * The statistics of some nodes, indexed by the ordinals of the predicates.
+	 * Not thread-safe.
+	 */
+	private final class StatsAccumulator {
+		private final PredicateDispatcher<N> predicates = StatisticsCalculator.this.grouper.getPredicates();
+		private final @Nullable GroupingStats[] statsByOrdinal = new GroupingStats[this.predicates
+				.getPredicateCount()];
+
+		void add(final N parent) {
+			final Optional<List<Group<N>>> groups = StatisticsCalculator.this.grouper.getGroups(parent);
 			groups.ifPresent(groupList -> {
 				for (final Group<N> group : groupList) {
-					final Predicate<N> predicate = group.getPredicate();
+					final int ordinal = this.predicates.getOrdinal(group.getPredicate());
 					final int nodeCount = group.getNodes().size();
-					final GroupingStats stats = result.computeIfAbsent(predicate, key -> new GroupingStats(nodeCount));
+					GroupingStats stats = this.statsByOrdinal[ordinal];
+					if (stats == null) {
+						stats = new GroupingStats(nodeCount);
+						this.statsByOrdinal[ordinal] = stats;
+					}
 					stats.addGroupChildCount(nodeCount);
 				}
 			});
 		}
 
-		return result;
+		void combine(final StatsAccumulator other) {
+			for (int ordinal = 0; ordinal < this.statsByOrdinal.length; ordinal++) {
+				final @Nullable GroupingStats otherStats = other.statsByOrdinal[ordinal];
+				if (otherStats != null) {
+					final @Nullable GroupingStats stats = this.statsByOrdinal[ordinal];
+					if (stats == null) {
+						this.statsByOrdinal[ordinal] = otherStats;
+					} else {
+						stats.merge(otherStats);
+					}
+				}
+			}
+		}
+
+		Map<Predicate<N>, GroupingStats> toMap() {
+			final var result = new HashMap<Predicate<N>, GroupingStats>();
+			for (int ordinal = 0; ordinal < this.statsByOrdinal.length; ordinal++) {
+				final @Nullable GroupingStats stats = this.statsByOrdinal[ordinal];
+				if (stats != null) {
+					result.put(this.predicates.getPredicate(ordinal), stats);
+				}
+			}
+			return result;
+		}
 	}
 }
@@ -68,4 +68,39 @@ abstract public class StringMatcher<T> implements Predicate<T> {
 	}
 
 	abstract protected String getString(final T node);
+
+	/**
+	 * Identifies how {@link #getString} derives the string from a node. A
+	 * {@link Grouper} derives the string only once for all its matchers with equal
+	 * keys and matches all their suffixes and prefixes together.
+	 * <p>
+	 * By default this is the instance itself, i.e. the string is not shared with
+	 * other matchers. Subclasses deriving the string independent of their state
+	 * can opt in to sharing by returning {@link #getClass()}, so that subclasses
+	 * deriving the string differently don't share it.
+	 * 
+	 * @return a key equal to the keys of matchers deriving the same strings
+	 */
+	protected Object getStringSourceKey() {
+		return this;
+	}
+
+	Set<String> getSuffixes() {
+		return this.suffixes;
+	}
+
+	Set<String> getPrefixes() {
+		return this.prefixes;
+	}
+
+	boolean isConjunction() {
+		return this.conjunction;
+	}
+
+	/**
+	 * @return <code>true</code> if ASCII letters are matched ignoring their case
+	 */
+	boolean isCaseFolding() {
+		return false;
+	}
 }
@@ -0,0 +1,149 @@
+package org.codeturnery.tree;
+
+import java.util.Arrays;
+
+/**
+ * A trie of strings, each associated with <code>int</code> values, to find all
+ * stored strings that are a prefix of a given string with a single pass over
+ * it. If the trie is created as reversed, the strings are stored from their
+ * last character to their first one and all stored strings that are a suffix of
+ * a given string are found instead. Optionally ASCII letters are matched
+ * ignoring their case.
+ * <p>
+ * The children of each trie node are stored in a sorted array and looked up via
+ * binary search, so that no characters are boxed. Instances must be completely
+ * filled before they are read and are thread-safe afterwards.
+ */
+class StringTrie {
+	private static final char[] NO_LABELS = {};
+	private static final TrieNode[] NO_CHILDREN = {};
+	private static final int[] NO_VALUES = {};
+
+	private final boolean reversed;
+	private final boolean foldCase;
+	private final TrieNode root = new TrieNode();
+	private boolean empty = true;
+
+	/**
+	 * @param reversed <code>false</code> to match prefixes, <code>true</code> to
+	 *                 match suffixes
+	 * @param foldCase <code>true</code> to treat ASCII upper case letters as their
+	 *                 lower case counterparts
+	 */
+	StringTrie(final boolean reversed, final boolean foldCase) {
+		this.reversed = reversed;
+		this.foldCase = foldCase;
+	}
+
+	/**
+	 * @return <code>true</code> if no string was added yet
+	 */
+	boolean isEmpty() {
+		return this.empty;
+	}
+
+	/**
+	 * Add the given string with the given value. A string may be added multiple
+	 * times with different values.
+	 *
+	 * @param string the prefix or suffix to store
+	 * @param value  the value to report if the string matches
+	 */
+	void add(final String string, final int value) {
+		TrieNode node = this.root;
+		final int length = string.length();
+		for (int offset = 0; offset < length; offset++) {
+			node = node.getOrAddChild(charAt(string, length, offset));
+		}
+		node.values = Arrays.copyOf(node.values, node.values.length + 1);
+		node.values[node.values.length - 1] = value;
+		this.empty = false;
+	}
+
+	/**
+	 * Set the bits of the values of all stored strings that are a prefix (or
+	 * suffix, if this instance is reversed) of the given string.
+	 *
+	 * @param string  the string to match
+	 * @param matches the bit set to set the bits of the matching values in
+	 */
+	void addMatches(final String string, final long[] matches) {
+		TrieNode node = this.root;
+		addValues(node, matches);
+		final int length = string.length();
+		for (int offset = 0; offset < length; offset++) {
+			final int childIndex = Arrays.binarySearch(node.labels, charAt(string, length, offset));
+			if (childIndex < 0) {
+				return;
+			}
+			node = node.children[childIndex];
+			addValues(node, matches);
+		}
+	}
+
+	/**
+	 * @param string the string to match
+	 * @return <code>true</code> if any stored string is a prefix (or suffix, if
+	 *         this instance is reversed) of the given string
+	 */
+	boolean matchesAny(final String string) {
+		TrieNode node = this.root;
+		final int length = string.length();
+		for (int offset = 0; node.values.length == 0; offset++) {
+			if (offset == length) {
+				return false;
+			}
+			final int childIndex = Arrays.binarySearch(node.labels, charAt(string, length, offset));
+			if (childIndex < 0) {
+				return false;
+			}
+			node = node.children[childIndex];
+		}
+		return true;
+	}
+
+	private char charAt(final String string, final int length, final int offset) {
+		final char character = string.charAt(this.reversed ? length - 1 - offset : offset);
+		return this.foldCase && character >= 'A' && character <= 'Z' ? (char) (character + ('a' - 'A')) : character;
+	}
+
+	private static void addValues(final TrieNode node, final long[] matches) {
+		for (final int value : node.values) {
+			matches[value >>> 6] |= 1L << value;
+		}
+	}
+
+	private static final class TrieNode {
+		/**
+		 * The sorted characters leading to the {@link #children} at the same index.
+		 */
+		private char[] labels = NO_LABELS;
+		private TrieNode[] children = NO_CHILDREN;
+		/**
+		 * The values of the strings ending at this node.
+		 */
+		private int[] values = NO_VALUES;
+
+		TrieNode getOrAddChild(final char label) {
+			final int childIndex = Arrays.binarySearch(this.labels, label);
+			if (childIndex >= 0) {
+				return this.children[childIndex];
+			}
+			final int insertionIndex = -childIndex - 1;
+			final var child = new TrieNode();
+			final var newLabels = new char[this.labels.length + 1];
+			final var newChildren = new TrieNode[this.children.length + 1];
+			System.arraycopy(this.labels, 0, newLabels, 0, insertionIndex);
+			System.arraycopy(this.children, 0, newChildren, 0, insertionIndex);
+			newLabels[insertionIndex] = label;
+			newChildren[insertionIndex] = child;
+			System.arraycopy(this.labels, insertionIndex, newLabels, insertionIndex + 1,
+					this.labels.length - insertionIndex);
+			System.arraycopy(this.children, insertionIndex, newChildren, insertionIndex + 1,
+					this.children.length - insertionIndex);
+			this.labels = newLabels;
+			this.children = newChildren;
+			return child;
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package org.codeturnery.tree;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * {@link Spliterator} over a node and all its descendants in depth-first
+ * pre-order, the children of a node in the order of
+ * {@link ChildableNode#forEachChild}.
+ * <p>
+ * The nodes still to be traversed are kept as a stack of subtrees. Splitting
+ * hands the first half of these subtrees to the returned instance, so that
+ * parallel streams process whole subtrees in different threads while the
+ * encounter order is preserved. If only a single subtree is left, its root is
+ * separated from its children first.
+ * <p>
+ * The size of a tree is not known without traversing it, which may be
+ * expensive, e.g. listing directories. Hence, like for other spliterators of
+ * unknown size, the size is initially estimated as {@link Long#MAX_VALUE} and,
+ * as in the spliterators of {@link java.util.TreeMap}, the estimate is halved
+ * with each split. Thus a parallel stream splits a tree into a number of parts
+ * depending on its parallelism, without accessing any node to do so.
+ *
+ * @param <N> the type of the traversed nodes
+ */
+public class TreeSpliterator<N extends ChildableNode<N>> implements Spliterator<N> {
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * The pending nodes, the top one being the next.
+	 */
+	private Object[] stackNodes;
+	/**
+	 * For each node in {@link #stackNodes} if its children are pending as well,
+	 * <code>false</code> if the node was separated from its children by a split.
+	 */
+	private boolean[] stackSubtrees;
+	private int stackSize;
+	/**
+	 * The estimated size, halved with each split.
+	 */
+	private long estimatedSize;
+	private final Consumer<N> pushChild = child -> push(child, true);
+
+	/**
+	 * @param root the node to traverse together with its descendants
+	 */
+	public TreeSpliterator(final N root) {
+		this(new Object[INITIAL_CAPACITY], new boolean[INITIAL_CAPACITY], 0, Long.MAX_VALUE);
+		push(root, true);
+	}
+
+	private TreeSpliterator(final Object[] stackNodes, final boolean[] stackSubtrees, final int stackSize,
+			final long estimatedSize) {
+		this.stackNodes = stackNodes;
+		this.stackSubtrees = stackSubtrees;
+		this.stackSize = stackSize;
+		this.estimatedSize = estimatedSize;
+	}
+
+	@Override
+	public boolean tryAdvance(final Consumer<? super N> action) {
+		if (this.stackSize == 0) {
+			return false;
+		}
+		action.accept(pop());
+		return true;
+	}
+
+	@Override
+	public void forEachRemaining(final Consumer<? super N> action) {
+		while (this.stackSize > 0) {
+			action.accept(pop());
+		}
+	}
+
+	@Override
+	public @Nullable Spliterator<N> trySplit() {
+		if (this.stackSize == 1 && this.stackSubtrees[0]) {
+			// separate the root of the only subtree from its children, so that they can
+			// be split
+			@SuppressWarnings("unchecked")
+			final N root = (N) this.stackNodes[0];
+			this.stackSize = 0;
+			pushChildren(root);
+			push(root, false);
+		}
+		if (this.stackSize < 2) {
+			return null;
+		}
+		// the top of the stack contains the subtrees to be traversed first
+		final int prefixSize = this.stackSize / 2;
+		final int prefixStart = this.stackSize - prefixSize;
+		final int prefixCapacity = Math.max(INITIAL_CAPACITY, prefixSize * 2);
+		final var prefixNodes = new Object[prefixCapacity];
+		final var prefixSubtrees = new boolean[prefixCapacity];
+		System.arraycopy(this.stackNodes, prefixStart, prefixNodes, 0, prefixSize);
+		System.arraycopy(this.stackSubtrees, prefixStart, prefixSubtrees, 0, prefixSize);
+		Arrays.fill(this.stackNodes, prefixStart, this.stackSize, null);
+		this.stackSize = prefixStart;
+		this.estimatedSize >>>= 1;
+		return new TreeSpliterator<>(prefixNodes, prefixSubtrees, prefixSize, this.estimatedSize);
+	}
+
+	/**
+	 * @return 0 if no nodes are left, the estimate otherwise, see the class
+	 *         documentation
+	 */
+	@Override
+	public long estimateSize() {
+		return this.stackSize == 0 ? 0 : this.estimatedSize;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | NONNULL;
+	}
+
+	@SuppressWarnings("unchecked")
+	private N pop() {
+		this.stackSize--;
+		final N node = (N) this.stackNodes[this.stackSize];
+		final boolean subtree = this.stackSubtrees[this.stackSize];
+		this.stackNodes[this.stackSize] = null;
+		if (subtree) {
+			pushChildren(node);
+		}
+		return node;
+	}
+
+	/**
+	 * Push the children of the given node, in reversed order so that the first
+	 * child is on top.
+	 */
+	private void pushChildren(final N node) {
+		final int firstIndex = this.stackSize;
+		node.forEachChild(this.pushChild);
+		for (int low = firstIndex, high = this.stackSize - 1; low < high; low++, high--) {
+			final Object child = this.stackNodes[low];
+			this.stackNodes[low] = this.stackNodes[high];
+			this.stackNodes[high] = child;
+		}
+	}
+
+	private void push(final N node, final boolean subtree) {
+		if (this.stackSize == this.stackNodes.length) {
+			this.stackNodes = Arrays.copyOf(this.stackNodes, this.stackSize * 2);
+			this.stackSubtrees = Arrays.copyOf(this.stackSubtrees, this.stackSize * 2);
+		}
+		this.stackNodes[this.stackSize] = node;
+		this.stackSubtrees[this.stackSize] = subtree;
+		this.stackSize++;
+	}
+}
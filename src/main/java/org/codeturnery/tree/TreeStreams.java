@@ -0,0 +1,65 @@
+package org.codeturnery.tree;
+
+import java.util.ArrayDeque;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Provides streams over a node and all its descendants, which can be processed
+ * in parallel, e.g. to evaluate predicates or to digest files in the common
+ * pool.
+ */
+public class TreeStreams {
+	private TreeStreams() {
+	}
+
+	/**
+	 * Stream the given node and its descendants in depth-first pre-order.
+	 * <p>
+	 * A parallel stream is split at subtrees via {@link TreeSpliterator}, the
+	 * encounter order is preserved nevertheless.
+	 *
+	 * @param <N>      the type of the streamed nodes
+	 * @param root     the first node of the stream
+	 * @param parallel <code>true</code> for a parallel stream
+	 * @return the lazily traversed nodes
+	 */
+	public static <N extends ChildableNode<N>> Stream<N> depthFirst(final N root, final boolean parallel) {
+		return StreamSupport.stream(new TreeSpliterator<>(root), parallel);
+	}
+
+	/**
+	 * Stream the given node and its descendants in breadth-first order, i.e.
+	 * level by level.
+	 * <p>
+	 * As the nodes of a level are not within a single subtree, a parallel stream
+	 * is split by buffering batches of nodes, which are then processed in parallel.
+	 *
+	 * @param <N>      the type of the streamed nodes
+	 * @param root     the first node of the stream
+	 * @param parallel <code>true</code> for a parallel stream
+	 * @return the lazily traversed nodes
+	 */
+	public static <N extends ChildableNode<N>> Stream<N> breadthFirst(final N root, final boolean parallel) {
+		final var queue = new ArrayDeque<N>();
+		queue.add(root);
+		final Consumer<N> enqueue = queue::add;
+		final Spliterator<N> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+				Spliterator.ORDERED | Spliterator.NONNULL) {
+			@Override
+			public boolean tryAdvance(final Consumer<? super N> action) {
+				final N node = queue.poll();
+				if (node == null) {
+					return false;
+				}
+				node.forEachChild(enqueue);
+				action.accept(node);
+				return true;
+			}
+		};
+		return StreamSupport.stream(spliterator, parallel);
+	}
+}
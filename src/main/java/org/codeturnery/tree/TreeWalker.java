@@ -0,0 +1,193 @@
+package org.codeturnery.tree;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Walks the descendants of nodes depth-first, skipping the children not
+ * matching a filter, like {@link ChildFilteringNode} but without wrapping each
+ * node or creating a stream per level.
+ * <p>
+ * The nodes are kept on an explicit stack, which is reused by all walks of an
+ * instance, so that deep trees can't overflow the call stack and, once the
+ * stack has grown to the width of the walked trees, no objects are allocated
+ * per visited node by the walk itself. Whether accessing the children of a node
+ * allocates depends on its {@link ChildableNode#forEachChild} implementation.
+ * <p>
+ * Instances are not thread-safe and must not be used for a nested walk while
+ * walking.
+ *
+ * @param <N> the type of the walked nodes
+ */
+public class TreeWalker<N extends ChildableNode<N>> {
+	/**
+	 * Receives the nodes of a walk.
+	 *
+	 * @param <N> the type of the walked nodes
+	 */
+	public interface Visitor<N> {
+		/**
+		 * Called for each node matching the filter, before its children.
+		 *
+		 * @param node  the visited node
+		 * @param depth the depth of the node, 1 for the children of the walked node
+		 * @return <code>true</code> to visit the children of the node,
+		 *         <code>false</code> to skip them
+		 */
+		boolean enter(N node, int depth);
+
+		/**
+		 * Called for each entered node after its children were visited or skipped.
+		 *
+		 * @param node  the visited node
+		 * @param depth the depth of the node, 1 for the children of the walked node
+		 */
+		default void leave(final N node, final int depth) {
+			// nothing to do by default
+		}
+	}
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final Predicate<N> filter;
+	private final boolean recursive;
+
+	/**
+	 * The nodes to visit, the top one being the next.
+	 */
+	private Object[] stackNodes = new Object[INITIAL_CAPACITY];
+	/**
+	 * The depth of each node in {@link #stackNodes}; the complement of the depth
+	 * if the node is to be left instead of entered.
+	 */
+	private int[] stackDepths = new int[INITIAL_CAPACITY];
+	private int stackSize = 0;
+	private boolean walking = false;
+
+	/**
+	 * The depth of the children currently pushed by {@link #pushChild}.
+	 */
+	private int pushDepth;
+	private long count;
+	private final Consumer<N> pushChild = this::pushIfMatching;
+	private final Consumer<N> countChild = this::countIfMatching;
+	private final Visitor<N> countVisitor = (node, depth) -> {
+		this.count++;
+		return true;
+	};
+
+	/**
+	 * @param filter    the filter children must match to be visited; a child not
+	 *                  matching is skipped together with all its descendants
+	 * @param recursive if the filter should be applied on all levels; if
+	 *                  <code>false</code>, it is applied to the children of the
+	 *                  walked node only
+	 */
+	public TreeWalker(final Predicate<N> filter, final boolean recursive) {
+		this.filter = filter;
+		this.recursive = recursive;
+	}
+
+	/**
+	 * Visit the descendants of the given node matching the filter in depth-first
+	 * pre-order, the children of a node in the order of
+	 * {@link ChildableNode#forEachChild}. The given node itself is not visited.
+	 *
+	 * @param root    the node to walk the descendants of
+	 * @param visitor receives the visited nodes
+	 * @throws IllegalStateException thrown if this instance is already walking
+	 */
+	@SuppressWarnings("unchecked")
+	public void walk(final ChildableNode<N> root, final Visitor<? super N> visitor) throws IllegalStateException {
+		if (this.walking) {
+			throw new IllegalStateException("This instance is already walking");
+		}
+		this.walking = true;
+		try {
+			pushChildren(root, 1);
+			while (this.stackSize > 0) {
+				this.stackSize--;
+				final N node = (N) this.stackNodes[this.stackSize];
+				final int depth = this.stackDepths[this.stackSize];
+				this.stackNodes[this.stackSize] = null;
+				if (depth < 0) {
+					visitor.leave(node, ~depth);
+				} else if (visitor.enter(node, depth)) {
+					push(node, ~depth);
+					pushChildren(node, depth + 1);
+				} else {
+					visitor.leave(node, depth);
+				}
+			}
+		} finally {
+			Arrays.fill(this.stackNodes, 0, this.stackSize, null);
+			this.stackSize = 0;
+			this.walking = false;
+		}
+	}
+
+	/**
+	 * @param node the node to count the children of
+	 * @return the number of children of the given node matching the filter; 0 if
+	 *         the node can't have children
+	 */
+	public int countChildren(final ChildableNode<N> node) {
+		this.count = 0;
+		node.forEachChild(this.countChild);
+		return Math.toIntExact(this.count);
+	}
+
+	/**
+	 * @param root the node to count the descendants of
+	 * @return the number of descendants of the given node that are visited by
+	 *         {@link #walk}
+	 * @throws IllegalStateException thrown if this instance is already walking
+	 */
+	public long countDescendants(final ChildableNode<N> root) throws IllegalStateException {
+		this.count = 0;
+		walk(root, this.countVisitor);
+		return this.count;
+	}
+
+	/**
+	 * Push the matching children of the given node, in reversed order so that the
+	 * first child is on top.
+	 */
+	private void pushChildren(final ChildableNode<N> parent, final int depth) {
+		final int firstIndex = this.stackSize;
+		this.pushDepth = depth;
+		parent.forEachChild(this.pushChild);
+		for (int low = firstIndex, high = this.stackSize - 1; low < high; low++, high--) {
+			final Object node = this.stackNodes[low];
+			this.stackNodes[low] = this.stackNodes[high];
+			this.stackNodes[high] = node;
+		}
+	}
+
+	private void pushIfMatching(final N child) {
+		if (!isFiltered(this.pushDepth) || this.filter.test(child)) {
+			push(child, this.pushDepth);
+		}
+	}
+
+	private void countIfMatching(final N child) {
+		if (this.filter.test(child)) {
+			this.count++;
+		}
+	}
+
+	private boolean isFiltered(final int depth) {
+		return this.recursive || depth == 1;
+	}
+
+	private void push(final N node, final int depth) {
+		if (this.stackSize == this.stackNodes.length) {
+			this.stackNodes = Arrays.copyOf(this.stackNodes, this.stackSize * 2);
+			this.stackDepths = Arrays.copyOf(this.stackDepths, this.stackSize * 2);
+		}
+		this.stackNodes[this.stackSize] = node;
+		this.stackDepths[this.stackSize] = depth;
+		this.stackSize++;
+	}
+}
@@ -0,0 +1,64 @@
+package org.codeturnery.tree;
+
+import java.util.Set;
+
+/**
+ * {@link StringMatcher} storing its suffixes in a reversed-suffix trie and its
+ * prefixes in a prefix trie, both built once on construction. Testing a string
+ * then costs at most a single pass over it per trie, regardless of the number
+ * of suffixes and prefixes, instead of one comparison per suffix and prefix.
+ * <p>
+ * Optionally ASCII letters are matched ignoring their case, e.g. to match the
+ * suffix <code>.jpg</code> against <code>IMAGE.JPG</code>. Other characters are
+ * always matched exactly.
+ * <p>
+ * Instances are thread-safe if {@link #getString} is.
+ *
+ * @param <T> the type of nodes this predicate can be applied on
+ */
+abstract public class TrieStringMatcher<T> extends StringMatcher<T> {
+	private final StringTrie suffixTrie;
+	private final StringTrie prefixTrie;
+	private final boolean foldCase;
+
+	/**
+	 * @param suffixes    the suffixes against strings should be checked
+	 * @param prefixes    the prefixes against strings should be checked
+	 * @param conjunction If <code>true</code>, at least one suffix and one prefix
+	 *                    must match for a positive evaluation; if
+	 *                    <code>false</code>, either one suffix or one prefix must
+	 *                    match for a positive evaluation.
+	 * @param foldCase    If <code>true</code>, ASCII letters are matched ignoring
+	 *                    their case.
+	 */
+	public TrieStringMatcher(final Set<String> suffixes, final Set<String> prefixes, final boolean conjunction,
+			final boolean foldCase) {
+		super(suffixes, prefixes, conjunction);
+		this.foldCase = foldCase;
+		this.suffixTrie = createTrie(suffixes, true, foldCase);
+		this.prefixTrie = createTrie(prefixes, false, foldCase);
+	}
+
+	@Override
+	protected boolean testSuffixes(final String string) {
+		return this.suffixTrie.matchesAny(string);
+	}
+
+	@Override
+	protected boolean testPrefixes(final String string) {
+		return this.prefixTrie.matchesAny(string);
+	}
+
+	@Override
+	boolean isCaseFolding() {
+		return this.foldCase;
+	}
+
+	private static StringTrie createTrie(final Set<String> strings, final boolean reversed, final boolean foldCase) {
+		final var trie = new StringTrie(reversed, foldCase);
+		for (final String string : strings) {
+			trie.add(string, 0);
+		}
+		return trie;
+	}
+}
@@ -0,0 +1,83 @@
+package org.codeturnery.tree.directory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Like {@link FsGroupingNode}, but ZIP archives found in directories are
+ * represented by {@link ZipArchiveNode}s, so that their entries are provided as
+ * children instead of treating the archives as files.
+ * <p>
+ * The archive nodes created when listing a directory are reused by later
+ * listings of it, as long as the archive is still present. Hence the central
+ * directory of each archive is read only once and the groups and hashes cached
+ * for an archive and its entries stay valid. Changes to an archive after it
+ * was read are not reflected, unless the directory containing it is listed
+ * through a new node.
+ */
+public class ArchiveAwareFsGroupingNode extends FsGroupingNode {
+	private static final String ZIP_SUFFIX = ".zip";
+
+	/**
+	 * The archive nodes created by the last listing of this directory.
+	 */
+	private volatile Map<Path, ZipArchiveNode> archives = Map.of();
+
+	/**
+	 * Create a node for which no parent exists (i.e. a root node).
+	 *
+	 * @param path the path to a file or directory in the file system
+	 */
+	public ArchiveAwareFsGroupingNode(final Path path) {
+		super(path);
+	}
+
+	/**
+	 * Create a child node with the given parent.
+	 * <p>
+	 * <strong>The child will not automatically be added to the parent
+	 * node.</strong>
+	 *
+	 * @param path   the path to a file or directory in the file system
+	 * @param parent the parent of this node, <code>null</code> for a root node
+	 */
+	protected ArchiveAwareFsGroupingNode(final Path path, final @Nullable FsGroupingNode parent) {
+		super(path, parent);
+	}
+
+	@Override
+	protected List<FsGroupingNode> createChildren(final Iterable<Path> directoryPaths) {
+		final Map<Path, ZipArchiveNode> previousArchives = this.archives;
+		final var currentArchives = new HashMap<Path, ZipArchiveNode>();
+		final var result = new ArrayList<FsGroupingNode>();
+		for (final Path path : directoryPaths) {
+			if (isZipArchive(path)) {
+				@Nullable
+				ZipArchiveNode archive = previousArchives.get(path);
+				if (archive == null) {
+					archive = new ZipArchiveNode(path, this);
+				}
+				currentArchives.put(path, archive);
+				result.add(archive);
+			} else {
+				result.add(new ArchiveAwareFsGroupingNode(path, this));
+			}
+		}
+		this.archives = currentArchives;
+
+		return result;
+	}
+
+	private static boolean isZipArchive(final Path path) {
+		final @Nullable Path fileName = path.getFileName();
+		return fileName != null && fileName.toString().toLowerCase(Locale.ROOT).endsWith(ZIP_SUFFIX)
+				&& Files.isRegularFile(path);
+	}
+}
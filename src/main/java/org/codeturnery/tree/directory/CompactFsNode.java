@@ -0,0 +1,154 @@
+package org.codeturnery.tree.directory;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.codeturnery.tree.AbstractChildableNode;
+import org.codeturnery.tree.TreeNodeInterface;
+import org.codeturnery.typesystem.Optionals;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Lightweight view on a single node of a {@link CompactFsTree}.
+ * <p>
+ * Instances only consist of a reference to the tree and the index of the node.
+ * They are created on access and not cached, hence two instances are equal if
+ * they represent the same index in the same tree, allowing to use them as keys
+ * in {@link org.codeturnery.tree.Grouper} and {@link org.codeturnery.tree.Hasher}
+ * caches.
+ */
+public class CompactFsNode extends AbstractChildableNode<CompactFsNode> implements TreeNodeInterface<CompactFsNode> {
+	private final CompactFsTree tree;
+	private final int index;
+
+	CompactFsNode(final CompactFsTree tree, final int index) {
+		this.tree = tree;
+		this.index = index;
+	}
+
+	/**
+	 * @return the index of this node in its tree
+	 */
+	public int getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * @return the tree this node is part of
+	 */
+	public CompactFsTree getTree() {
+		return this.tree;
+	}
+
+	/**
+	 * @return the file name of this node; the complete path for the root node
+	 */
+	public String getName() {
+		return this.tree.getName(this.index);
+	}
+
+	/**
+	 * @return the complete path of this node
+	 */
+	public Path getPath() {
+		return this.tree.getPath(this.index);
+	}
+
+	/**
+	 * @return the size in bytes of this node
+	 */
+	public long getSize() {
+		return this.tree.getSize(this.index);
+	}
+
+	/**
+	 * @return <code>true</code> if this node represents a directory
+	 */
+	public boolean isDirectory() {
+		return this.tree.isDirectory(this.index);
+	}
+
+	@Override
+	public @Nullable CompactFsNode getParent() {
+		final int parentIndex = this.tree.getParentIndex(this.index);
+		return parentIndex < 0 ? null : this.tree.getNode(parentIndex);
+	}
+
+	@Override
+	public Optional<List<CompactFsNode>> getChildren() {
+		if (!isDirectory()) {
+			return Optionals.empty();
+		}
+		final int firstChild = this.tree.getFirstChildIndex(this.index);
+		final int childCount = this.tree.getChildCount(this.index);
+		final var children = new ArrayList<CompactFsNode>(childCount);
+		for (int i = 0; i < childCount; i++) {
+			children.add(this.tree.getNode(firstChild + i));
+		}
+		return Optionals.of(children);
+	}
+
+	@SuppressWarnings("null")
+	@Override
+	public Optional<Stream<CompactFsNode>> getChildrenStream() {
+		if (!isDirectory()) {
+			return Optionals.empty();
+		}
+		final int firstChild = this.tree.getFirstChildIndex(this.index);
+		return Optionals.of(IntStream.range(firstChild, firstChild + this.tree.getChildCount(this.index))
+				.mapToObj(this.tree::getNode));
+	}
+
+	@Override
+	public int getChildrenCount() {
+		return this.tree.getChildCount(this.index);
+	}
+
+	@Override
+	public boolean isLeaf() {
+		return !isDirectory();
+	}
+
+	@Override
+	public CompactFsNode getChild(final int index) throws IndexOutOfBoundsException {
+		Objects.checkIndex(index, getChildrenCount());
+		return this.tree.getNode(this.tree.getFirstChildIndex(this.index) + index);
+	}
+
+	@Override
+	public void forEachChild(final Consumer<? super CompactFsNode> action) {
+		if (!isDirectory()) {
+			return;
+		}
+		final int firstChild = this.tree.getFirstChildIndex(this.index);
+		final int childCount = this.tree.getChildCount(this.index);
+		for (int i = 0; i < childCount; i++) {
+			action.accept(this.tree.getNode(firstChild + i));
+		}
+	}
+
+	@Override
+	public boolean equals(final @Nullable Object other) {
+		if (!(other instanceof CompactFsNode)) {
+			return false;
+		}
+		final var otherNode = (CompactFsNode) other;
+		return this.tree == otherNode.tree && this.index == otherNode.index;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * System.identityHashCode(this.tree) + this.index;
+	}
+
+	@Override
+	public String toString() {
+		return getName();
+	}
+}
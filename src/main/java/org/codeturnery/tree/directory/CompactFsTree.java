@@ -0,0 +1,281 @@
+package org.codeturnery.tree.directory;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Memory efficient representation of a file system tree, with all node
+ * information stored in primitive arrays.
+ * <p>
+ * The nodes are stored in breadth-first order and identified by their index,
+ * with the root node having the index <code>0</code>. This ordering places the
+ * children of each node at consecutive indexes, so that the children of all
+ * nodes can be stored in compressed sparse row layout: the children of the node
+ * <code>i</code> are the nodes from <code>childOffsets[i]</code> (inclusive) to
+ * <code>childOffsets[i + 1]</code> (exclusive). The UTF-8 encoded names of all
+ * nodes are stored in a single shared byte array in the same way.
+ * <p>
+ * Per node this results in about 21 bytes plus the length of its name (parent
+ * index, child offset, name offset, flags and size), instead of a {@link Path}
+ * and a node instance for each file. Node instances ({@link CompactFsNode}) are
+ * only created as lightweight views when accessed and are equal if they
+ * represent the same index in the same tree.
+ * <p>
+ * Instances are immutable and thus thread-safe.
+ */
+public class CompactFsTree {
+	private static final byte FLAG_DIRECTORY = 1;
+
+	/**
+	 * The index of the parent of each node, <code>-1</code> for the root node.
+	 */
+	private final int[] parents;
+	/**
+	 * The index of the first child of each node, with an additional entry at the
+	 * end, so that <code>childOffsets[i + 1] - childOffsets[i]</code> is the
+	 * number of children of the node <code>i</code>.
+	 */
+	private final int[] childOffsets;
+	/**
+	 * The flags of each node, currently only {@link #FLAG_DIRECTORY}.
+	 */
+	private final byte[] flags;
+	/**
+	 * The size in bytes of each node.
+	 */
+	private final long[] sizes;
+	/**
+	 * The position of the name of each node in {@link #namePool}, with an
+	 * additional entry at the end.
+	 */
+	private final int[] nameOffsets;
+	/**
+	 * The UTF-8 encoded names of all nodes. The root node has its complete path as
+	 * name, all other nodes their file name.
+	 */
+	private final byte[] namePool;
+
+	private CompactFsTree(final int[] parents, final int[] childOffsets, final byte[] flags, final long[] sizes,
+			final int[] nameOffsets, final byte[] namePool) {
+		this.parents = parents;
+		this.childOffsets = childOffsets;
+		this.flags = flags;
+		this.sizes = sizes;
+		this.nameOffsets = nameOffsets;
+		this.namePool = namePool;
+	}
+
+	/**
+	 * Create a compact copy of the tree below the given node.
+	 * <p>
+	 * Sizes are only available for {@link FsSnapshotNode}s and set to
+	 * <code>0</code> for other nodes.
+	 *
+	 * @param root the root of the tree to copy
+	 * @return the created tree
+	 */
+	@SuppressWarnings("null")
+	public static CompactFsTree of(final FsGroupingNode root) {
+		final var nodes = new ArrayList<FsGroupingNode>();
+		nodes.add(root);
+		for (int i = 0; i < nodes.size(); i++) {
+			nodes.get(i).getChildren().ifPresent(nodes::addAll);
+		}
+
+		final int nodeCount = nodes.size();
+		final var parents = new int[nodeCount];
+		final var childOffsets = new int[nodeCount + 1];
+		final var flags = new byte[nodeCount];
+		final var sizes = new long[nodeCount];
+		final var nameOffsets = new int[nodeCount + 1];
+		final var names = new NamePoolBuilder();
+
+		parents[0] = -1;
+		int nextChild = 1;
+		for (int i = 0; i < nodeCount; i++) {
+			final FsGroupingNode node = nodes.get(i);
+			childOffsets[i] = nextChild;
+			final @Nullable List<FsGroupingNode> children = node.getChildren().orElse(null);
+			if (children != null) {
+				flags[i] = FLAG_DIRECTORY;
+				for (int j = 0; j < children.size(); j++) {
+					parents[nextChild + j] = i;
+				}
+				nextChild += children.size();
+			}
+			if (node instanceof FsSnapshotNode) {
+				sizes[i] = ((FsSnapshotNode) node).getSize();
+			}
+			final @Nullable Path fileName = node.getPath().getFileName();
+			nameOffsets[i] = names.length();
+			names.add(i == 0 || fileName == null ? node.getPath().toString() : fileName.toString());
+		}
+		childOffsets[nodeCount] = nextChild;
+		nameOffsets[nodeCount] = names.length();
+
+		return new CompactFsTree(parents, childOffsets, flags, sizes, nameOffsets, names.toArray());
+	}
+
+	/**
+	 * Create a compact copy of the tree stored in the given index.
+	 * <p>
+	 * As the index uses the same breadth-first order, no node instances need to be
+	 * created.
+	 *
+	 * @param index the index to copy the tree from
+	 * @return the created tree
+	 */
+	public static CompactFsTree of(final FsSnapshotIndex index) {
+		final int nodeCount = index.getNodeCount();
+		final var parents = new int[nodeCount];
+		final var childCounts = new int[nodeCount + 1];
+		final var flags = new byte[nodeCount];
+		final var sizes = new long[nodeCount];
+		final var nameOffsets = new int[nodeCount + 1];
+		final var names = new NamePoolBuilder();
+
+		for (int i = 0; i < nodeCount; i++) {
+			final int parentIndex = index.getParentIndex(i);
+			parents[i] = parentIndex;
+			if (parentIndex >= 0) {
+				childCounts[parentIndex]++;
+			}
+			flags[i] = index.isDirectory(i) ? FLAG_DIRECTORY : 0;
+			sizes[i] = index.getSize(i);
+			nameOffsets[i] = names.length();
+			names.add(index.getName(i));
+		}
+		nameOffsets[nodeCount] = names.length();
+
+		// convert the counts into offsets, the children of the root start at 1
+		final int[] childOffsets = childCounts;
+		int nextChild = 1;
+		for (int i = 0; i <= nodeCount; i++) {
+			final int childCount = childOffsets[i];
+			childOffsets[i] = nextChild;
+			nextChild += childCount;
+		}
+
+		return new CompactFsTree(parents, childOffsets, flags, sizes, nameOffsets, names.toArray());
+	}
+
+	/**
+	 * @return the node with the index <code>0</code>
+	 */
+	public CompactFsNode getRoot() {
+		return getNode(0);
+	}
+
+	/**
+	 * @param index the index of the node
+	 * @return a view on the node with the given index
+	 */
+	public CompactFsNode getNode(final int index) {
+		return new CompactFsNode(this, index);
+	}
+
+	/**
+	 * @return the number of nodes in this tree
+	 */
+	public int getNodeCount() {
+		return this.parents.length;
+	}
+
+	/**
+	 * @param index the index of the node
+	 * @return the index of the parent node, <code>-1</code> for the root node
+	 */
+	public int getParentIndex(final int index) {
+		return this.parents[index];
+	}
+
+	/**
+	 * @param index the index of the node
+	 * @return the index of the first child of the node; only meaningful if the
+	 *         node has any children
+	 */
+	public int getFirstChildIndex(final int index) {
+		return this.childOffsets[index];
+	}
+
+	/**
+	 * @param index the index of the node
+	 * @return the number of children of the node
+	 */
+	public int getChildCount(final int index) {
+		return this.childOffsets[index + 1] - this.childOffsets[index];
+	}
+
+	/**
+	 * @param index the index of the node
+	 * @return <code>true</code> if the node represents a directory
+	 */
+	public boolean isDirectory(final int index) {
+		return (this.flags[index] & FLAG_DIRECTORY) != 0;
+	}
+
+	/**
+	 * @param index the index of the node
+	 * @return the size in bytes of the node
+	 */
+	public long getSize(final int index) {
+		return this.sizes[index];
+	}
+
+	/**
+	 * @param index the index of the node
+	 * @return the file name of the node; the complete path for the root node
+	 */
+	public String getName(final int index) {
+		final int start = this.nameOffsets[index];
+		return new String(this.namePool, start, this.nameOffsets[index + 1] - start, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param index the index of the node
+	 * @return the complete path of the node
+	 */
+	@SuppressWarnings("null")
+	public Path getPath(final int index) {
+		final int parentIndex = this.parents[index];
+		return parentIndex < 0 ? Path.of(getName(index)) : getPath(parentIndex).resolve(getName(index));
+	}
+
+	/**
+	 * Growable byte array to collect the UTF-8 encoded names in.
+	 */
+	private static class NamePoolBuilder {
+		private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+		private byte[] bytes = new byte[1024];
+		private int length = 0;
+
+		void add(final String name) {
+			final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+			final long requiredLength = (long) this.length + nameBytes.length;
+			if (requiredLength > MAX_ARRAY_LENGTH) {
+				throw new IllegalStateException("Names exceed the maximum array length.");
+			}
+			if (requiredLength > this.bytes.length) {
+				final long newLength = Math.max(this.bytes.length * 2L, requiredLength);
+				this.bytes = Arrays.copyOf(this.bytes, (int) Math.min(newLength, MAX_ARRAY_LENGTH));
+			}
+			System.arraycopy(nameBytes, 0, this.bytes, this.length, nameBytes.length);
+			this.length += nameBytes.length;
+		}
+
+		int length() {
+			return this.length;
+		}
+
+		@SuppressWarnings("null")
+		byte[] toArray() {
+			return Arrays.copyOf(this.bytes, this.length);
+		}
+	}
+}
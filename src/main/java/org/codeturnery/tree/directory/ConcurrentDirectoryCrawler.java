@@ -0,0 +1,226 @@
+package org.codeturnery.tree.directory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Crawls a directory tree by listing each directory in a separate task, while
+ * limiting the number of directories listed at the same time.
+ * <p>
+ * This is meant for file systems with a high latency (e.g. NFS or FUSE
+ * mounts), where a scan spends most of its time waiting for I/O. Running the
+ * tasks on virtual threads allows to have many listings in flight without the
+ * cost of a platform thread for each. The number of listings in flight is
+ * bounded by a {@link Semaphore}, to not overload the file system.
+ * <p>
+ * The resulting tree consists of {@link FsSnapshotNode}s, like the ones created
+ * by {@link ForkJoinDirectoryScanner}.
+ */
+public class ConcurrentDirectoryCrawler implements AutoCloseable {
+	/**
+	 * Executes the listing tasks.
+	 */
+	private final ExecutorService executor;
+	/**
+	 * <code>true</code> if the {@link #executor} was created by this instance and
+	 * needs to be shut down in {@link #close()}.
+	 */
+	private final boolean ownedExecutor;
+	/**
+	 * Limits the number of directories being listed at the same time.
+	 */
+	private final Semaphore ioPermits;
+
+	/**
+	 * Create an instance using virtual threads, if supported by the running JVM.
+	 * <p>
+	 * If virtual threads are not supported, a pool of platform threads is used
+	 * instead, sized to the given concurrency. Call {@link #close()} to shut down
+	 * the threads after usage.
+	 *
+	 * @param maxConcurrentIo the maximum number of directories listed at the same
+	 *                        time
+	 */
+	public ConcurrentDirectoryCrawler(final int maxConcurrentIo) {
+		this.executor = createExecutor(maxConcurrentIo);
+		this.ownedExecutor = true;
+		this.ioPermits = new Semaphore(maxConcurrentIo);
+	}
+
+	/**
+	 * Create an instance using the given executor. The executor will not be shut
+	 * down by {@link #close()}.
+	 *
+	 * @param executor        executes the listing tasks
+	 * @param maxConcurrentIo the maximum number of directories listed at the same
+	 *                        time
+	 */
+	public ConcurrentDirectoryCrawler(final ExecutorService executor, final int maxConcurrentIo) {
+		this.executor = executor;
+		this.ownedExecutor = false;
+		this.ioPermits = new Semaphore(maxConcurrentIo);
+	}
+
+	/**
+	 * Read the complete tree starting at the given path and wait for all listings
+	 * to finish.
+	 *
+	 * @param root the file or directory to crawl
+	 * @return the node representing the given path, with all its (sub-)children
+	 *         already read
+	 * @throws UncheckedIOException       thrown if a directory could not be listed
+	 * @throws RejectedExecutionException thrown if the executor did not accept a
+	 *                                    listing task, e.g. because it was shut
+	 *                                    down
+	 * @throws InterruptedException       thrown if the calling thread was
+	 *                                    interrupted while waiting for the
+	 *                                    listings
+	 */
+	public FsSnapshotNode crawl(final Path root)
+			throws UncheckedIOException, RejectedExecutionException, InterruptedException {
+		final var rootNode = new FsSnapshotNode(root, null, ForkJoinDirectoryScanner.readAttributes(root));
+		if (rootNode.isDirectory()) {
+			final var crawl = new Crawl();
+			crawl.submit(rootNode);
+			crawl.await();
+		}
+		return rootNode;
+	}
+
+	@Override
+	public void close() {
+		if (this.ownedExecutor) {
+			this.executor.shutdown();
+		}
+	}
+
+	/**
+	 * Uses <code>Executors.newVirtualThreadPerTaskExecutor()</code> if available
+	 * and falls back to a fixed pool of platform threads otherwise.
+	 *
+	 * @param platformThreadCount the number of platform threads to use if virtual
+	 *                            threads are not available
+	 * @return the created executor
+	 */
+	@SuppressWarnings("null")
+	private static ExecutorService createExecutor(final int platformThreadCount) {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (final NoSuchMethodException | IllegalAccessException | InvocationTargetException exception) {
+			return Executors.newFixedThreadPool(platformThreadCount, runnable -> {
+				final var thread = new Thread(runnable, ConcurrentDirectoryCrawler.class.getSimpleName());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * The state of a single {@link #crawl(Path)} invocation.
+	 */
+	private class Crawl {
+		/**
+		 * The number of submitted directories not completely processed yet.
+		 */
+		private final AtomicInteger pendingDirectories = new AtomicInteger();
+		/**
+		 * Released when {@link #pendingDirectories} reaches zero.
+		 */
+		private final CountDownLatch done = new CountDownLatch(1);
+		/**
+		 * The first failure encountered, if any.
+		 */
+		private final AtomicReference<@Nullable RuntimeException> failure = new AtomicReference<>();
+
+		/**
+		 * @throws RejectedExecutionException thrown if the executor did not accept the
+		 *                                    listing task; the crawl fails with it
+		 */
+		void submit(final FsSnapshotNode directory) throws RejectedExecutionException {
+			this.pendingDirectories.incrementAndGet();
+			try {
+				ConcurrentDirectoryCrawler.this.executor.execute(() -> {
+					try {
+						if (this.failure.get() == null) {
+							list(directory);
+						}
+					} catch (final RuntimeException exception) {
+						this.failure.compareAndSet(null, exception);
+					} finally {
+						finishDirectory();
+					}
+				});
+			} catch (final RejectedExecutionException exception) {
+				// the task will never run, so it can't count itself as done
+				this.failure.compareAndSet(null, exception);
+				finishDirectory();
+				throw exception;
+			}
+		}
+
+		private void finishDirectory() {
+			if (this.pendingDirectories.decrementAndGet() == 0) {
+				this.done.countDown();
+			}
+		}
+
+		/**
+		 * Lists the given directory while holding an I/O permit and submits each
+		 * sub-directory found. The sub-directories are submitted before this
+		 * directory is counted as done, so {@link #pendingDirectories} can't reach
+		 * zero before the whole tree was listed.
+		 */
+		private void list(final FsSnapshotNode directory) {
+			final var children = new ArrayList<FsGroupingNode>();
+			final var subdirectories = new ArrayList<FsSnapshotNode>();
+			try {
+				ConcurrentDirectoryCrawler.this.ioPermits.acquire();
+			} catch (final InterruptedException interruptedException) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(interruptedException);
+			}
+			try (@SuppressWarnings("null")
+			final @NonNull DirectoryStream<Path> directoryPaths = Files.newDirectoryStream(directory.getPath())) {
+				for (final Path path : directoryPaths) {
+					final var child = new FsSnapshotNode(path, directory,
+							ForkJoinDirectoryScanner.readAttributes(path));
+					children.add(child);
+					if (child.isDirectory()) {
+						subdirectories.add(child);
+					}
+				}
+			} catch (final IOException ioException) {
+				throw new UncheckedIOException(ioException);
+			} finally {
+				ConcurrentDirectoryCrawler.this.ioPermits.release();
+			}
+			directory.setChildren(children);
+			for (final FsSnapshotNode subdirectory : subdirectories) {
+				submit(subdirectory);
+			}
+		}
+
+		void await() throws InterruptedException {
+			this.done.await();
+			final @Nullable RuntimeException exception = this.failure.get();
+			if (exception != null) {
+				throw exception;
+			}
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package org.codeturnery.tree.directory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.codeturnery.bytes.BytesUtil;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Finds files with identical content without reading every byte of every file.
+ * <p>
+ * The files are filtered in multiple {@link Tier tiers}, each one only
+ * considering the files that were not proven to be unique by the previous one:
+ * <ol>
+ * <li>files are bucketed by their size, which requires no file content to be
+ * read</li>
+ * <li>the remaining files are bucketed by a {@link CRC32} of their first and
+ * last few KB</li>
+ * <li>only the remaining files are read completely to calculate a
+ * {@link MessageDigest}</li>
+ * </ol>
+ * The bytes read in each tier are reported in the resulting
+ * {@link DuplicateFileReport}.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class DuplicateFileFinder {
+	/**
+	 * The filtering steps applied to the files.
+	 */
+	public enum Tier {
+		/**
+		 * Bucketing by file size.
+		 */
+		SIZE,
+		/**
+		 * Bucketing by a {@link CRC32} of the first and last bytes.
+		 */
+		SAMPLE_CRC,
+		/**
+		 * Bucketing by a {@link MessageDigest} of the complete content.
+		 */
+		FULL_DIGEST
+	}
+
+	/**
+	 * The number of bytes read from the start and from the end of each file in
+	 * {@link Tier#SAMPLE_CRC}.
+	 */
+	private final int sampleSize;
+	private final ByteBuffer sampleBuffer;
+	private final byte[] digestBuffer;
+	private final MessageDigest messageDigest;
+
+	/**
+	 * @param sampleSize the number of bytes to read from the start and the end of
+	 *                   each file for the CRC; must be positive
+	 * @param algorithm  the {@link MessageDigest} algorithm to use for the full
+	 *                   comparison, e.g. <code>SHA-256</code>
+	 * @param bufferSize the size in bytes of the buffer to read files completely
+	 *                   with; must be positive
+	 * @throws NoSuchAlgorithmException thrown if the given algorithm is not
+	 *                                  available
+	 */
+	@SuppressWarnings("null")
+	public DuplicateFileFinder(final int sampleSize, final String algorithm, final int bufferSize)
+			throws NoSuchAlgorithmException {
+		if (sampleSize <= 0) {
+			throw new IllegalArgumentException("Sample size must be positive, got " + sampleSize);
+		}
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size must be positive, got " + bufferSize);
+		}
+		this.sampleSize = sampleSize;
+		this.sampleBuffer = ByteBuffer.allocate(sampleSize);
+		this.digestBuffer = new byte[bufferSize];
+		this.messageDigest = MessageDigest.getInstance(algorithm);
+	}
+
+	/**
+	 * Find the duplicates among all files in the given tree.
+	 *
+	 * @param root the tree to search for duplicate files
+	 * @return the files with identical content and the bytes read in each tier
+	 * @throws UncheckedIOException thrown if a file could not be read
+	 */
+	@SuppressWarnings("null")
+	public DuplicateFileReport find(final FsGroupingNode root) throws UncheckedIOException {
+		final var files = new ArrayList<FsGroupingNode>();
+		final var pending = new ArrayList<FsGroupingNode>();
+		pending.add(root);
+		while (!pending.isEmpty()) {
+			final FsGroupingNode node = pending.remove(pending.size() - 1);
+			final @Nullable List<FsGroupingNode> children = node.getChildren().orElse(null);
+			if (children == null) {
+				files.add(node);
+			} else {
+				pending.addAll(children);
+			}
+		}
+		return find(files);
+	}
+
+	/**
+	 * Find the duplicates among the given files.
+	 *
+	 * @param files the files to compare, must not contain directories
+	 * @return the files with identical content and the bytes read in each tier
+	 * @throws UncheckedIOException thrown if a file could not be read
+	 */
+	public DuplicateFileReport find(final Collection<? extends FsGroupingNode> files) throws UncheckedIOException {
+		final var bytesRead = new long[Tier.values().length];
+		final var candidateCounts = new int[Tier.values().length];
+
+		candidateCounts[Tier.SIZE.ordinal()] = files.size();
+		final var sizeBuckets = new LinkedHashMap<Long, List<FsGroupingNode>>();
+		for (final FsGroupingNode file : files) {
+			sizeBuckets.computeIfAbsent(Long.valueOf(getSize(file)), size -> new ArrayList<>()).add(file);
+		}
+
+		final var duplicates = new ArrayList<List<FsGroupingNode>>();
+		for (final Map.Entry<Long, List<FsGroupingNode>> sizeBucket : sizeBuckets.entrySet()) {
+			final List<FsGroupingNode> sameSizeFiles = sizeBucket.getValue();
+			if (sameSizeFiles.size() < 2) {
+				continue;
+			}
+			final long size = sizeBucket.getKey().longValue();
+			if (size == 0) {
+				// nothing to compare
+				duplicates.add(sameSizeFiles);
+				continue;
+			}
+			candidateCounts[Tier.SAMPLE_CRC.ordinal()] += sameSizeFiles.size();
+			final var crcBuckets = new LinkedHashMap<Long, List<FsGroupingNode>>();
+			for (final FsGroupingNode file : sameSizeFiles) {
+				final var crc = new CRC32();
+				bytesRead[Tier.SAMPLE_CRC.ordinal()] += updateSampleCrc(file.getPath(), size, crc);
+				crcBuckets.computeIfAbsent(Long.valueOf(crc.getValue()), value -> new ArrayList<>()).add(file);
+			}
+
+			for (final List<FsGroupingNode> sameCrcFiles : crcBuckets.values()) {
+				if (sameCrcFiles.size() < 2) {
+					continue;
+				}
+				candidateCounts[Tier.FULL_DIGEST.ordinal()] += sameCrcFiles.size();
+				final var digestBuckets = new LinkedHashMap<ByteBuffer, List<FsGroupingNode>>();
+				for (final FsGroupingNode file : sameCrcFiles) {
+					bytesRead[Tier.FULL_DIGEST.ordinal()] += updateDigest(file.getPath());
+					digestBuckets.computeIfAbsent(ByteBuffer.wrap(this.messageDigest.digest()),
+							digest -> new ArrayList<>()).add(file);
+				}
+				for (final List<FsGroupingNode> sameDigestFiles : digestBuckets.values()) {
+					if (sameDigestFiles.size() >= 2) {
+						duplicates.add(sameDigestFiles);
+					}
+				}
+			}
+		}
+
+		return new DuplicateFileReport(duplicates, bytesRead, candidateCounts);
+	}
+
+	/**
+	 * Read the first and the last {@link #sampleSize} bytes of the given file into
+	 * the given CRC. If the file is smaller than two samples, each byte is read
+	 * only once.
+	 *
+	 * @return the number of bytes read
+	 */
+	private long updateSampleCrc(final Path path, final long size, final CRC32 crc) throws UncheckedIOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long bytesRead = readSample(channel, 0, crc);
+			final long tailPosition = Math.max(this.sampleSize, size - this.sampleSize);
+			if (tailPosition < size) {
+				bytesRead += readSample(channel, tailPosition, crc);
+			}
+			return bytesRead;
+		} catch (final IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		}
+	}
+
+	private long readSample(final FileChannel channel, final long position, final CRC32 crc) throws IOException {
+		this.sampleBuffer.clear();
+		int lastLengthRead;
+		while (this.sampleBuffer.hasRemaining()
+				&& (lastLengthRead = channel.read(this.sampleBuffer, position + this.sampleBuffer.position())) != -1) {
+			assert lastLengthRead >= 0 : lastLengthRead;
+		}
+		this.sampleBuffer.flip();
+		final int length = this.sampleBuffer.remaining();
+		crc.update(this.sampleBuffer);
+		return length;
+	}
+
+	/**
+	 * Read the complete file into {@link #messageDigest}.
+	 *
+	 * @return the number of bytes read
+	 */
+	private long updateDigest(final Path path) throws UncheckedIOException {
+		// discard the input of a previous file whose reading failed
+		this.messageDigest.reset();
+		try (InputStream inputStream = Files.newInputStream(path)) {
+			return BytesUtil.updateDigest(inputStream, this.digestBuffer, this.messageDigest);
+		} catch (final IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		}
+	}
+
+	private static long getSize(final FsGroupingNode file) throws UncheckedIOException {
+		if (file instanceof FsSnapshotNode) {
+			return ((FsSnapshotNode) file).getSize();
+		}
+		try {
+			return Files.size(file.getPath());
+		} catch (final IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		}
+	}
+}
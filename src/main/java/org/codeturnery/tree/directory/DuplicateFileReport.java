@@ -0,0 +1,75 @@
+package org.codeturnery.tree.directory;
+
+import java.util.List;
+
+import org.codeturnery.tree.directory.DuplicateFileFinder.Tier;
+
+/**
+ * The result of a {@link DuplicateFileFinder} run: the files found to have
+ * identical content and the amount of I/O needed in each tier to find them.
+ */
+public class DuplicateFileReport {
+	private final List<List<FsGroupingNode>> duplicates;
+	private final long[] bytesRead;
+	private final int[] candidateCounts;
+
+	/**
+	 * @param duplicates      the groups of files with identical content
+	 * @param bytesRead       the number of bytes read in each tier, indexed by
+	 *                        {@link Tier#ordinal()}
+	 * @param candidateCounts the number of files considered in each tier, indexed
+	 *                        by {@link Tier#ordinal()}
+	 */
+	DuplicateFileReport(final List<List<FsGroupingNode>> duplicates, final long[] bytesRead,
+			final int[] candidateCounts) {
+		this.duplicates = duplicates;
+		this.bytesRead = bytesRead;
+		this.candidateCounts = candidateCounts;
+	}
+
+	/**
+	 * @return the groups of files with identical content, each containing at least
+	 *         two files
+	 */
+	public List<List<FsGroupingNode>> getDuplicates() {
+		return this.duplicates;
+	}
+
+	/**
+	 * @param tier the tier to get the I/O for
+	 * @return the number of content bytes read in the given tier
+	 */
+	public long getBytesRead(final Tier tier) {
+		return this.bytesRead[tier.ordinal()];
+	}
+
+	/**
+	 * @return the number of content bytes read in all tiers
+	 */
+	public long getTotalBytesRead() {
+		long total = 0;
+		for (final long tierBytesRead : this.bytesRead) {
+			total += tierBytesRead;
+		}
+		return total;
+	}
+
+	/**
+	 * @param tier the tier to get the number of files for
+	 * @return the number of files that were not proven to be unique before the
+	 *         given tier and thus needed to be checked by it
+	 */
+	public int getCandidateCount(final Tier tier) {
+		return this.candidateCounts[tier.ordinal()];
+	}
+
+	@Override
+	public String toString() {
+		final var builder = new StringBuilder();
+		for (final Tier tier : Tier.values()) {
+			builder.append(tier.name()).append(": ").append(getCandidateCount(tier)).append(" files, ")
+					.append(getBytesRead(tier)).append(" bytes read\n");
+		}
+		return builder.append("duplicate groups: ").append(this.duplicates.size()).toString();
+	}
+}
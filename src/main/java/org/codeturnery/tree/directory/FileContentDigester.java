@@ -0,0 +1,236 @@
+package org.codeturnery.tree.directory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ToIntFunction;
+
+import org.codeturnery.bytes.BytesUtil;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Calculates and caches digests of the content of files, to be used as content
+ * hash function for {@link org.codeturnery.tree.HashApproach#CONTENT_DIGEST}.
+ * <p>
+ * Files are digested by multiple threads in parallel, so that the disk and not
+ * a single hashing thread limits the throughput. Use {@link #digestAll} to
+ * digest all files in a tree before hashing it; files not digested that way
+ * are digested on demand in the calling thread.
+ * <p>
+ * The buffers to read the files with are pooled and reused, with one buffer per
+ * thread. Each thread uses its own {@link MessageDigest} instance.
+ * <p>
+ * Instances are thread-safe.
+ */
+public class FileContentDigester implements ToIntFunction<FsGroupingNode>, AutoCloseable {
+	/**
+	 * The number of files per thread {@link #digestAll} submits before waiting
+	 * for the first of them, so that the threads don't run out of work while the
+	 * number of pending tasks is bounded.
+	 */
+	private static final int PENDING_DIGESTS_PER_THREAD = 4;
+
+	/**
+	 * Executes the digest calculations.
+	 */
+	private final ExecutorService executor;
+	/**
+	 * Buffers not in use by any thread currently.
+	 */
+	private final BlockingQueue<byte[]> bufferPool;
+	/**
+	 * The digest instance of each thread, reset after each file.
+	 */
+	private final ThreadLocal<MessageDigest> messageDigests;
+	/**
+	 * The digests calculated so far.
+	 */
+	private final Map<Path, byte[]> pathToDigestMapping = new ConcurrentHashMap<>();
+	/**
+	 * The maximum number of files submitted by {@link #digestAll} but not yet
+	 * digested.
+	 */
+	private final int maxPendingDigests;
+
+	/**
+	 * Create an instance using a new pool with the given number of threads. Call
+	 * {@link #close()} to shut down the pool after usage.
+	 *
+	 * @param algorithm   the {@link MessageDigest} algorithm to use, e.g.
+	 *                    <code>SHA-256</code>
+	 * @param threadCount the number of files to read in parallel; must be positive
+	 * @param bufferSize  the size in bytes of each buffer to read files with; must
+	 *                    be positive
+	 * @throws NoSuchAlgorithmException thrown if the given algorithm is not
+	 *                                  available
+	 */
+	@SuppressWarnings("null")
+	public FileContentDigester(final String algorithm, final int threadCount, final int bufferSize)
+			throws NoSuchAlgorithmException {
+		if (threadCount <= 0) {
+			throw new IllegalArgumentException("Thread count must be positive, got " + threadCount);
+		}
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size must be positive, got " + bufferSize);
+		}
+		// fail early if the algorithm is not available
+		MessageDigest.getInstance(algorithm);
+		this.messageDigests = ThreadLocal.withInitial(() -> {
+			try {
+				return MessageDigest.getInstance(algorithm);
+			} catch (final NoSuchAlgorithmException exception) {
+				throw new IllegalStateException(exception);
+			}
+		});
+		this.maxPendingDigests = threadCount * PENDING_DIGESTS_PER_THREAD;
+		this.bufferPool = new ArrayBlockingQueue<>(threadCount);
+		for (int i = 0; i < threadCount; i++) {
+			this.bufferPool.add(new byte[bufferSize]);
+		}
+		this.executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+			final var thread = new Thread(runnable, FileContentDigester.class.getSimpleName());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Digest all files in the given tree in parallel and wait for completion.
+	 * <p>
+	 * Files already digested are skipped. The tree itself is traversed in the
+	 * calling thread, which waits for the oldest submitted file whenever too many
+	 * files are pending, so that the number of pending tasks does not grow with
+	 * the size of the tree.
+	 *
+	 * @param root the tree containing the files to digest
+	 * @throws InterruptedException thrown if interrupted while waiting
+	 * @throws UncheckedIOException thrown if a file could not be read
+	 */
+	@SuppressWarnings("null")
+	public void digestAll(final FsGroupingNode root) throws InterruptedException, UncheckedIOException {
+		final var futures = new ArrayDeque<Future<byte[]>>();
+		final var pending = new ArrayList<FsGroupingNode>();
+		pending.add(root);
+		try {
+			while (!pending.isEmpty()) {
+				final FsGroupingNode node = pending.remove(pending.size() - 1);
+				final @Nullable List<FsGroupingNode> children = node.getChildren().orElse(null);
+				if (children != null) {
+					pending.addAll(children);
+				} else if (!this.pathToDigestMapping.containsKey(node.getPath())) {
+					if (futures.size() == this.maxPendingDigests) {
+						await(futures.remove());
+					}
+					futures.add(this.executor.submit(() -> getDigest(node)));
+				}
+			}
+			while (!futures.isEmpty()) {
+				await(futures.remove());
+			}
+		} finally {
+			// don't leave tasks behind if a digest failed
+			futures.forEach(future -> future.cancel(false));
+		}
+	}
+
+	private static void await(final Future<byte[]> future) throws InterruptedException, UncheckedIOException {
+		try {
+			future.get();
+		} catch (final ExecutionException exception) {
+			final Throwable cause = exception.getCause();
+			if (cause instanceof UncheckedIOException) {
+				throw (UncheckedIOException) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * Get the digest of the given file, calculating it in the calling thread if
+	 * not done yet.
+	 *
+	 * @param file the file to get the digest of
+	 * @return the digest of the content of the file
+	 * @throws InterruptedException thrown if interrupted while waiting for a buffer
+	 * @throws UncheckedIOException thrown if the file could not be read
+	 */
+	@SuppressWarnings("null")
+	public byte[] getDigest(final FsGroupingNode file) throws InterruptedException, UncheckedIOException {
+		final Path path = file.getPath();
+		final byte @Nullable [] cachedDigest = this.pathToDigestMapping.get(path);
+		if (cachedDigest != null) {
+			return cachedDigest;
+		}
+		final byte[] buffer = this.bufferPool.take();
+		try (InputStream inputStream = Files.newInputStream(path)) {
+			final MessageDigest messageDigest = this.messageDigests.get();
+			// discard the input of a previous file whose reading failed
+			messageDigest.reset();
+			BytesUtil.updateDigest(inputStream, buffer, messageDigest);
+			final byte[] digest = messageDigest.digest();
+			final byte @Nullable [] previousDigest = this.pathToDigestMapping.putIfAbsent(path, digest);
+			return previousDigest == null ? digest : previousDigest;
+		} catch (final IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		} finally {
+			this.bufferPool.add(buffer);
+		}
+	}
+
+	/**
+	 * Remove the cached digest of the given file, e.g. because it was changed.
+	 *
+	 * @param file the file whose digest is to be removed
+	 */
+	public void invalidate(final FsGroupingNode file) {
+		this.pathToDigestMapping.remove(file.getPath());
+	}
+
+	/**
+	 * Returns the first four bytes of the digest of the given file as hash. For
+	 * directories <code>0</code> is returned, as their content is considered by
+	 * their own groups already.
+	 *
+	 * @throws UncheckedIOException thrown if the file could not be read
+	 * @throws IllegalStateException thrown if interrupted while waiting for a
+	 *                               buffer
+	 */
+	@Override
+	public int applyAsInt(final FsGroupingNode node) throws UncheckedIOException, IllegalStateException {
+		if (node.getChildren().isPresent()) {
+			return 0;
+		}
+		final byte[] digest;
+		try {
+			digest = getDigest(node);
+		} catch (final InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(exception);
+		}
+		int hash = 0;
+		for (int i = 0; i < Integer.BYTES && i < digest.length; i++) {
+			hash = hash << Byte.SIZE | digest[i] & 0xFF;
+		}
+		return hash;
+	}
+
+	@Override
+	public void close() {
+		this.executor.shutdown();
+	}
+}
@@ -2,7 +2,7 @@ package org.codeturnery.tree.directory;
 
 import java.util.function.Predicate;
 
-import org.codeturnery.tree.StringMatcher;
+import org.codeturnery.tree.TrieStringMatcher;
 import org.codeturnery.typesystem.Iterables;
 import org.eclipse.jdt.annotation.NonNull;
 
@@ -13,18 +13,38 @@ import org.eclipse.jdt.annotation.NonNull;
  * initialization. If any suffix matches the file name, then the predicate
  * matches the node.
  */
-public class FilenameSuffixMatcher extends StringMatcher<FsGroupingNode> {
+public class FilenameSuffixMatcher extends TrieStringMatcher<FsGroupingNode> {
 
 	/**
 	 * @param suffixes the suffixes to test for the filename of a given
 	 *                 {@link FsGroupingNode}
 	 */
 	public FilenameSuffixMatcher(final @NonNull String... suffixes) {
-		super(Iterables.setOf(suffixes), Iterables.emptySet(), false);
+		this(false, suffixes);
+	}
+
+	/**
+	 * @param ignoreCase <code>true</code> to match ASCII letters ignoring their
+	 *                   case, e.g. to match <code>.jpg</code> against
+	 *                   <code>IMAGE.JPG</code>
+	 * @param suffixes   the suffixes to test for the filename of a given
+	 *                   {@link FsGroupingNode}
+	 */
+	public FilenameSuffixMatcher(final boolean ignoreCase, final @NonNull String... suffixes) {
+		super(Iterables.setOf(suffixes), Iterables.emptySet(), false, ignoreCase);
 	}
 
 	@Override
 	protected String getString(final FsGroupingNode value) {
 		return value.getPath().getFileName().toString();
 	}
+
+	/**
+	 * All instances of the same class derive the same file name, hence they share
+	 * it. Subclasses overriding {@link #getString} get a key of their own.
+	 */
+	@Override
+	protected Object getStringSourceKey() {
+		return getClass();
+	}
 }
@@ -0,0 +1,130 @@
+package org.codeturnery.tree.directory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+/**
+ * Scans a directory tree using a {@link ForkJoinPool}, resulting in a tree of
+ * {@link FsSnapshotNode}s.
+ * <p>
+ * Each directory is listed by its own task, which reads the attributes of each
+ * entry too, allowing idle threads to steal the listing of sub-directories from
+ * busy ones. The resulting tree is equal to the one returned by
+ * {@link FsGroupingNode#getChildren()} on the same paths, but all children were
+ * already read when {@link #scan(Path)} returns.
+ */
+public class ForkJoinDirectoryScanner implements AutoCloseable {
+	/**
+	 * The pool to execute the listing tasks in.
+	 */
+	private final ForkJoinPool pool;
+	/**
+	 * <code>true</code> if the {@link #pool} was created by this instance and
+	 * needs to be shut down in {@link #close()}.
+	 */
+	private final boolean ownedPool;
+
+	/**
+	 * Create an instance using a new pool with the given parallelism. Call
+	 * {@link #close()} to shut down the pool after usage.
+	 *
+	 * @param parallelism the number of threads to list directories with
+	 */
+	public ForkJoinDirectoryScanner(final int parallelism) {
+		this.pool = new ForkJoinPool(parallelism);
+		this.ownedPool = true;
+	}
+
+	/**
+	 * Create an instance using the given pool. The pool will not be shut down by
+	 * {@link #close()}.
+	 *
+	 * @param pool the pool to execute the listing tasks in
+	 */
+	public ForkJoinDirectoryScanner(final ForkJoinPool pool) {
+		this.pool = pool;
+		this.ownedPool = false;
+	}
+
+	/**
+	 * Read the complete tree starting at the given path.
+	 *
+	 * @param root the file or directory to scan
+	 * @return the node representing the given path, with all its (sub-)children
+	 *         already read
+	 * @throws UncheckedIOException thrown if a directory could not be listed
+	 */
+	public FsSnapshotNode scan(final Path root) throws UncheckedIOException {
+		final var rootNode = new FsSnapshotNode(root, null, readAttributes(root));
+		if (rootNode.isDirectory()) {
+			this.pool.invoke(new ScanTask(rootNode));
+		}
+		return rootNode;
+	}
+
+	/**
+	 * Read the attributes of the given path, following symbolic links like
+	 * {@link Files#isDirectory} does for {@link FsGroupingNode}.
+	 *
+	 * @param path the path to read the attributes of
+	 * @return the attributes read
+	 * @throws UncheckedIOException thrown if the attributes could not be read
+	 */
+	@SuppressWarnings("null")
+	static BasicFileAttributes readAttributes(final Path path) throws UncheckedIOException {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (final IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (this.ownedPool) {
+			this.pool.shutdown();
+		}
+	}
+
+	/**
+	 * Lists a single directory and forks a new task for each sub-directory found.
+	 */
+	private static class ScanTask extends RecursiveAction {
+		private static final long serialVersionUID = -3326826466315404564L;
+
+		private final transient FsSnapshotNode directory;
+
+		ScanTask(final FsSnapshotNode directory) {
+			this.directory = directory;
+		}
+
+		@Override
+		protected void compute() {
+			final var children = new ArrayList<FsGroupingNode>();
+			final var subtasks = new ArrayList<ScanTask>();
+			try (@SuppressWarnings("null")
+			final @NonNull DirectoryStream<Path> directoryPaths = Files.newDirectoryStream(this.directory.getPath())) {
+				for (final Path path : directoryPaths) {
+					final var child = new FsSnapshotNode(path, this.directory, readAttributes(path));
+					children.add(child);
+					if (child.isDirectory()) {
+						subtasks.add(new ScanTask(child));
+					}
+				}
+			} catch (final IOException ioException) {
+				throw new UncheckedIOException(ioException);
+			}
+			this.directory.setChildren(children);
+			invokeAll(subtasks);
+		}
+	}
+}
@@ -4,10 +4,13 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import org.codeturnery.tree.AbstractChildableNode;
 import org.codeturnery.tree.TreeNodeInterface;
@@ -39,9 +42,9 @@ public class FsGroupingNode extends AbstractChildableNode<FsGroupingNode> implem
 	 * node.</strong>
 	 * 
 	 * @param path   the path to a file or directory in the file system
-	 * @param parent the parent of this node
+	 * @param parent the parent of this node, <code>null</code> for a root node
 	 */
-	private FsGroupingNode(final Path path, final FsGroupingNode parent) {
+	protected FsGroupingNode(final Path path, final @Nullable FsGroupingNode parent) {
 		this.path = path;
 		this.parent = parent;
 	}
@@ -72,6 +75,30 @@ public class FsGroupingNode extends AbstractChildableNode<FsGroupingNode> implem
 		}
 	}
 
+	/**
+	 * Checks if the path is a directory, without listing it.
+	 */
+	@Override
+	public boolean isLeaf() {
+		return !Files.isDirectory(this.path);
+	}
+
+	/**
+	 * Lists the directory without checking if the path is a directory first, as
+	 * this was usually done by {@link #isLeaf()} already.
+	 */
+	@Override
+	public void forEachChild(final Consumer<? super FsGroupingNode> action) {
+		try (@SuppressWarnings("null")
+		final @NonNull DirectoryStream<Path> directoryPaths = Files.newDirectoryStream(this.path)) {
+			createChildren(directoryPaths).forEach(action);
+		} catch (final NotDirectoryException | NoSuchFileException exception) {
+			// not a directory, hence without children
+		} catch (final IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		}
+	}
+
 	protected List<FsGroupingNode> createChildren(final Iterable<Path> directoryPaths) {
 		final var result = new ArrayList<FsGroupingNode>();
 		for (final Path path : directoryPaths) {
@@ -0,0 +1,383 @@
+package org.codeturnery.tree.directory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.codeturnery.tree.Hasher;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A compact, persistent representation of a scanned tree of
+ * {@link FsSnapshotNode}s, read via memory mapping.
+ * <p>
+ * The nodes are stored in breadth-first order, so that the children of each
+ * node have consecutive indexes and each parent has a smaller index than its
+ * children. The root node has the index <code>0</code>. The file consists of a
+ * fixed size header followed by one section per property, each holding the
+ * property of all nodes:
+ * <ol>
+ * <li>parent index (<code>int</code>, <code>-1</code> for the root)</li>
+ * <li>directory flag (<code>byte</code>)</li>
+ * <li>size in bytes (<code>long</code>)</li>
+ * <li>last modification time in nanoseconds since the epoch
+ * (<code>long</code>)</li>
+ * <li>optionally the hash calculated by a {@link Hasher} (<code>int</code>)</li>
+ * <li>offsets of the names in the name section (<code>int</code>, one more
+ * than nodes)</li>
+ * <li>UTF-8 encoded names; the complete path for the root node, the file name
+ * for all other nodes</li>
+ * </ol>
+ * <p>
+ * Opening an index only maps the file into memory, the properties of individual
+ * nodes are read on access. This allows to query large trees directly after a
+ * restart, without the need to scan the file system again or to create a node
+ * instance for every entry. {@link #toTree} can be used to create
+ * {@link FsSnapshotNode}s nonetheless.
+ * <p>
+ * Stored hashes are only valid for a {@link Hasher} configured like the one
+ * they were written with, i.e. with the same predicates in the same order and
+ * the same hash approaches, which the index can't verify. They must not depend
+ * on anything that changes between JVM runs, like identity hash codes; the
+ * hashes of {@link org.codeturnery.tree.GroupPredicateHasher} fulfill this, as
+ * it identifies predicates by their position.
+ * <p>
+ * As a single mapping is limited to {@link Integer#MAX_VALUE} bytes, each
+ * section is mapped separately and must not exceed that size.
+ */
+public class FsSnapshotIndex {
+	/**
+	 * "FSNI" in ASCII.
+	 */
+	private static final int MAGIC = 0x46534E49;
+	private static final int VERSION = 1;
+	private static final int HEADER_LENGTH = 32;
+	private static final int FLAG_HASHES = 1;
+	private static final byte FLAG_DIRECTORY = 1;
+
+	private final int nodeCount;
+	private final ByteBuffer parents;
+	private final ByteBuffer flags;
+	private final ByteBuffer sizes;
+	private final ByteBuffer modificationTimes;
+	private final @Nullable ByteBuffer hashes;
+	private final ByteBuffer nameOffsets;
+	private final ByteBuffer names;
+
+	private FsSnapshotIndex(final FileChannel channel) throws IOException {
+		final ByteBuffer header = map(channel, MapMode.READ_ONLY, 0, HEADER_LENGTH);
+		if (header.getInt() != MAGIC) {
+			throw new IOException("Not a snapshot index.");
+		}
+		final int version = header.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported snapshot index version: " + version);
+		}
+		this.nodeCount = header.getInt();
+		final boolean hasHashes = (header.getInt() & FLAG_HASHES) != 0;
+		final long nameBytesLength = header.getLong();
+
+		final var layout = new Layout(this.nodeCount, hasHashes, nameBytesLength);
+		this.parents = map(channel, MapMode.READ_ONLY, layout.parentsOffset, layout.parentsLength);
+		this.flags = map(channel, MapMode.READ_ONLY, layout.flagsOffset, layout.flagsLength);
+		this.sizes = map(channel, MapMode.READ_ONLY, layout.sizesOffset, layout.sizesLength);
+		this.modificationTimes = map(channel, MapMode.READ_ONLY, layout.modificationTimesOffset,
+				layout.modificationTimesLength);
+		this.hashes = hasHashes ? map(channel, MapMode.READ_ONLY, layout.hashesOffset, layout.hashesLength) : null;
+		this.nameOffsets = map(channel, MapMode.READ_ONLY, layout.nameOffsetsOffset, layout.nameOffsetsLength);
+		this.names = map(channel, MapMode.READ_ONLY, layout.namesOffset, layout.namesLength);
+	}
+
+	/**
+	 * Map the given index file into memory.
+	 *
+	 * @param file the file previously written by {@link #write}
+	 * @return the index stored in the given file
+	 * @throws UncheckedIOException thrown if the file could not be read or is not
+	 *                              a valid index
+	 */
+	public static FsSnapshotIndex open(final Path file) throws UncheckedIOException {
+		try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new FsSnapshotIndex(channel);
+		} catch (final IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		}
+	}
+
+	/**
+	 * Write the tree below the given node into the given file, replacing its
+	 * content.
+	 *
+	 * @param root   the tree to write
+	 * @param file   the file to write the index to
+	 * @param hasher if not <code>null</code>, the hash of each node will be
+	 *               retrieved from this instance and stored in the index too
+	 * @throws UncheckedIOException thrown if the file could not be written
+	 */
+	public static void write(final FsSnapshotNode root, final Path file, final @Nullable Hasher<FsGroupingNode> hasher)
+			throws UncheckedIOException {
+		final List<FsGroupingNode> nodes = listBreadthFirst(root);
+		final int nodeCount = nodes.size();
+		long nameBytesLength = 0;
+		for (int i = 0; i < nodeCount; i++) {
+			nameBytesLength += getNameBytes(nodes.get(i), i).length;
+		}
+		final var layout = new Layout(nodeCount, hasher != null, nameBytesLength);
+
+		try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			final MappedByteBuffer header = map(channel, MapMode.READ_WRITE, 0, HEADER_LENGTH);
+			header.putInt(MAGIC).putInt(VERSION).putInt(nodeCount).putInt(hasher == null ? 0 : FLAG_HASHES)
+					.putLong(nameBytesLength);
+
+			final MappedByteBuffer parents = map(channel, MapMode.READ_WRITE, layout.parentsOffset,
+					layout.parentsLength);
+			final MappedByteBuffer flags = map(channel, MapMode.READ_WRITE, layout.flagsOffset, layout.flagsLength);
+			final MappedByteBuffer sizes = map(channel, MapMode.READ_WRITE, layout.sizesOffset, layout.sizesLength);
+			final MappedByteBuffer modificationTimes = map(channel, MapMode.READ_WRITE,
+					layout.modificationTimesOffset, layout.modificationTimesLength);
+			final MappedByteBuffer nameOffsets = map(channel, MapMode.READ_WRITE, layout.nameOffsetsOffset,
+					layout.nameOffsetsLength);
+			final MappedByteBuffer names = map(channel, MapMode.READ_WRITE, layout.namesOffset, layout.namesLength);
+
+			// the parent of each node was added to the list before the node itself,
+			// hence the parent index can be tracked while iterating
+			int parentIndex = -1;
+			int remainingSiblings = 1;
+			for (int i = 0; i < nodeCount; i++) {
+				while (remainingSiblings == 0) {
+					parentIndex++;
+					remainingSiblings = nodes.get(parentIndex).getChildrenCount();
+				}
+				remainingSiblings--;
+				final FsGroupingNode node = nodes.get(i);
+				parents.putInt(parentIndex);
+				final @Nullable FsSnapshotNode snapshot = node instanceof FsSnapshotNode ? (FsSnapshotNode) node
+						: null;
+				flags.put(node.getChildren().isPresent() ? FLAG_DIRECTORY : 0);
+				sizes.putLong(snapshot == null ? 0 : snapshot.getSize());
+				modificationTimes
+						.putLong(snapshot == null ? 0 : snapshot.getLastModifiedTime().to(TimeUnit.NANOSECONDS));
+				nameOffsets.putInt(names.position());
+				names.put(getNameBytes(node, i));
+			}
+			nameOffsets.putInt(names.position());
+
+			if (hasher != null) {
+				final MappedByteBuffer hashes = map(channel, MapMode.READ_WRITE, layout.hashesOffset,
+						layout.hashesLength);
+				for (final FsGroupingNode node : nodes) {
+					hashes.putInt(hasher.getHash(node));
+				}
+				hashes.force();
+			}
+			for (final MappedByteBuffer buffer : List.of(header, parents, flags, sizes, modificationTimes, nameOffsets,
+					names)) {
+				buffer.force();
+			}
+		} catch (final IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		}
+	}
+
+	/**
+	 * @return the number of nodes stored in this index
+	 */
+	public int getNodeCount() {
+		return this.nodeCount;
+	}
+
+	/**
+	 * @param index the index of the node, <code>0</code> for the root node
+	 * @return the index of the parent node, <code>-1</code> for the root node
+	 */
+	public int getParentIndex(final int index) {
+		return this.parents.getInt(index * Integer.BYTES);
+	}
+
+	/**
+	 * @param index the index of the node, <code>0</code> for the root node
+	 * @return <code>true</code> if the node represents a directory
+	 */
+	public boolean isDirectory(final int index) {
+		return (this.flags.get(index) & FLAG_DIRECTORY) != 0;
+	}
+
+	/**
+	 * @param index the index of the node, <code>0</code> for the root node
+	 * @return the size in bytes at the time of the scan
+	 */
+	public long getSize(final int index) {
+		return this.sizes.getLong(index * Long.BYTES);
+	}
+
+	/**
+	 * @param index the index of the node, <code>0</code> for the root node
+	 * @return the last modification time at the time of the scan
+	 */
+	@SuppressWarnings("null")
+	public FileTime getLastModifiedTime(final int index) {
+		return FileTime.from(this.modificationTimes.getLong(index * Long.BYTES), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return <code>true</code> if hashes were stored when the index was written
+	 */
+	public boolean hasHashes() {
+		return this.hashes != null;
+	}
+
+	/**
+	 * @param index the index of the node, <code>0</code> for the root node
+	 * @return the hash stored for the node
+	 * @throws IllegalStateException thrown if no hashes were stored
+	 */
+	public int getHash(final int index) throws IllegalStateException {
+		final @Nullable ByteBuffer hashBuffer = this.hashes;
+		if (hashBuffer == null) {
+			throw new IllegalStateException("No hashes stored in this index.");
+		}
+		return hashBuffer.getInt(index * Integer.BYTES);
+	}
+
+	/**
+	 * @param index the index of the node, <code>0</code> for the root node
+	 * @return the file name of the node, or the complete path for the root node
+	 */
+	public String getName(final int index) {
+		final int start = this.nameOffsets.getInt(index * Integer.BYTES);
+		final int end = this.nameOffsets.getInt((index + 1) * Integer.BYTES);
+		final var bytes = new byte[end - start];
+		this.names.get(start, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param index the index of the node, <code>0</code> for the root node
+	 * @return the complete path of the node
+	 */
+	@SuppressWarnings("null")
+	public Path getPath(final int index) {
+		final int parentIndex = getParentIndex(index);
+		return parentIndex < 0 ? Path.of(getName(index)) : getPath(parentIndex).resolve(getName(index));
+	}
+
+	/**
+	 * Create a node instance for each node stored in this index.
+	 *
+	 * @param hasher if not <code>null</code> and hashes were stored in this index,
+	 *               these hashes will be {@link Hasher#putHash stored} in the
+	 *               given instance for the created nodes
+	 * @return the root node of the created tree
+	 */
+	public FsSnapshotNode toTree(final @Nullable Hasher<FsGroupingNode> hasher) {
+		final var nodes = new FsSnapshotNode[this.nodeCount];
+		final var childLists = new ArrayList<@Nullable List<FsGroupingNode>>(this.nodeCount);
+		for (int i = 0; i < this.nodeCount; i++) {
+			final int parentIndex = getParentIndex(i);
+			final @Nullable FsSnapshotNode parent = parentIndex < 0 ? null : nodes[parentIndex];
+			final Path path = parent == null ? Path.of(getName(i)) : parent.getPath().resolve(getName(i));
+			final var node = new FsSnapshotNode(path, parent, isDirectory(i), getSize(i), getLastModifiedTime(i));
+			nodes[i] = node;
+			childLists.add(node.isDirectory() ? new ArrayList<>() : null);
+			if (parent != null) {
+				final @Nullable List<FsGroupingNode> siblings = childLists.get(parentIndex);
+				if (siblings == null) {
+					throw new IllegalStateException("Parent of node " + i + " is not a directory.");
+				}
+				siblings.add(node);
+			}
+			if (hasher != null && hasHashes()) {
+				hasher.putHash(node, getHash(i));
+			}
+		}
+		for (int i = 0; i < this.nodeCount; i++) {
+			final @Nullable List<FsGroupingNode> children = childLists.get(i);
+			if (children != null) {
+				nodes[i].setChildren(children);
+			}
+		}
+		return nodes[0];
+	}
+
+	private static List<FsGroupingNode> listBreadthFirst(final FsGroupingNode root) {
+		final var nodes = new ArrayList<FsGroupingNode>();
+		nodes.add(root);
+		for (int i = 0; i < nodes.size(); i++) {
+			nodes.get(i).getChildren().ifPresent(nodes::addAll);
+		}
+		return nodes;
+	}
+
+	@SuppressWarnings("null")
+	private static byte @NonNull [] getNameBytes(final FsGroupingNode node, final int index) {
+		final @Nullable Path fileName = node.getPath().getFileName();
+		final String name = index == 0 || fileName == null ? node.getPath().toString() : fileName.toString();
+		return name.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@SuppressWarnings("null")
+	private static MappedByteBuffer map(final FileChannel channel, final MapMode mode, final long offset,
+			final long length) throws IOException {
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("Section too large to be mapped: " + length);
+		}
+		final MappedByteBuffer buffer = channel.map(mode, offset, length);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	/**
+	 * The offsets and lengths of the sections in the file, each section aligned to
+	 * 8 bytes.
+	 */
+	private static class Layout {
+		final long parentsOffset;
+		final long parentsLength;
+		final long flagsOffset;
+		final long flagsLength;
+		final long sizesOffset;
+		final long sizesLength;
+		final long modificationTimesOffset;
+		final long modificationTimesLength;
+		final long hashesOffset;
+		final long hashesLength;
+		final long nameOffsetsOffset;
+		final long nameOffsetsLength;
+		final long namesOffset;
+		final long namesLength;
+
+		Layout(final int nodeCount, final boolean hasHashes, final long nameBytesLength) {
+			this.parentsOffset = HEADER_LENGTH;
+			this.parentsLength = (long) nodeCount * Integer.BYTES;
+			this.flagsOffset = align(this.parentsOffset + this.parentsLength);
+			this.flagsLength = nodeCount;
+			this.sizesOffset = align(this.flagsOffset + this.flagsLength);
+			this.sizesLength = (long) nodeCount * Long.BYTES;
+			this.modificationTimesOffset = align(this.sizesOffset + this.sizesLength);
+			this.modificationTimesLength = (long) nodeCount * Long.BYTES;
+			this.hashesOffset = align(this.modificationTimesOffset + this.modificationTimesLength);
+			this.hashesLength = hasHashes ? (long) nodeCount * Integer.BYTES : 0;
+			this.nameOffsetsOffset = align(this.hashesOffset + this.hashesLength);
+			this.nameOffsetsLength = ((long) nodeCount + 1) * Integer.BYTES;
+			this.namesOffset = align(this.nameOffsetsOffset + this.nameOffsetsLength);
+			this.namesLength = nameBytesLength;
+		}
+
+		private static long align(final long offset) {
+			return (offset + 7) & ~7L;
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package org.codeturnery.tree.directory;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import org.codeturnery.typesystem.Iterables;
+import org.codeturnery.typesystem.Optionals;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Represents a single file or directory, whose children and attributes were
+ * read from the file system once when the tree was scanned.
+ * <p>
+ * In contrast to {@link FsGroupingNode} no file system access is done when the
+ * children or attributes are requested. Changes in the file system after the
+ * scan are thus not reflected by this instance.
+ */
+public class FsSnapshotNode extends FsGroupingNode {
+	/**
+	 * The children found during the scan. Empty if this node represents a file.
+	 */
+	private Optional<List<FsGroupingNode>> children;
+	/**
+	 * The size in bytes at the time of the scan.
+	 */
+	private final long size;
+	/**
+	 * The last modification time at the time of the scan.
+	 */
+	private final FileTime lastModifiedTime;
+	/**
+	 * The object uniquely identifying the file, if provided by the file system.
+	 */
+	private final @Nullable Object fileKey;
+
+	/**
+	 * Create a node without any children set yet.
+	 * <p>
+	 * <strong>The node will not automatically be added to the parent
+	 * node.</strong>
+	 *
+	 * @param path       the path to a file or directory in the file system
+	 * @param parent     the parent of this node, <code>null</code> for a root node
+	 * @param attributes the attributes read for the given path
+	 */
+	@SuppressWarnings("null")
+	FsSnapshotNode(final Path path, final @Nullable FsGroupingNode parent, final BasicFileAttributes attributes) {
+		super(path, parent);
+		this.children = attributes.isDirectory() ? Optionals.of(Iterables.emptyList()) : Optionals.empty();
+		this.size = attributes.size();
+		this.lastModifiedTime = attributes.lastModifiedTime();
+		this.fileKey = attributes.fileKey();
+	}
+
+	/**
+	 * Create a node without any children set yet, using attributes read
+	 * previously.
+	 * <p>
+	 * <strong>The node will not automatically be added to the parent
+	 * node.</strong>
+	 *
+	 * @param path             the path to a file or directory in the file system
+	 * @param parent           the parent of this node, <code>null</code> for a
+	 *                         root node
+	 * @param directory        <code>true</code> if the given path denotes a
+	 *                         directory
+	 * @param size             the size in bytes
+	 * @param lastModifiedTime the last modification time
+	 */
+	FsSnapshotNode(final Path path, final @Nullable FsGroupingNode parent, final boolean directory, final long size,
+			final FileTime lastModifiedTime) {
+		super(path, parent);
+		this.children = directory ? Optionals.of(Iterables.emptyList()) : Optionals.empty();
+		this.size = size;
+		this.lastModifiedTime = lastModifiedTime;
+		this.fileKey = null;
+	}
+
+	@Override
+	public Optional<List<FsGroupingNode>> getChildren() {
+		return this.children;
+	}
+
+	@Override
+	public int getChildrenCount() {
+		return this.children.map(List::size).orElse(0).intValue();
+	}
+
+	@Override
+	public boolean isLeaf() {
+		return this.children.isEmpty();
+	}
+
+	@Override
+	public void forEachChild(final Consumer<? super FsGroupingNode> action) {
+		this.children.ifPresent(list -> list.forEach(action));
+	}
+
+	/**
+	 * @return <code>true</code> if this node represented a directory at the time
+	 *         of the scan
+	 */
+	public boolean isDirectory() {
+		return this.children.isPresent();
+	}
+
+	/**
+	 * @return the size in bytes at the time of the scan
+	 * @see BasicFileAttributes#size()
+	 */
+	public long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * @return the last modification time at the time of the scan
+	 * @see BasicFileAttributes#lastModifiedTime()
+	 */
+	public FileTime getLastModifiedTime() {
+		return this.lastModifiedTime;
+	}
+
+	/**
+	 * @return the object uniquely identifying the file, <code>null</code> if the
+	 *         file system does not provide one
+	 * @see BasicFileAttributes#fileKey()
+	 */
+	public @Nullable Object getFileKey() {
+		return this.fileKey;
+	}
+
+	/**
+	 * Set the children found for this node during the scan.
+	 *
+	 * @param children the children of this directory
+	 * @throws IllegalStateException thrown if this node represents a file
+	 */
+	void setChildren(final List<FsGroupingNode> children) {
+		if (this.children.isEmpty()) {
+			throw new IllegalStateException("Node does not represent a directory: " + getPath());
+		}
+		this.children = Optionals.of(children);
+	}
+}
@@ -0,0 +1,131 @@
+package org.codeturnery.tree.directory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Creates a tree of {@link FsSnapshotNode}s in a single
+ * {@link Files#walkFileTree} pass on the calling thread.
+ * <p>
+ * Each directory is listed exactly once and the attributes provided by the walk
+ * are stored in the nodes, so that querying the resulting tree (e.g. via
+ * {@link org.codeturnery.tree.Grouper} or {@link org.codeturnery.tree.Merger})
+ * does not access the file system anymore.
+ * <p>
+ * Like {@link FsGroupingNode}, symbolic links are followed.
+ */
+public class FsSnapshotWalker {
+	/**
+	 * Walk the tree starting at the given path.
+	 *
+	 * @param root the file or directory to walk
+	 * @return the node representing the given path, with all its (sub-)children
+	 *         already read
+	 * @throws UncheckedIOException thrown if a file or directory could not be
+	 *                              read
+	 */
+	public FsSnapshotNode walk(final Path root) throws UncheckedIOException {
+		return walk(root, null);
+	}
+
+	/**
+	 * Walk the tree starting at the given path, using the given node as parent of
+	 * the returned node.
+	 *
+	 * @param root       the file or directory to walk
+	 * @param rootParent the parent to set in the returned node
+	 * @return the node representing the given path, with all its (sub-)children
+	 *         already read
+	 * @throws UncheckedIOException thrown if a file or directory could not be
+	 *                              read
+	 */
+	FsSnapshotNode walk(final Path root, final @Nullable FsGroupingNode rootParent) throws UncheckedIOException {
+		final var visitor = new SnapshotVisitor(rootParent);
+		try {
+			Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, visitor);
+		} catch (final IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		}
+		final @Nullable FsSnapshotNode rootNode = visitor.rootNode;
+		if (rootNode == null) {
+			throw new IllegalStateException("No node created for " + root);
+		}
+		return rootNode;
+	}
+
+	/**
+	 * Creates a node for each visited path and adds it to the directory currently
+	 * visited.
+	 */
+	private static class SnapshotVisitor extends SimpleFileVisitor<Path> {
+		/**
+		 * The directories currently visited, the innermost one on top.
+		 */
+		private final Deque<FsSnapshotNode> directories = new ArrayDeque<>();
+		/**
+		 * The children collected so far for each directory in
+		 * {@link #directories}, in the same order.
+		 */
+		private final Deque<List<FsGroupingNode>> childLists = new ArrayDeque<>();
+
+		/**
+		 * The parent to set in the node created for the walked path.
+		 */
+		private final @Nullable FsGroupingNode rootParent;
+
+		private @Nullable FsSnapshotNode rootNode;
+
+		SnapshotVisitor(final @Nullable FsGroupingNode rootParent) {
+			this.rootParent = rootParent;
+		}
+
+		@Override
+		public FileVisitResult preVisitDirectory(final Path directory, final BasicFileAttributes attributes) {
+			final FsSnapshotNode node = addNode(directory, attributes);
+			this.directories.push(node);
+			this.childLists.push(new ArrayList<>());
+			return FileVisitResult.CONTINUE;
+		}
+
+		@Override
+		public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+			addNode(file, attributes);
+			return FileVisitResult.CONTINUE;
+		}
+
+		@Override
+		public FileVisitResult postVisitDirectory(final Path directory, final @Nullable IOException exception)
+				throws IOException {
+			if (exception != null) {
+				throw exception;
+			}
+			this.directories.pop().setChildren(this.childLists.pop());
+			return FileVisitResult.CONTINUE;
+		}
+
+		private FsSnapshotNode addNode(final Path path, final BasicFileAttributes attributes) {
+			final @Nullable FsSnapshotNode parent = this.directories.peek();
+			if (parent == null) {
+				final var node = new FsSnapshotNode(path, this.rootParent, attributes);
+				this.rootNode = node;
+				return node;
+			}
+			final var node = new FsSnapshotNode(path, parent, attributes);
+			this.childLists.element().add(node);
+			return node;
+		}
+	}
+}
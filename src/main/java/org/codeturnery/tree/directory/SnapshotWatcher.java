@@ -0,0 +1,289 @@
+package org.codeturnery.tree.directory;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.codeturnery.tree.Hasher;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Keeps a tree of {@link FsSnapshotNode}s up to date with the file system,
+ * with incremental cache invalidation: only the cached groups and hashes of the
+ * changed nodes are invalidated.
+ * <p>
+ * Each directory in the tree is registered with a {@link WatchService}. When
+ * changes are {@link #poll() polled}, only the directories reported as changed
+ * are listed again. Unchanged children (and thus whole unchanged subtrees) are
+ * kept, so their cached hashes stay valid. Only the changed directories and
+ * their ancestors are {@link Hasher#invalidate invalidated}.
+ * <p>
+ * A following {@link org.codeturnery.tree.Merger} run on the same
+ * {@link Hasher} thus only needs to group and hash the invalidated nodes again.
+ * <p>
+ * Known limitation: the merges themselves are not updated incrementally. After
+ * a change {@link org.codeturnery.tree.Merger#separateAndCreateMerges} must be
+ * run on the whole tree again, which buckets all nodes by their (cached) hashes
+ * and creates all merges again. Hence, while listing, grouping and hashing cost
+ * time proportional to the change, merging still costs time proportional to the
+ * size of the tree.
+ * <p>
+ * Instances are not thread-safe. The tree must not be used by other threads
+ * while changes are processed.
+ */
+public class SnapshotWatcher implements AutoCloseable {
+	private final WatchService watchService;
+	/**
+	 * The directory each registered key belongs to.
+	 */
+	private final Map<WatchKey, FsSnapshotNode> keyToDirectoryMapping = new HashMap<>();
+	/**
+	 * The key each registered directory was registered with.
+	 */
+	private final Map<FsSnapshotNode, WatchKey> directoryToKeyMapping = new HashMap<>();
+	/**
+	 * The instance whose cached hashes (and groups) are kept in sync with the
+	 * tree.
+	 */
+	private final Hasher<FsGroupingNode> hasher;
+	/**
+	 * Used to read directories added after the initial scan.
+	 */
+	private final FsSnapshotWalker walker = new FsSnapshotWalker();
+
+	/**
+	 * Register all directories in the given tree for changes.
+	 *
+	 * @param root   the tree to keep up to date
+	 * @param hasher the instance whose cached hashes (and groups) are to be
+	 *               invalidated on changes
+	 * @throws UncheckedIOException thrown if the watch service could not be
+	 *                              created or a directory not registered
+	 */
+	@SuppressWarnings("null")
+	public SnapshotWatcher(final FsSnapshotNode root, final Hasher<FsGroupingNode> hasher)
+			throws UncheckedIOException {
+		this.hasher = hasher;
+		try {
+			this.watchService = root.getPath().getFileSystem().newWatchService();
+		} catch (final IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		}
+		register(root);
+	}
+
+	/**
+	 * Process all changes reported so far, without waiting for new ones.
+	 *
+	 * @return the directories whose children changed, together with their
+	 *         ancestors, i.e. all invalidated nodes
+	 * @throws UncheckedIOException thrown if a changed directory could not be read
+	 */
+	public Set<FsSnapshotNode> poll() throws UncheckedIOException {
+		final var changedDirectories = new LinkedHashSet<FsSnapshotNode>();
+		for (@Nullable WatchKey key = this.watchService.poll(); key != null; key = this.watchService.poll()) {
+			collect(key, changedDirectories);
+		}
+		return update(changedDirectories);
+	}
+
+	/**
+	 * Wait for at least one change and process all changes reported until then.
+	 *
+	 * @param timeout how long to wait for the first change
+	 * @param unit    the unit of the timeout
+	 * @return the directories whose children changed, together with their
+	 *         ancestors, i.e. all invalidated nodes; empty if the timeout elapsed
+	 *         without any change
+	 * @throws InterruptedException thrown if interrupted while waiting
+	 * @throws UncheckedIOException thrown if a changed directory could not be read
+	 */
+	public Set<FsSnapshotNode> poll(final long timeout, final TimeUnit unit)
+			throws InterruptedException, UncheckedIOException {
+		final @Nullable WatchKey firstKey = this.watchService.poll(timeout, unit);
+		final var changedDirectories = new LinkedHashSet<FsSnapshotNode>();
+		if (firstKey != null) {
+			collect(firstKey, changedDirectories);
+		}
+		for (@Nullable WatchKey key = this.watchService.poll(); key != null; key = this.watchService.poll()) {
+			collect(key, changedDirectories);
+		}
+		return update(changedDirectories);
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.watchService.close();
+	}
+
+	/**
+	 * Add the directory of the given key to the given set and reset the key.
+	 * <p>
+	 * The events themselves are not evaluated, as the directory is listed again
+	 * anyway. This way overflows are handled the same as any other change.
+	 */
+	private void collect(final WatchKey key, final Set<FsSnapshotNode> changedDirectories) {
+		key.pollEvents();
+		final @Nullable FsSnapshotNode directory = this.keyToDirectoryMapping.get(key);
+		if (!key.reset()) {
+			// the directory itself was removed, its parent will be notified about that
+			this.keyToDirectoryMapping.remove(key);
+			if (directory != null) {
+				this.directoryToKeyMapping.remove(directory);
+			}
+			return;
+		}
+		if (directory != null) {
+			changedDirectories.add(directory);
+		}
+	}
+
+	/**
+	 * List the given directories again and invalidate them and their ancestors.
+	 */
+	private Set<FsSnapshotNode> update(final Set<FsSnapshotNode> changedDirectories) {
+		final var invalidatedNodes = new LinkedHashSet<FsSnapshotNode>();
+		for (final FsSnapshotNode directory : changedDirectories) {
+			if (!this.directoryToKeyMapping.containsKey(directory)) {
+				// removed by the update of a previously processed directory
+				continue;
+			}
+			try {
+				refresh(directory);
+			} catch (final UncheckedIOException exception) {
+				if (exception.getCause() instanceof NoSuchFileException) {
+					// removed while listing, a following event will report the removal
+					continue;
+				}
+				throw exception;
+			}
+			for (@Nullable FsGroupingNode node = directory; node != null; node = node.getParent()) {
+				if (node instanceof FsSnapshotNode && invalidatedNodes.add((FsSnapshotNode) node)) {
+					this.hasher.invalidate(node);
+				}
+			}
+		}
+		return invalidatedNodes;
+	}
+
+	/**
+	 * List the given directory again and update its children.
+	 * <p>
+	 * Children that are still present and did not change keep their node instance.
+	 * For sub-directories only their presence matters, as changes inside them are
+	 * reported for the sub-directories themselves.
+	 */
+	private void refresh(final FsSnapshotNode directory) {
+		final var previousChildren = new HashMap<Path, FsGroupingNode>();
+		for (final FsGroupingNode child : directory.getChildren().orElseThrow()) {
+			previousChildren.put(child.getPath(), child);
+		}
+
+		final var children = new ArrayList<FsGroupingNode>();
+		try (@SuppressWarnings("null")
+		final @NonNull DirectoryStream<Path> directoryPaths = Files.newDirectoryStream(directory.getPath())) {
+			for (final Path path : directoryPaths) {
+				final BasicFileAttributes attributes = ForkJoinDirectoryScanner.readAttributes(path);
+				final @Nullable FsGroupingNode previousChild = previousChildren.remove(path);
+				if (previousChild != null && isUnchanged(previousChild, attributes)) {
+					children.add(previousChild);
+					continue;
+				}
+				if (previousChild != null) {
+					discard(previousChild);
+				}
+				if (attributes.isDirectory()) {
+					final FsSnapshotNode subdirectory = this.walker.walk(path, directory);
+					register(subdirectory);
+					children.add(subdirectory);
+				} else {
+					children.add(new FsSnapshotNode(path, directory, attributes));
+				}
+			}
+		} catch (final IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		}
+
+		for (final FsGroupingNode removedChild : previousChildren.values()) {
+			discard(removedChild);
+		}
+		directory.setChildren(children);
+	}
+
+	private static boolean isUnchanged(final FsGroupingNode previousNode, final BasicFileAttributes attributes) {
+		if (!(previousNode instanceof FsSnapshotNode)) {
+			return false;
+		}
+		final var previousSnapshot = (FsSnapshotNode) previousNode;
+		if (previousSnapshot.isDirectory() || attributes.isDirectory()) {
+			return previousSnapshot.isDirectory() == attributes.isDirectory();
+		}
+		return previousSnapshot.getSize() == attributes.size()
+				&& previousSnapshot.getLastModifiedTime().equals(attributes.lastModifiedTime());
+	}
+
+	/**
+	 * Register the given node and all directories below it.
+	 */
+	@SuppressWarnings("null")
+	private void register(final FsSnapshotNode root) throws UncheckedIOException {
+		final var pending = new ArrayList<FsSnapshotNode>();
+		pending.add(root);
+		while (!pending.isEmpty()) {
+			final FsSnapshotNode directory = pending.remove(pending.size() - 1);
+			if (!directory.isDirectory()) {
+				continue;
+			}
+			try {
+				final WatchKey key = directory.getPath().register(this.watchService, ENTRY_CREATE, ENTRY_DELETE,
+						ENTRY_MODIFY);
+				this.keyToDirectoryMapping.put(key, directory);
+				this.directoryToKeyMapping.put(directory, key);
+			} catch (final IOException ioException) {
+				throw new UncheckedIOException(ioException);
+			}
+			for (final FsGroupingNode child : directory.getChildren().orElseThrow()) {
+				if (child instanceof FsSnapshotNode) {
+					pending.add((FsSnapshotNode) child);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stop watching the given node and all directories below it and remove their
+	 * cached hashes and groups.
+	 */
+	private void discard(final FsGroupingNode root) {
+		final var pending = new ArrayList<FsGroupingNode>();
+		pending.add(root);
+		while (!pending.isEmpty()) {
+			final FsGroupingNode node = pending.remove(pending.size() - 1);
+			this.hasher.invalidate(node);
+			final @Nullable WatchKey key = this.directoryToKeyMapping.remove(node);
+			if (key != null) {
+				key.cancel();
+				this.keyToDirectoryMapping.remove(key);
+			}
+			node.getChildren().ifPresent(pending::addAll);
+		}
+	}
+
+}
@@ -0,0 +1,336 @@
+package org.codeturnery.tree.directory;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.ZipException;
+
+import org.codeturnery.crc.Crc32Converter;
+import org.codeturnery.crc.Crc32Converter_Impl;
+import org.codeturnery.typesystem.Optionals;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Represents a ZIP archive in the file system, whose entries are provided as
+ * {@link ZipEntryNode} children.
+ * <p>
+ * Only the central directory at the end of the archive is read, through a
+ * memory-mapped {@link FileChannel}. The content of the entries is never read,
+ * the sizes and CRCs of the entries are taken from the central directory. This
+ * allows archives to take part in structural merging at the cost of reading a
+ * few KB per archive.
+ * <p>
+ * The central directory is read once on the first access to the children and
+ * the resulting nodes are kept, so that cached groups and hashes of them stay
+ * valid. This holds even if the children are first accessed by multiple threads
+ * concurrently, e.g. by parallel streams, as only one of them reads the central
+ * directory.
+ * <p>
+ * Files that can't be read or are not valid ZIP archives, despite their name,
+ * are treated as leaves, like any other file. Their content is not checked
+ * beyond the central directory, so an archive with corrupt entry data is still
+ * listed.
+ */
+public class ZipArchiveNode extends FsGroupingNode {
+	private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+	private static final int END_OF_CENTRAL_DIRECTORY_LENGTH = 22;
+	private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+	private static final int ZIP64_LOCATOR_LENGTH = 20;
+	private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+	private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LENGTH = 56;
+	private static final int CENTRAL_FILE_HEADER_SIGNATURE = 0x02014b50;
+	private static final int CENTRAL_FILE_HEADER_LENGTH = 46;
+	private static final int ZIP64_EXTRA_FIELD_ID = 0x0001;
+	private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+	private static final long ZIP64_MARKER = 0xFFFFFFFFL;
+	/**
+	 * General purpose flag set if the entry name is encoded in UTF-8 instead of
+	 * CP437.
+	 */
+	private static final int UTF8_FLAG = 1 << 11;
+	private static final Crc32Converter CRC_CONVERTER = new Crc32Converter_Impl();
+
+	/**
+	 * The entries read from the central directory, empty if the archive could not
+	 * be read, <code>null</code> if it was not read yet. Only written while
+	 * synchronized on this instance.
+	 */
+	private volatile @Nullable Optional<List<FsGroupingNode>> entries;
+
+	/**
+	 * Create a node for an archive without parent (i.e. a root node).
+	 *
+	 * @param path the path to a ZIP archive in the file system
+	 */
+	public ZipArchiveNode(final Path path) {
+		super(path);
+	}
+
+	/**
+	 * Create a node for an archive with the given parent.
+	 * <p>
+	 * <strong>The node will not automatically be added to the parent
+	 * node.</strong>
+	 *
+	 * @param path   the path to a ZIP archive in the file system
+	 * @param parent the parent of this node, <code>null</code> for a root node
+	 */
+	public ZipArchiveNode(final Path path, final @Nullable FsGroupingNode parent) {
+		super(path, parent);
+	}
+
+	/**
+	 * @return the entries of the archive, empty if it could not be read or is not
+	 *         a valid ZIP archive
+	 */
+	@SuppressWarnings("null")
+	@Override
+	public Optional<List<FsGroupingNode>> getChildren() {
+		@Nullable
+		Optional<List<FsGroupingNode>> currentEntries = this.entries;
+		if (currentEntries != null) {
+			return currentEntries;
+		}
+		synchronized (this) {
+			// another thread may have read the central directory while we waited
+			currentEntries = this.entries;
+			if (currentEntries == null) {
+				try {
+					currentEntries = Optionals.of(readCentralDirectory());
+				} catch (final IOException | IndexOutOfBoundsException | IllegalArgumentException exception) {
+					// not a (readable) archive, hence a file without children
+					currentEntries = Optionals.empty();
+				}
+				this.entries = currentEntries;
+			}
+			return currentEntries;
+		}
+	}
+
+	@Override
+	public int getChildrenCount() {
+		return getChildren().map(List::size).orElse(0).intValue();
+	}
+
+	/**
+	 * An archive has its entries as children, even though the file is not a
+	 * directory. Hence the central directory is read to determine if the archive
+	 * is valid, unlike for directories.
+	 */
+	@Override
+	public boolean isLeaf() {
+		return getChildren().isEmpty();
+	}
+
+	@Override
+	public void forEachChild(final Consumer<? super FsGroupingNode> action) {
+		getChildren().ifPresent(children -> children.forEach(action));
+	}
+
+	/**
+	 * Locate the central directory via the (ZIP64) end of central directory record
+	 * and create the nodes for the entries listed in it.
+	 */
+	private List<FsGroupingNode> readCentralDirectory() throws IOException {
+		try (FileChannel channel = FileChannel.open(getPath(), StandardOpenOption.READ)) {
+			final long fileSize = channel.size();
+			final long tailLength = Math.min(fileSize, END_OF_CENTRAL_DIRECTORY_LENGTH + MAX_COMMENT_LENGTH);
+			final long tailStart = fileSize - tailLength;
+			final MappedByteBuffer tail = map(channel, tailStart, tailLength);
+
+			final int endPosition = findEndOfCentralDirectory(tail);
+			long entryCount = tail.getShort(endPosition + 10) & 0xFFFFL;
+			long directoryLength = tail.getInt(endPosition + 12) & 0xFFFFFFFFL;
+			long directoryOffset = tail.getInt(endPosition + 16) & 0xFFFFFFFFL;
+
+			if (entryCount == 0xFFFF || directoryLength == ZIP64_MARKER || directoryOffset == ZIP64_MARKER) {
+				final long locatorPosition = tailStart + endPosition - ZIP64_LOCATOR_LENGTH;
+				if (locatorPosition >= 0) {
+					final MappedByteBuffer locator = map(channel, locatorPosition, ZIP64_LOCATOR_LENGTH);
+					if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+						final long zip64EndPosition = locator.getLong(8);
+						final MappedByteBuffer zip64End = map(channel, zip64EndPosition,
+								ZIP64_END_OF_CENTRAL_DIRECTORY_LENGTH);
+						if (zip64End.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+							throw new ZipException("Invalid ZIP64 end of central directory: " + getPath());
+						}
+						entryCount = zip64End.getLong(32);
+						directoryLength = zip64End.getLong(40);
+						directoryOffset = zip64End.getLong(48);
+					}
+				}
+			}
+
+			if (directoryOffset < 0 || directoryLength < 0 || directoryOffset + directoryLength > fileSize) {
+				throw new ZipException("Central directory out of bounds: " + getPath());
+			}
+			if (directoryLength > Integer.MAX_VALUE) {
+				throw new ZipException("Central directory too large to map: " + getPath());
+			}
+			return createEntries(map(channel, directoryOffset, directoryLength), entryCount);
+		}
+	}
+
+	private int findEndOfCentralDirectory(final MappedByteBuffer tail) throws ZipException {
+		for (int position = tail.limit() - END_OF_CENTRAL_DIRECTORY_LENGTH; position >= 0; position--) {
+			if (tail.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+				return position;
+			}
+		}
+		throw new ZipException("End of central directory not found: " + getPath());
+	}
+
+	/**
+	 * Create nodes for the entries in the given central directory.
+	 * <p>
+	 * Directories are created as needed, as archives are not required to contain
+	 * entries for directories or to list directories before their content.
+	 */
+	@SuppressWarnings("null")
+	private List<FsGroupingNode> createEntries(final MappedByteBuffer directory, final long entryCount)
+			throws ZipException {
+		final var rootEntries = new ArrayList<FsGroupingNode>();
+		final var directories = new HashMap<String, ZipEntryNode>();
+		final var nameBuffer = new byte[0xFFFF];
+		int position = 0;
+		for (long i = 0; i < entryCount; i++) {
+			if (position + CENTRAL_FILE_HEADER_LENGTH > directory.limit()
+					|| directory.getInt(position) != CENTRAL_FILE_HEADER_SIGNATURE) {
+				throw new ZipException("Invalid central directory file header " + i + ": " + getPath());
+			}
+			final int flags = directory.getShort(position + 8) & 0xFFFF;
+			final var crcBytes = new byte[Integer.BYTES];
+			directory.get(position + 16, crcBytes);
+			long compressedSize = directory.getInt(position + 20) & 0xFFFFFFFFL;
+			long size = directory.getInt(position + 24) & 0xFFFFFFFFL;
+			final int nameLength = directory.getShort(position + 28) & 0xFFFF;
+			final int extraLength = directory.getShort(position + 30) & 0xFFFF;
+			final int commentLength = directory.getShort(position + 32) & 0xFFFF;
+			final int namePosition = position + CENTRAL_FILE_HEADER_LENGTH;
+			final int extraPosition = namePosition + nameLength;
+			final int nextPosition = extraPosition + extraLength + commentLength;
+			if (nextPosition > directory.limit()) {
+				throw new ZipException("Truncated central directory file header " + i + ": " + getPath());
+			}
+
+			if (size == ZIP64_MARKER || compressedSize == ZIP64_MARKER) {
+				final int zip64Position = findExtraField(directory, extraPosition, extraLength, ZIP64_EXTRA_FIELD_ID);
+				if (zip64Position >= 0) {
+					int fieldPosition = zip64Position;
+					if (size == ZIP64_MARKER) {
+						size = directory.getLong(fieldPosition);
+						fieldPosition += Long.BYTES;
+					}
+					if (compressedSize == ZIP64_MARKER) {
+						compressedSize = directory.getLong(fieldPosition);
+					}
+				}
+			}
+
+			directory.get(namePosition, nameBuffer, 0, nameLength);
+			final Charset charset = (flags & UTF8_FLAG) != 0 ? StandardCharsets.UTF_8 : getLegacyCharset();
+			final String name = new String(nameBuffer, 0, nameLength, charset);
+			addEntry(name, size, compressedSize, CRC_CONVERTER.crcToLong(crcBytes), rootEntries, directories);
+			position = nextPosition;
+		}
+		return rootEntries;
+	}
+
+	/**
+	 * @return the position of the data of the extra field with the given ID,
+	 *         <code>-1</code> if not present
+	 */
+	private static int findExtraField(final MappedByteBuffer directory, final int extraPosition,
+			final int extraLength, final int fieldId) {
+		int position = extraPosition;
+		final int end = extraPosition + extraLength;
+		while (position + 4 <= end) {
+			final int id = directory.getShort(position) & 0xFFFF;
+			final int length = directory.getShort(position + 2) & 0xFFFF;
+			if (id == fieldId) {
+				return position + 4;
+			}
+			position += 4 + length;
+		}
+		return -1;
+	}
+
+	private void addEntry(final String name, final long size, final long compressedSize, final long crc,
+			final List<FsGroupingNode> rootEntries, final Map<String, ZipEntryNode> directories) {
+		String normalizedName = name.replace('\\', '/');
+		while (normalizedName.startsWith("/")) {
+			normalizedName = normalizedName.substring(1);
+		}
+		final boolean directory = normalizedName.endsWith("/");
+		while (normalizedName.endsWith("/")) {
+			normalizedName = normalizedName.substring(0, normalizedName.length() - 1);
+		}
+		if (normalizedName.isEmpty()) {
+			return;
+		}
+		if (directory) {
+			getDirectory(normalizedName, rootEntries, directories);
+			return;
+		}
+		final int separatorIndex = normalizedName.lastIndexOf('/');
+		final FsGroupingNode parent = separatorIndex < 0 ? this
+				: getDirectory(normalizedName.substring(0, separatorIndex), rootEntries, directories);
+		final var file = new ZipEntryNode(getPath().resolve(normalizedName), parent, size, compressedSize, crc);
+		if (parent instanceof ZipEntryNode) {
+			((ZipEntryNode) parent).addChild(file);
+		} else {
+			rootEntries.add(file);
+		}
+	}
+
+	/**
+	 * Get the node for the directory with the given name, creating it and its
+	 * parents if needed.
+	 */
+	private ZipEntryNode getDirectory(final String name, final List<FsGroupingNode> rootEntries,
+			final Map<String, ZipEntryNode> directories) {
+		final @Nullable ZipEntryNode existingDirectory = directories.get(name);
+		if (existingDirectory != null) {
+			return existingDirectory;
+		}
+		final int separatorIndex = name.lastIndexOf('/');
+		final @Nullable ZipEntryNode parent = separatorIndex < 0 ? null
+				: getDirectory(name.substring(0, separatorIndex), rootEntries, directories);
+		final var directory = new ZipEntryNode(getPath().resolve(name), parent == null ? this : parent);
+		if (parent == null) {
+			rootEntries.add(directory);
+		} else {
+			parent.addChild(directory);
+		}
+		directories.put(name, directory);
+		return directory;
+	}
+
+	@SuppressWarnings("null")
+	private static MappedByteBuffer map(final FileChannel channel, final long position, final long length)
+			throws IOException {
+		final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	/**
+	 * @return the charset for entry names without the UTF-8 flag, CP437 if
+	 *         available
+	 */
+	@SuppressWarnings("null")
+	private static Charset getLegacyCharset() {
+		return Charset.isSupported("IBM437") ? Charset.forName("IBM437") : StandardCharsets.ISO_8859_1;
+	}
+}
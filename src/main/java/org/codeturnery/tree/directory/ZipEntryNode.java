@@ -0,0 +1,122 @@
+package org.codeturnery.tree.directory;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import org.codeturnery.typesystem.Optionals;
+
+/**
+ * Represents a single file or directory inside a ZIP archive, as listed in the
+ * central directory of the archive.
+ * <p>
+ * The path of an entry is the path of its archive resolved with the name of the
+ * entry, e.g. <code>/data/archive.zip/dir/file.txt</code>. It can be used to
+ * match the file name but can not be opened via {@link java.nio.file.Files}.
+ * <p>
+ * Directories not listed explicitly in the archive, but implied by the names of
+ * the entries in them, are represented by instances too.
+ */
+public class ZipEntryNode extends FsGroupingNode {
+	/**
+	 * The entries in this directory. Empty if this node represents a file.
+	 */
+	private final Optional<List<FsGroupingNode>> children;
+	private final long size;
+	private final long compressedSize;
+	private final long crc;
+
+	/**
+	 * Create a node for a file entry.
+	 *
+	 * @param path           the path of the archive resolved with the entry name
+	 * @param parent         the archive or the directory entry containing this
+	 *                       entry
+	 * @param size           the uncompressed size in bytes
+	 * @param compressedSize the compressed size in bytes
+	 * @param crc            the CRC-32 of the uncompressed content, as
+	 *                       <code>0 0 0 0 W X Y Z</code> value
+	 */
+	ZipEntryNode(final Path path, final FsGroupingNode parent, final long size, final long compressedSize,
+			final long crc) {
+		super(path, parent);
+		this.children = Optionals.empty();
+		this.size = size;
+		this.compressedSize = compressedSize;
+		this.crc = crc;
+	}
+
+	/**
+	 * Create a node for a directory entry without any children added yet.
+	 *
+	 * @param path   the path of the archive resolved with the entry name
+	 * @param parent the archive or the directory entry containing this entry
+	 */
+	ZipEntryNode(final Path path, final FsGroupingNode parent) {
+		super(path, parent);
+		this.children = Optionals.of(new ArrayList<>());
+		this.size = 0;
+		this.compressedSize = 0;
+		this.crc = 0;
+	}
+
+	@Override
+	public Optional<List<FsGroupingNode>> getChildren() {
+		return this.children;
+	}
+
+	@Override
+	public int getChildrenCount() {
+		return this.children.map(List::size).orElse(0).intValue();
+	}
+
+	@Override
+	public boolean isLeaf() {
+		return this.children.isEmpty();
+	}
+
+	@Override
+	public void forEachChild(final Consumer<? super FsGroupingNode> action) {
+		this.children.ifPresent(list -> list.forEach(action));
+	}
+
+	/**
+	 * @return <code>true</code> if this node represents a directory entry
+	 */
+	public boolean isDirectory() {
+		return this.children.isPresent();
+	}
+
+	/**
+	 * @return the uncompressed size in bytes, <code>0</code> for directories
+	 */
+	public long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * @return the compressed size in bytes, <code>0</code> for directories
+	 */
+	public long getCompressedSize() {
+		return this.compressedSize;
+	}
+
+	/**
+	 * @return the CRC-32 of the uncompressed content as
+	 *         <code>0 0 0 0 W X Y Z</code> value, matching the value of a
+	 *         {@link java.util.zip.CRC32} over the content; <code>0</code> for
+	 *         directories
+	 */
+	public long getCrc() {
+		return this.crc;
+	}
+
+	/**
+	 * @param child the entry to add to this directory
+	 */
+	void addChild(final FsGroupingNode child) {
+		this.children.orElseThrow().add(child);
+	}
+}
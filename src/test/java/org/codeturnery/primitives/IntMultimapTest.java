@@ -0,0 +1,187 @@
+package org.codeturnery.primitives;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({ "null", "javadoc" })
+class IntMultimapTest {
+	@Test
+	void testAddAndGet() {
+		final var multimap = new IntMultimap<String>();
+		multimap.add(5, "a");
+		multimap.add(3, "b");
+		multimap.add(5, "c");
+		multimap.add(5, "a");
+
+		assertEquals(4, multimap.size());
+		assertEquals(2, multimap.keyCount());
+		assertEquals(List.of("a", "c", "a"), multimap.get(5));
+		assertEquals(List.of("b"), multimap.get(3));
+		assertEquals(List.of(), multimap.get(4));
+		assertEquals(3, multimap.getValueCount(5));
+		assertEquals(0, multimap.getValueCount(4));
+		assertTrue(multimap.containsKey(3));
+		assertFalse(multimap.containsKey(4));
+		// the returned lists are copies
+		multimap.get(5).clear();
+		assertEquals(3, multimap.getValueCount(5));
+	}
+
+	@Test
+	void testCollidingKeys() {
+		final int mask = 15;
+		final var collidingKeys = new ArrayList<Integer>();
+		for (int key = 0; collidingKeys.size() < 5; key++) {
+			if ((PrimitiveHashing.mix(key) & mask) == 3) {
+				collidingKeys.add(Integer.valueOf(key));
+			}
+		}
+
+		final var multimap = new IntMultimap<String>();
+		for (final Integer key : collidingKeys) {
+			multimap.add(key.intValue(), "first " + key);
+			multimap.add(key.intValue(), "second " + key);
+		}
+		assertEquals(collidingKeys.size(), multimap.keyCount());
+		for (final Integer key : collidingKeys) {
+			assertEquals(List.of("first " + key, "second " + key), multimap.get(key.intValue()));
+		}
+	}
+
+	@Test
+	void testRemove() {
+		final var multimap = new IntMultimap<String>();
+		multimap.add(1, "a");
+		multimap.add(1, "b");
+		multimap.add(1, "a");
+		multimap.add(2, "c");
+
+		assertFalse(multimap.remove(1, "x"));
+		assertFalse(multimap.remove(3, "a"));
+		// removes the first equal value only
+		assertTrue(multimap.remove(1, "a"));
+		assertEquals(List.of("b", "a"), multimap.get(1));
+		// removing the last value keeps the chain consistent for appending
+		assertTrue(multimap.remove(1, "a"));
+		multimap.add(1, "d");
+		assertEquals(List.of("b", "d"), multimap.get(1));
+
+		assertTrue(multimap.remove(2, "c"));
+		assertFalse(multimap.containsKey(2));
+		assertEquals(1, multimap.keyCount());
+		assertEquals(2, multimap.size());
+		assertNull(multimap.asMap().get(Integer.valueOf(2)));
+	}
+
+	@Test
+	void testIterationOrder() {
+		final var multimap = new IntMultimap<String>();
+		multimap.add(30, "a");
+		multimap.add(10, "b");
+		multimap.add(20, "c");
+		multimap.add(10, "d");
+		multimap.remove(20, "c");
+		// a key is removed with its last value, hence it is iterated last if added again
+		multimap.add(40, "e");
+		multimap.add(20, "f");
+
+		final var keys = new ArrayList<Integer>();
+		final var valueLists = new ArrayList<List<String>>();
+		multimap.forEach((values, key) -> {
+			keys.add(Integer.valueOf(key));
+			valueLists.add(values);
+		});
+		assertEquals(List.of(30, 10, 40, 20), keys);
+		assertEquals(List.of(List.of("a"), List.of("b", "d"), List.of("e"), List.of("f")), valueLists);
+		assertEquals(valueLists, multimap.valueLists().collect(Collectors.toList()));
+		assertEquals(keys, new ArrayList<>(multimap.asMap().keySet()));
+		assertEquals(valueLists, new ArrayList<>(multimap.asMap().values()));
+	}
+
+	@Test
+	void testResizingAndCompaction() {
+		final var multimap = new IntMultimap<Integer>(2);
+		for (int i = 0; i < 10_000; i++) {
+			multimap.add(i % 1000, Integer.valueOf(i));
+		}
+		assertEquals(10_000, multimap.size());
+		assertEquals(1000, multimap.keyCount());
+
+		// removing most values compacts the remaining ones
+		for (int i = 0; i < 9_000; i++) {
+			assertTrue(multimap.remove(i % 1000, Integer.valueOf(i)));
+		}
+		assertEquals(1000, multimap.size());
+		for (int key = 0; key < 1000; key++) {
+			assertEquals(List.of(Integer.valueOf(9000 + key)), multimap.get(key));
+		}
+		multimap.add(0, Integer.valueOf(-1));
+		assertEquals(List.of(Integer.valueOf(9000), Integer.valueOf(-1)), multimap.get(0));
+	}
+
+	@Test
+	void testAgainstLinkedHashMap() {
+		final var random = new Random(42);
+		final var multimap = new IntMultimap<Integer>();
+		final var expected = new LinkedHashMap<Integer, List<Integer>>();
+		for (int i = 0; i < 20_000; i++) {
+			final int key = random.nextInt(100) - 50;
+			final Integer value = Integer.valueOf(random.nextInt(5));
+			if (random.nextInt(3) == 0) {
+				final List<Integer> values = expected.get(Integer.valueOf(key));
+				assertEquals(values != null && values.remove(value), multimap.remove(key, value));
+				if (values != null && values.isEmpty()) {
+					expected.remove(Integer.valueOf(key));
+				}
+			} else {
+				multimap.add(key, value);
+				expected.computeIfAbsent(Integer.valueOf(key), k -> new ArrayList<>()).add(value);
+			}
+		}
+
+		assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(multimap.asMap().entrySet()));
+		assertEquals(expected.values().stream().mapToInt(List::size).sum(), multimap.size());
+		assertEquals(expected.size(), multimap.keyCount());
+	}
+
+	@Test
+	void testRemovedKeysAreReclaimed() {
+		final var multimap = new IntMultimap<String>();
+		// each key is used once only, so the keys would accumulate if kept
+		for (int key = 0; key < 100_000; key++) {
+			multimap.add(key, "a");
+			multimap.add(key + 1_000_000, "b");
+			assertTrue(multimap.remove(key, "a"));
+			assertTrue(multimap.remove(key + 1_000_000, "b"));
+			assertFalse(multimap.containsKey(key));
+		}
+		assertEquals(0, multimap.size());
+		assertEquals(0, multimap.keyCount());
+		assertTrue(multimap.asMap().isEmpty());
+
+		// keys colliding with removed ones are still found after the table was changed
+		for (int key = 0; key < 1000; key++) {
+			multimap.add(key * 1024, Integer.toString(key));
+		}
+		for (int key = 0; key < 1000; key += 2) {
+			assertTrue(multimap.remove(key * 1024, Integer.toString(key)));
+		}
+		for (int key = 0; key < 1000; key++) {
+			assertEquals(key % 2 == 1, multimap.containsKey(key * 1024));
+		}
+		assertEquals(500, multimap.keyCount());
+		assertEquals(IntStream.range(0, 500).mapToObj(index -> Integer.valueOf((index * 2 + 1) * 1024))
+				.collect(Collectors.toList()), new ArrayList<>(multimap.asMap().keySet()));
+	}
+}
@@ -0,0 +1,39 @@
+package org.codeturnery.primitives;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({ "null", "javadoc" })
+class LongMultimapTest {
+	@Test
+	void testKeysDifferingInUpperBits() {
+		// both keys are folded to the same int hash
+		final long lowKey = 0L;
+		final long highKey = 0x1_0000_0001L;
+		final var multimap = new LongMultimap<String>();
+		multimap.add(highKey, "high");
+		multimap.add(lowKey, "low");
+		multimap.add(highKey, "high again");
+
+		assertEquals(List.of("high", "high again"), multimap.get(highKey));
+		assertEquals(List.of("low"), multimap.get(lowKey));
+		assertFalse(multimap.containsKey(1L));
+		assertTrue(multimap.remove(highKey, "high"));
+		assertEquals(1, multimap.getValueCount(highKey));
+
+		final var keys = new ArrayList<Long>();
+		multimap.forEach((values, key) -> keys.add(Long.valueOf(key)));
+		assertEquals(List.of(Long.valueOf(highKey), Long.valueOf(lowKey)), keys);
+		assertEquals(Map.of(Long.valueOf(highKey), List.of("high again"), Long.valueOf(lowKey), List.of("low")),
+				multimap.asMap());
+		// keys of a different type are not found in the view
+		assertFalse(multimap.asMap().containsKey(Integer.valueOf(0)));
+	}
+}
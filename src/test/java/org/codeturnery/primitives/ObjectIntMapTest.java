@@ -0,0 +1,170 @@
+package org.codeturnery.primitives;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({ "null", "javadoc" })
+class ObjectIntMapTest {
+	/**
+	 * Key with a configurable hash code, to create collisions.
+	 */
+	static final class Key {
+		final int id;
+		final int hash;
+
+		Key(final int id, final int hash) {
+			this.id = id;
+			this.hash = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(final @Nullable Object other) {
+			return other instanceof Key && ((Key) other).id == this.id;
+		}
+
+		@Override
+		public String toString() {
+			return this.id + "#" + this.hash;
+		}
+	}
+
+	@Test
+	void testPutAndGet() {
+		final var map = new ObjectIntMap<String>();
+		assertTrue(map.isEmpty());
+		map.put("a", 1);
+		assertTrue(map.putIfAbsent("b", 2));
+		assertFalse(map.putIfAbsent("b", 3));
+		map.put("a", 4);
+
+		assertEquals(2, map.size());
+		assertEquals(4, map.getOrDefault("a", -1));
+		assertEquals(2, map.getOrDefault("b", -1));
+		assertEquals(-1, map.getOrDefault("c", -1));
+		// a stored value equal to the default is told apart via containsKey
+		map.put("c", -1);
+		assertEquals(-1, map.getOrDefault("c", -1));
+		assertTrue(map.containsKey("c"));
+		assertFalse(map.containsKey("d"));
+
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertFalse(map.containsKey("a"));
+	}
+
+	@Test
+	void testRemoveWithinCollisionChain() {
+		final var map = new ObjectIntMap<Key>();
+		final var first = new Key(1, 7);
+		final var second = new Key(2, 7);
+		final var third = new Key(3, 7);
+		map.put(first, 1);
+		map.put(second, 2);
+		map.put(third, 3);
+
+		assertTrue(map.remove(first));
+		assertFalse(map.remove(first));
+		// the following keys of the chain are shifted back and still found
+		assertEquals(2, map.getOrDefault(second, -1));
+		assertEquals(3, map.getOrDefault(third, -1));
+		assertFalse(map.containsKey(first));
+		assertTrue(map.remove(third));
+		assertEquals(2, map.getOrDefault(second, -1));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	void testRemoveWithWrappingChains() {
+		final int capacity = 8;
+		final int mask = capacity - 1;
+		// keys placed into the last slot, wrapping around to the first slots
+		final var lastSlotKeys = new Key[3];
+		// keys placed into the first slot, displaced by the wrapped keys
+		final var firstSlotKeys = new Key[2];
+		int lastCount = 0;
+		int firstCount = 0;
+		for (int hash = 0; lastCount < lastSlotKeys.length || firstCount < firstSlotKeys.length; hash++) {
+			final int slot = PrimitiveHashing.mix(hash) & mask;
+			if (slot == mask && lastCount < lastSlotKeys.length) {
+				lastSlotKeys[lastCount++] = new Key(hash, hash);
+			} else if (slot == 0 && firstCount < firstSlotKeys.length) {
+				firstSlotKeys[firstCount++] = new Key(hash, hash);
+			}
+		}
+
+		final var map = new ObjectIntMap<Key>(3);
+		for (final Key key : lastSlotKeys) {
+			map.put(key, key.id);
+		}
+		map.put(firstSlotKeys[0], firstSlotKeys[0].id);
+		assertEquals(4, map.size());
+
+		assertTrue(map.remove(lastSlotKeys[0]));
+		for (int i = 1; i < lastSlotKeys.length; i++) {
+			assertEquals(lastSlotKeys[i].id, map.getOrDefault(lastSlotKeys[i], -1));
+		}
+		assertEquals(firstSlotKeys[0].id, map.getOrDefault(firstSlotKeys[0], -1));
+		assertFalse(map.containsKey(firstSlotKeys[1]));
+	}
+
+	@Test
+	void testResizingAndIteration() {
+		final var map = new ObjectIntMap<Integer>();
+		for (int i = 0; i < 1000; i++) {
+			map.put(Integer.valueOf(i), i * 2);
+		}
+		assertEquals(1000, map.size());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i * 2, map.getOrDefault(Integer.valueOf(i), -1));
+		}
+
+		final var visited = new HashMap<Integer, Integer>();
+		map.forEach((key, value) -> assertEquals(null, visited.put(key, Integer.valueOf(value))));
+		assertEquals(1000, visited.size());
+		visited.forEach((key, value) -> assertEquals(key.intValue() * 2, value.intValue()));
+	}
+
+	@Test
+	void testAgainstHashMap() {
+		final var random = new Random(42);
+		final var map = new ObjectIntMap<Key>();
+		final var expected = new HashMap<Key, Integer>();
+		for (int i = 0; i < 20_000; i++) {
+			// few distinct hashes result in long collision chains
+			final int id = random.nextInt(200);
+			final var key = new Key(id, id % 13);
+			switch (random.nextInt(3)) {
+			case 0:
+				map.put(key, i);
+				expected.put(key, Integer.valueOf(i));
+				break;
+			case 1:
+				assertEquals(expected.putIfAbsent(key, Integer.valueOf(i)) == null, map.putIfAbsent(key, i));
+				break;
+			default:
+				assertEquals(expected.remove(key) != null, map.remove(key));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+
+		final var actual = new HashMap<Key, Integer>();
+		map.forEach((key, value) -> actual.put(key, Integer.valueOf(value)));
+		assertEquals(expected, actual);
+		for (final Map.Entry<Key, Integer> entry : expected.entrySet()) {
+			assertEquals(entry.getValue().intValue(), map.getOrDefault(entry.getKey(), -1));
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package org.codeturnery.primitives;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({ "null", "javadoc" })
+class ObjectLongMapTest {
+	@Test
+	void testValuesBeyondIntRange() {
+		final var map = new ObjectLongMap<String>(2);
+		for (int i = 0; i < 100; i++) {
+			map.put("key" + i, Long.MAX_VALUE - i);
+		}
+		assertFalse(map.putIfAbsent("key0", 0));
+		assertTrue(map.remove("key1"));
+		assertEquals(99, map.size());
+		assertEquals(Long.MAX_VALUE, map.getOrDefault("key0", -1));
+		assertEquals(-1, map.getOrDefault("key1", -1));
+
+		final var values = new HashMap<String, Long>();
+		map.forEach((key, value) -> values.put(key, Long.valueOf(value)));
+		assertEquals(99, values.size());
+		assertEquals(Long.valueOf(Long.MAX_VALUE - 99), values.get("key99"));
+	}
+}
@@ -0,0 +1,126 @@
+package org.codeturnery.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({ "null", "javadoc" })
+class CountHistogramTest {
+	@Test
+	void testExactBelow32() {
+		final var histogram = new CountHistogram();
+		assertEquals(-1, histogram.getQuantile(0.5));
+		for (int value = 0; value < 32; value++) {
+			histogram.add(value);
+		}
+		for (int value = 0; value < 32; value++) {
+			assertEquals(value, histogram.getQuantile((value + 1) / 32.0));
+		}
+		assertEquals(0, histogram.getQuantile(0));
+
+		for (int value = 0; value < 32; value++) {
+			final var single = new CountHistogram();
+			single.add(value);
+			assertEquals(value, single.getQuantile(1));
+		}
+	}
+
+	@Test
+	void testBucketWidths() {
+		for (final int value : new int[] { 32, 33, 34, 63, 64, 65, 127, 128, 1 << 10, (1 << 10) + 1, (1 << 20) - 1,
+				1 << 20, 1 << 30, (1 << 30) + 1, Integer.MAX_VALUE - 1, Integer.MAX_VALUE }) {
+			final var histogram = new CountHistogram();
+			histogram.add(value);
+			final int upperBound = histogram.getQuantile(1);
+			assertTrue(upperBound >= value, value + " rounded down to " + upperBound);
+			// the bucket width relative to its lowest value, which isn't above the given one
+			assertTrue((upperBound - value) * 16L < value, value + " rounded up to " + upperBound);
+		}
+		// the exact bucket boundaries
+		assertEquals(33, quantileOf(32));
+		assertEquals(33, quantileOf(33));
+		assertEquals(35, quantileOf(34));
+		assertEquals(67, quantileOf(64));
+		assertEquals((1 << 10) + (1 << 6) - 1, quantileOf(1 << 10));
+		assertEquals(Integer.MAX_VALUE, quantileOf(Integer.MAX_VALUE));
+		assertEquals(Integer.MAX_VALUE, quantileOf(Integer.MAX_VALUE - (1 << 26) + 1));
+		assertEquals(Integer.MAX_VALUE - (1 << 26), quantileOf(Integer.MAX_VALUE - (1 << 26)));
+	}
+
+	@Test
+	void testBucketsAreMonotonic() {
+		int previousUpperBound = -1;
+		for (long value = 0; value <= Integer.MAX_VALUE; value += value < 4096 ? 1 : value >>> 8) {
+			final int upperBound = quantileOf((int) value);
+			assertTrue(upperBound >= previousUpperBound, "bucket of " + value + " below the previous one");
+			assertTrue(upperBound >= value);
+			previousUpperBound = upperBound;
+		}
+	}
+
+	@Test
+	void testMergeEqualsAddingAllValues() {
+		final var random = new Random(7);
+		final var first = new CountHistogram();
+		final var second = new CountHistogram();
+		final var all = new CountHistogram();
+		for (int i = 0; i < 10_000; i++) {
+			// different ranges, so that the histograms have counter arrays of different lengths
+			final int value = i % 2 == 0 ? random.nextInt(100) : random.nextInt(1 << (1 + random.nextInt(30)));
+			(i % 3 == 0 ? first : second).add(value);
+			all.add(value);
+		}
+		final var merged = new CountHistogram();
+		merged.merge(first);
+		merged.merge(second);
+		final var mergedReversed = new CountHistogram();
+		mergedReversed.merge(second);
+		mergedReversed.merge(first);
+		for (final double quantile : new double[] { 0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 0.999, 1 }) {
+			assertEquals(all.getQuantile(quantile), merged.getQuantile(quantile));
+			assertEquals(all.getQuantile(quantile), mergedReversed.getQuantile(quantile));
+		}
+
+		// merging an empty histogram changes nothing
+		merged.merge(new CountHistogram());
+		assertEquals(all.getQuantile(0.5), merged.getQuantile(0.5));
+	}
+
+	@Test
+	void testQuantilesAgainstSortedValues() {
+		final var random = new Random(11);
+		final var values = new int[5000];
+		final var histogram = new CountHistogram();
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextInt(100_000);
+			histogram.add(values[i]);
+		}
+		Arrays.sort(values);
+		for (final double quantile : new double[] { 0.001, 0.1, 0.5, 0.9, 0.99, 1 }) {
+			final int exact = values[(int) Math.ceil(quantile * values.length) - 1];
+			final int approximated = histogram.getQuantile(quantile);
+			assertTrue(approximated >= exact && (approximated - exact) * 16L <= exact,
+					quantile + ": " + approximated + " for " + exact);
+		}
+	}
+
+	@Test
+	void testInvalidArguments() {
+		final var histogram = new CountHistogram();
+		assertThrows(IllegalArgumentException.class, () -> histogram.add(-1));
+		assertThrows(IllegalArgumentException.class, () -> histogram.getQuantile(-0.1));
+		assertThrows(IllegalArgumentException.class, () -> histogram.getQuantile(1.1));
+		assertThrows(IllegalArgumentException.class, () -> histogram.getQuantile(Double.NaN));
+	}
+
+	private static int quantileOf(final int value) {
+		final var histogram = new CountHistogram();
+		histogram.add(value);
+		return histogram.getQuantile(1);
+	}
+}
@@ -0,0 +1,157 @@
+package org.codeturnery.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.codeturnery.typesystem.Optionals;
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({ "null", "javadoc" })
+class GroupCacheTest {
+	@Test
+	void testHitsAndMisses() {
+		for (final GroupCache<TestNode> cache : List.<GroupCache<TestNode>>of(GroupCache.unbounded(),
+				GroupCache.concurrent(), GroupCache.weakKeys(false), GroupCache.weakKeys(true),
+				GroupCache.leastRecentlyUsed(10, false), GroupCache.leastRecentlyUsed(10, true))) {
+			final var grouping = new CountingGrouping();
+			final var first = new TestNode("a", List.of());
+			final var second = new TestNode("b", List.of());
+
+			final Optional<List<Group<TestNode>>> groups = cache.computeIfAbsent(first, grouping);
+			assertSame(groups, cache.computeIfAbsent(first, grouping));
+			cache.computeIfAbsent(second, grouping);
+			cache.computeIfAbsent(first, grouping);
+
+			assertEquals(2, grouping.count.get());
+			assertEquals(2L, cache.getMissCount());
+			assertEquals(2L, cache.getHitCount());
+			assertEquals(2, cache.size());
+			assertEquals("size=2, hits=2, misses=2", cache.toString());
+		}
+	}
+
+	@Test
+	void testRemoveAndRecompute() {
+		for (final GroupCache<TestNode> cache : List.<GroupCache<TestNode>>of(GroupCache.unbounded(),
+				GroupCache.concurrent())) {
+			final var grouping = new CountingGrouping();
+			final var node = new TestNode("a", List.of());
+
+			assertNull(cache.remove(node));
+			final Optional<List<Group<TestNode>>> groups = cache.computeIfAbsent(node, grouping);
+			assertSame(groups, cache.remove(node));
+			assertEquals(0, cache.size());
+
+			final Optional<List<Group<TestNode>>> recomputedGroups = cache.computeIfAbsent(node, grouping);
+			assertEquals(groups, recomputedGroups);
+			assertEquals(2, grouping.count.get());
+			assertEquals(2L, cache.getMissCount());
+			assertEquals(0L, cache.getHitCount());
+		}
+	}
+
+	@Test
+	void testFailedGroupingIsNotCached() {
+		for (final GroupCache<TestNode> cache : List.<GroupCache<TestNode>>of(GroupCache.unbounded(),
+				GroupCache.concurrent())) {
+			final var node = new TestNode("a", List.of());
+			assertThrows(IllegalStateException.class, () -> cache.computeIfAbsent(node, key -> {
+				throw new IllegalStateException();
+			}));
+			assertEquals(0, cache.size());
+
+			final var grouping = new CountingGrouping();
+			cache.computeIfAbsent(node, grouping);
+			assertEquals(1, grouping.count.get());
+			assertEquals(1, cache.size());
+		}
+	}
+
+	@Test
+	void testLeastRecentlyUsedEviction() {
+		for (final boolean threadSafe : new boolean[] { false, true }) {
+			final GroupCache<TestNode> cache = GroupCache.leastRecentlyUsed(2, threadSafe);
+			assertEquals(threadSafe, cache.isThreadSafe());
+			final var grouping = new CountingGrouping();
+			final var first = new TestNode("a", List.of());
+			final var second = new TestNode("b", List.of());
+			final var third = new TestNode("c", List.of());
+
+			cache.computeIfAbsent(first, grouping);
+			cache.computeIfAbsent(second, grouping);
+			// makes the second node the least recently used one
+			cache.computeIfAbsent(first, grouping);
+			cache.computeIfAbsent(third, grouping);
+			assertEquals(2, cache.size());
+			assertEquals(3, grouping.count.get());
+
+			// still cached
+			cache.computeIfAbsent(first, grouping);
+			cache.computeIfAbsent(third, grouping);
+			assertEquals(3, grouping.count.get());
+
+			// evicted, hence calculated again, evicting the first node
+			cache.computeIfAbsent(second, grouping);
+			assertEquals(4, grouping.count.get());
+			assertNull(cache.remove(first));
+			assertNotNull(cache.remove(third));
+			assertEquals(4L, cache.getMissCount());
+			assertEquals(3L, cache.getHitCount());
+		}
+		assertThrows(IllegalArgumentException.class, () -> GroupCache.leastRecentlyUsed(0, false));
+	}
+
+	@Test
+	void testWeakKeys() throws InterruptedException {
+		final GroupCache<TestNode> cache = GroupCache.weakKeys(false);
+		assertFalse(cache.isThreadSafe());
+		final var grouper = new Grouper<>(new Config().getPredicates(), cache);
+		@Nullable
+		TestNode root = new TestNode("root",
+				List.of(new TestNode("child", List.of(new TestNode("a.txt"))), new TestNode("b.zip")));
+		grouper.getGroups(root);
+		grouper.getGroups(root.getChildren().get().get(0));
+
+		// the child is still referenced by the cached groups of the root
+		awaitSize(cache, 1);
+		assertEquals(2, cache.size());
+		grouper.getGroups(root);
+		assertEquals(1L, cache.getHitCount());
+
+		// releasing the root releases its groups and hence those of the child
+		root = null;
+		assertTrue(awaitSize(cache, 0));
+		assertEquals(2L, cache.getMissCount());
+	}
+
+	private static boolean awaitSize(final GroupCache<?> cache, final int size) throws InterruptedException {
+		for (int attempt = 0; attempt < 20 && cache.size() > size; attempt++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		return cache.size() <= size;
+	}
+
+	private static final class CountingGrouping
+			implements Function<ChildableNode<TestNode>, Optional<List<Group<TestNode>>>> {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Optional<List<Group<TestNode>>> apply(final ChildableNode<TestNode> node) {
+			this.count.incrementAndGet();
+			return Optionals.of(new ArrayList<>());
+		}
+	}
+}
@@ -3,6 +3,9 @@ package org.codeturnery.tree;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 
 import org.junit.jupiter.api.Test;
 
@@ -20,4 +23,53 @@ class GroupPredicateHasherTest {
 		assertEquals("[77, 88]", Arrays.toString(hasher.reduceDuplicatesTo(new int[] {77, 88, 88}, 1)));
 	}
 
+	@Test
+	void testStructuralEquality() {
+		final var config = new Config();
+		final var calculatedInputs = new int[1];
+		final var hasher = new GroupPredicateHasher<>(new Grouper<>(config.getPredicates()),
+				config.getHashApproaches()) {
+			@Override
+			protected long[] calculateFingerprintInput(final Group<TestNode> group) {
+				calculatedInputs[0]++;
+				return super.calculateFingerprintInput(group);
+			}
+		};
+		final TestNode node = createDirectory("a.txt", "b.png", "c");
+		final TestNode equalNode = createDirectory("x.png", "y", "z.txt");
+		final TestNode otherNode = createDirectory("x.png", "y.txt", "z.txt");
+		final TestNode fewerGroupsNode = createDirectory("x.png", "y.txt");
+
+		assertEquals(hasher.getFingerprint(node), hasher.getFingerprint(equalNode));
+		assertNotEquals(hasher.getFingerprint(node), hasher.getFingerprint(otherNode));
+		assertTrue(hasher.isStructurallyEqual(node, equalNode));
+		assertFalse(hasher.isStructurallyEqual(node, otherNode));
+		assertFalse(hasher.isStructurallyEqual(node, fewerGroupsNode));
+		assertFalse(hasher.isStructurallyEqual(fewerGroupsNode, otherNode));
+
+		// the inputs of the groups were calculated once, for the fingerprints
+		final int inputCount = calculatedInputs[0];
+		assertTrue(hasher.isStructurallyEqual(equalNode, node));
+		assertFalse(hasher.isStructurallyEqual(otherNode, node));
+		assertEquals(inputCount, calculatedInputs[0]);
+	}
+
+	@Test
+	void testCombinedHashMatchesArrayHash() {
+		final Predicate<TestNode> any = node -> true;
+		final var hasher = new GroupPredicateHasher<>(new Grouper<>(List.of(any)),
+				Map.of(any, HashApproach.EXACT_COUNT));
+		final var leaf = new TestNode("leaf");
+		final var root = new TestNode("root", List.of(leaf));
+		final int predicateId = hasher.getPredicateId(any);
+
+		// the hash values did not change when the array allocation was removed
+		final int leafHash = hasher.getHash(leaf);
+		final int groupHash = Arrays.hashCode(new int[] { predicateId, Arrays.hashCode(new int[] { leafHash }) });
+		assertEquals(Arrays.hashCode(new int[] { groupHash }), hasher.getHash(root));
+	}
+
+	private static TestNode createDirectory(final String... childNames) {
+		return new TestNode("dir", Arrays.stream(childNames).map(TestNode::new).toList());
+	}
 }
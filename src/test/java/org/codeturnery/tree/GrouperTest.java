@@ -0,0 +1,117 @@
+package org.codeturnery.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({ "null", "javadoc" })
+class GrouperTest {
+	private static final int THREAD_COUNT = 8;
+
+	/**
+	 * Counts the calculations per node, which must happen once only.
+	 */
+	static class CountingHasher extends GroupPredicateHasher<TestNode> {
+		final Map<ChildableNode<TestNode>, AtomicInteger> calculations = new ConcurrentHashMap<>();
+
+		CountingHasher(final Grouper<TestNode> grouper, final Map<Predicate<TestNode>, HashApproach> hashApproaches) {
+			super(grouper, hashApproaches);
+		}
+
+		@Override
+		protected int calculateHashFromGroupHashes(final ChildableNode<TestNode> node) {
+			this.calculations.computeIfAbsent(node, key -> new AtomicInteger()).incrementAndGet();
+			return super.calculateHashFromGroupHashes(node);
+		}
+	}
+
+	@Test
+	void testGroupsInOrderOfPredicates() {
+		final var config = new Config();
+		final var grouper = new Grouper<>(config.getPredicates());
+		final var root = new TestNode("root", List.of(new TestNode("a.txt"), new TestNode("b.png"),
+				new TestNode("dir", List.of()), new TestNode("c.txt"), new TestNode("d")));
+
+		final List<Group<TestNode>> groups = grouper.getGroups(root).orElseThrow();
+		assertEquals(List.of("[b.png]", "[a.txt, c.txt]", "[dir]", "[d]"),
+				groups.stream().map(group -> group.getNodes().toString()).toList());
+		assertSame(groups, grouper.getGroups(root).orElseThrow());
+		assertEquals(Optional.empty(), grouper.getGroups(new TestNode("leaf.txt")));
+		assertEquals(1, grouper.getCache().getHitCount());
+		assertEquals(2, grouper.getCache().getMissCount());
+	}
+
+	@Test
+	void testConcurrentGroupingAndHashing() throws Exception {
+		final var config = new Config();
+		final TestNode root = createTree(new Random(42), "root", 4);
+		final List<TestNode> nodes = TreeStreams.depthFirst(root, false).toList();
+
+		final var sequentialHasher = new GroupPredicateHasher<>(new Grouper<>(config.getPredicates()),
+				config.getHashApproaches());
+		final var grouper = new Grouper<>(config.getPredicates(), true);
+		final var hasher = new CountingHasher(grouper, config.getHashApproaches());
+
+		final var barrier = new CyclicBarrier(THREAD_COUNT);
+		final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+		try {
+			final var results = new ArrayList<Future<List<Integer>>>();
+			for (int i = 0; i < THREAD_COUNT; i++) {
+				final int seed = i;
+				results.add(executor.submit(() -> {
+					// each thread visits the nodes in a different order
+					final var shuffledNodes = new ArrayList<>(nodes);
+					Collections.shuffle(shuffledNodes, new Random(seed));
+					barrier.await();
+					for (final TestNode node : shuffledNodes) {
+						grouper.getGroups(node);
+					}
+					return nodes.stream().map(node -> Integer.valueOf(hasher.getHash(node))).toList();
+				}));
+			}
+
+			final List<Integer> expectedHashes = nodes.stream()
+					.map(node -> Integer.valueOf(sequentialHasher.getHash(node))).toList();
+			for (final Future<List<Integer>> result : results) {
+				assertEquals(expectedHashes, result.get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// each node was grouped and hashed once, all other requests were cache hits
+		assertEquals(nodes.size(), grouper.getCache().size());
+		assertEquals(nodes.size(), grouper.getCache().getMissCount());
+		assertEquals(nodes.size(), hasher.calculations.size());
+		hasher.calculations.forEach((node, count) -> assertEquals(1, count.get(), node.toString()));
+	}
+
+	private static TestNode createTree(final Random random, final String name, final int depth) {
+		final var children = new ArrayList<TestNode>();
+		final int childCount = random.nextInt(6);
+		for (int i = 0; i < childCount; i++) {
+			final String childName = name + "/" + i;
+			if (depth > 0 && random.nextBoolean()) {
+				children.add(createTree(random, childName, depth - 1));
+			} else {
+				children.add(new TestNode(childName + (random.nextBoolean() ? ".txt" : ".png")));
+			}
+		}
+		return new TestNode(name, children);
+	}
+}
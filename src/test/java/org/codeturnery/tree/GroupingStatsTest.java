@@ -0,0 +1,106 @@
+package org.codeturnery.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({ "null", "javadoc" })
+class GroupingStatsTest {
+	@Test
+	void testQuantileCappedAtMaximum() {
+		final GroupingStats stats = createStats(33, 1000);
+		// the bucket of 1000 ends at 1023
+		assertEquals(1000, stats.getQuantile(1));
+		assertEquals(1000, stats.getMaximalCount());
+		assertEquals(33, stats.getQuantile(0.5));
+		assertEquals(33, stats.getMinimalCount());
+
+		final GroupingStats exact = createStats(3, 1, 2, 2, 31);
+		assertEquals(1, exact.getQuantile(0));
+		assertEquals(2, exact.getQuantile(0.5));
+		assertEquals(3, exact.getQuantile(0.8));
+		assertEquals(31, exact.getQuantile(1));
+	}
+
+	@Test
+	void testMerge() {
+		final GroupingStats first = createStats(5, 40, 2);
+		final GroupingStats second = createStats(7, 100);
+		first.merge(second);
+		final GroupingStats all = createStats(5, 40, 2, 7, 100);
+		assertStatsEqual(all, first);
+		// the merged instance is unchanged
+		assertStatsEqual(createStats(7, 100), second);
+	}
+
+	@Test
+	void testMergeEmpty() {
+		final GroupingStats stats = createStats(5, 40, 2);
+		stats.merge(new GroupingStats(1000));
+		assertStatsEqual(createStats(5, 40, 2), stats);
+
+		final var empty = new GroupingStats(1000);
+		final GroupingStats other = createStats(5, 40, 2);
+		empty.merge(other);
+		assertStatsEqual(createStats(5, 40, 2), empty);
+		assertStatsEqual(createStats(5, 40, 2), other);
+	}
+
+	@Test
+	void testCombineStats() {
+		final var config = new Config();
+		final List<Predicate<TestNode>> predicates = List.copyOf(config.getPredicates());
+		final Predicate<TestNode> firstPredicate = predicates.get(0);
+		final Predicate<TestNode> secondPredicate = predicates.get(1);
+
+		final Map<Predicate<TestNode>, GroupingStats> target = new HashMap<>();
+		final Map<Predicate<TestNode>, GroupingStats> partial = Map.of(firstPredicate, createStats(3, 50),
+				secondPredicate, createStats(1));
+		// into an empty target
+		StatisticsCalculator.combineStats(target, partial);
+		assertEquals(partial.keySet(), target.keySet());
+		assertStatsEqual(createStats(3, 50), target.get(firstPredicate));
+		assertStatsEqual(createStats(1), target.get(secondPredicate));
+
+		// from an empty partial
+		StatisticsCalculator.combineStats(target, Map.of());
+		assertStatsEqual(createStats(3, 50), target.get(firstPredicate));
+
+		// into an existing entry
+		final Map<Predicate<TestNode>, GroupingStats> otherPartial = Map.of(firstPredicate, createStats(2, 60));
+		StatisticsCalculator.combineStats(target, otherPartial);
+		assertStatsEqual(createStats(3, 50, 2, 60), target.get(firstPredicate));
+		assertStatsEqual(createStats(1), target.get(secondPredicate));
+
+		// the partial statistics are unchanged and not shared with the target
+		assertStatsEqual(createStats(3, 50), partial.get(firstPredicate));
+		assertStatsEqual(createStats(1), partial.get(secondPredicate));
+		assertStatsEqual(createStats(2, 60), otherPartial.get(firstPredicate));
+		target.get(secondPredicate).addGroupChildCount(9);
+		assertStatsEqual(createStats(1), partial.get(secondPredicate));
+	}
+
+	private static GroupingStats createStats(final int... counts) {
+		final var stats = new GroupingStats(counts[0]);
+		for (final int count : counts) {
+			stats.addGroupChildCount(count);
+		}
+		return stats;
+	}
+
+	private static void assertStatsEqual(final GroupingStats expected, final GroupingStats actual) {
+		assertEquals(expected.getMinimalCount(), actual.getMinimalCount());
+		assertEquals(expected.getMaximalCount(), actual.getMaximalCount());
+		assertEquals(expected.getChildSum(), actual.getChildSum());
+		assertEquals(expected.getGroupCount(), actual.getGroupCount());
+		assertEquals(expected.getAverage(), actual.getAverage());
+		for (final double quantile : new double[] { 0, 0.25, 0.5, 0.75, 1 }) {
+			assertEquals(expected.getQuantile(quantile), actual.getQuantile(quantile));
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package org.codeturnery.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({ "null", "javadoc" })
+class MergePublisherTest {
+	@Test
+	void testRequestsAndCompletion() {
+		final var subscriber = new RecordingSubscriber(merge -> {
+			// nothing to do
+		});
+		createPublisher().subscribe(subscriber);
+		assertEquals(List.of("subscribe"), subscriber.events);
+
+		subscriber.subscription.request(2);
+		assertEquals(List.of("subscribe", "next", "next"), subscriber.events);
+		subscriber.subscription.request(Long.MAX_VALUE);
+		subscriber.subscription.request(Long.MAX_VALUE);
+		assertEquals(List.of("subscribe", "next", "next", "next", "complete"), subscriber.events);
+		subscriber.subscription.request(1);
+		assertEquals(5, subscriber.events.size());
+	}
+
+	@Test
+	void testInvalidRequest() {
+		final var subscriber = new RecordingSubscriber(merge -> {
+			// nothing to do
+		});
+		createPublisher().subscribe(subscriber);
+		subscriber.subscription.request(0);
+		assertEquals(List.of("subscribe", "error IllegalArgumentException"), subscriber.events);
+		subscriber.subscription.request(1);
+		assertEquals(2, subscriber.events.size());
+	}
+
+	@Test
+	void testCancel() {
+		final var subscriber = new RecordingSubscriber(merge -> {
+			// nothing to do
+		});
+		createPublisher().subscribe(subscriber);
+		subscriber.subscription.request(1);
+		subscriber.subscription.cancel();
+		subscriber.subscription.request(1);
+		assertEquals(List.of("subscribe", "next"), subscriber.events);
+	}
+
+	@Test
+	void testCancelWithinOnNext() {
+		final var subscriber = new RecordingSubscriber[1];
+		subscriber[0] = new RecordingSubscriber(merge -> subscriber[0].subscription.cancel());
+		createPublisher().subscribe(subscriber[0]);
+		subscriber[0].subscription.request(Long.MAX_VALUE);
+		assertEquals(List.of("subscribe", "next"), subscriber[0].events);
+	}
+
+	@Test
+	void testThrowingSubscriberCancels() {
+		final var exception = new IllegalStateException();
+		final var subscriber = new RecordingSubscriber(merge -> {
+			throw exception;
+		});
+		final var publisher = createPublisher();
+		publisher.subscribe(subscriber);
+
+		assertSame(exception, assertThrows(IllegalStateException.class, () -> subscriber.subscription.request(3)));
+		// neither blocked nor continued, the subscription is cancelled
+		subscriber.subscription.request(1);
+		assertEquals(List.of("subscribe", "next"), subscriber.events);
+
+		// other subscriptions are not affected
+		final var otherSubscriber = new RecordingSubscriber(merge -> {
+			// nothing to do
+		});
+		publisher.subscribe(otherSubscriber);
+		otherSubscriber.subscription.request(Long.MAX_VALUE);
+		assertEquals(List.of("subscribe", "next", "next", "next", "complete"), otherSubscriber.events);
+	}
+
+	@Test
+	void testFailingMerge() {
+		final var config = new Config();
+		final var hasher = new GroupPredicateHasher<>(new Grouper<>(config.getPredicates()),
+				config.getHashApproaches());
+		final var failingNode = new TestNode("dir", List.of()) {
+			@Override
+			public boolean isLeaf() {
+				throw new IllegalStateException();
+			}
+		};
+		final var subscriber = new RecordingSubscriber(merge -> {
+			// nothing to do
+		});
+		new MergePublisher<>(new Merger<>(hasher), List.<TestNode>of(failingNode)).subscribe(subscriber);
+		subscriber.subscription.request(1);
+		assertEquals(List.of("subscribe", "error IllegalStateException"), subscriber.events);
+	}
+
+	/**
+	 * @return a publisher of three top-level merges
+	 */
+	private static MergePublisher<TestNode> createPublisher() {
+		final var config = new Config();
+		final var hasher = new GroupPredicateHasher<>(new Grouper<>(config.getPredicates()),
+				config.getHashApproaches());
+		final var nodes = new ArrayList<TestNode>();
+		for (int index = 0; index < 3; index++) {
+			final var children = new ArrayList<TestNode>();
+			for (int child = 0; child <= index; child++) {
+				children.add(new TestNode("text.txt"));
+			}
+			nodes.add(new TestNode("dir " + index, children));
+		}
+		return new MergePublisher<>(new Merger<>(hasher), nodes);
+	}
+
+	private static final class RecordingSubscriber implements Flow.Subscriber<NodeMerge<TestNode>> {
+		private final List<String> events = new ArrayList<>();
+		private final Consumer<NodeMerge<TestNode>> onNext;
+		private Flow.Subscription subscription;
+
+		RecordingSubscriber(final Consumer<NodeMerge<TestNode>> onNext) {
+			this.onNext = onNext;
+		}
+
+		@Override
+		public void onSubscribe(final Flow.Subscription newSubscription) {
+			this.subscription = newSubscription;
+			this.events.add("subscribe");
+		}
+
+		@Override
+		public void onNext(final NodeMerge<TestNode> merge) {
+			this.events.add("next");
+			this.onNext.accept(merge);
+		}
+
+		@Override
+		public void onError(final Throwable throwable) {
+			this.events.add("error " + throwable.getClass().getSimpleName());
+		}
+
+		@Override
+		public void onComplete() {
+			this.events.add("complete");
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package org.codeturnery.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({ "null", "javadoc" })
+class NodeMergeTest {
+	@Test
+	void testCountsOfSubmerges() {
+		final var a = new TestNode("a", List.of());
+		final var b = new TestNode("b", List.of());
+		final var c = new TestNode("c", List.of());
+		final var leaf = new TestNode("leaf");
+		final var first = new NodeSubMerge<TestNode>(List.of(), List.of(), List.of(a, b));
+		final var second = new NodeSubMerge<TestNode>(List.of(), List.of(), List.of(b, c, a));
+		final var duplicates = new NodeSubMerge<TestNode>(List.of(), List.of(), List.of(a, b, a));
+
+		assertCounts(new NodeMerge<TestNode>(List.of(), List.of()));
+		assertCounts(new NodeMerge<TestNode>(List.of(leaf), List.of()));
+		assertCounts(new NodeMerge<>(List.of(leaf), List.of(first)));
+		assertCounts(new NodeMerge<>(List.of(leaf), List.of(first, second)));
+		assertCounts(new NodeMerge<>(List.of(), List.of(duplicates)));
+		assertCounts(new NodeMerge<>(List.of(leaf, leaf), List.of(duplicates, first, second)));
+		assertEquals(List.of(a, b), new NodeMerge<>(List.of(), List.of(duplicates)).getNonLeavesStream()
+				.collect(Collectors.toList()));
+	}
+
+	@Test
+	void testNonLeavesDetachedFromSubmerge() {
+		final var a = new TestNode("a");
+		final var b = new TestNode("b");
+		final var parents = new ArrayList<>(List.of(a, b));
+		final var merge = new NodeMerge<>(List.of(), List.of(new NodeSubMerge<TestNode>(List.of(), List.of(), parents)));
+		parents.clear();
+		assertEquals(List.of(a, b), merge.getNonLeavesStream().collect(Collectors.toList()));
+		assertEquals(2, merge.getNonLeavesCount());
+	}
+
+	@Test
+	void testCountsOfMergedTrees() {
+		final var config = new Config();
+		final var shared = new TestNode("shared", List.of(new TestNode("a.txt"), new TestNode("b.txt")));
+		final var children = new ArrayList<TestNode>();
+		for (int index = 0; index < 20; index++) {
+			children.add(new TestNode("dir " + index, List.of(new TestNode("x.zip"),
+					new TestNode("sub", index % 4 == 0 ? List.of(shared, shared) : List.of(new TestNode("c.txt"))),
+					new TestNode(index % 2 == 0 ? "y.png" : "y.txt"))));
+		}
+		// the same node contained multiple times
+		children.add(shared);
+		children.add(shared);
+
+		final var merger = new Merger<>(
+				new GroupPredicateHasher<>(new Grouper<>(config.getPredicates()), config.getHashApproaches()));
+		merger.separateAndCreateMerges(children).forEach(NodeMergeTest::assertCounts);
+	}
+
+	/**
+	 * Compare the cached counts with the values calculated from the streams, as
+	 * before they were cached, for the given merge and all its submerges.
+	 */
+	private static void assertCounts(final NodeMerge<TestNode> merge) {
+		final List<TestNode> nonLeaves = merge.getSubmerges().stream().map(NodeSubMerge::getParents)
+				.flatMap(List::stream).distinct().collect(Collectors.toList());
+		assertEquals(nonLeaves, merge.getNonLeavesStream().collect(Collectors.toList()));
+		assertEquals(nonLeaves.size(), merge.getNonLeavesCount());
+		assertEquals(merge.getLeaves().size(), merge.getLeavesCount());
+		assertEquals(merge.getSubmerges().size(), merge.getSubMergeCount());
+		assertEquals(merge.getMergedNodesStream().count(), merge.getMergedNodesCount());
+		merge.getSubmerges().forEach(NodeMergeTest::assertCounts);
+	}
+}
@@ -1,6 +1,7 @@
 package org.codeturnery.tree;
 
-import java.util.Arrays;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
 import java.util.Map;
 import java.util.function.Predicate;
 
@@ -22,45 +23,60 @@ import java.util.function.Predicate;
  * display a summarization of each visible directory, so that opening
  * (expanding) it becomes optional
  */
-public class OutputBuilder extends AbstractMergeOutputBuilder<TestNode> {
+public class OutputBuilder extends AbstractStreamingMergeOutputBuilder<TestNode> {
 
 	/**
-	 * The builder filled by this instance.
+	 * The builder filled by this instance, <code>null</code> if writing to a
+	 * channel.
 	 */
-	private final StringBuilder builder = new StringBuilder();
+	private final StringBuilder builder;
 
 	private final char indentationChar = ' ';
 	private final int indentationMultipler = 2;
 
 	public OutputBuilder(final Map<Predicate<TestNode>, String> predicateNaming,
 			final StatisticsCalculator<TestNode> statsCalculator, final Grouper<TestNode> grouper) {
-		super(predicateNaming, statsCalculator, grouper);
+		this(predicateNaming, statsCalculator, grouper, new StringBuilder());
+	}
+
+	public OutputBuilder(final Map<Predicate<TestNode>, String> predicateNaming,
+			final StatisticsCalculator<TestNode> statsCalculator, final Grouper<TestNode> grouper,
+			final WritableByteChannel channel, final Charset charset, final int bufferSize) {
+		super(predicateNaming, statsCalculator, grouper, channel, charset, bufferSize);
+		this.builder = null;
+	}
+
+	private OutputBuilder(final Map<Predicate<TestNode>, String> predicateNaming,
+			final StatisticsCalculator<TestNode> statsCalculator, final Grouper<TestNode> grouper,
+			final StringBuilder builder) {
+		super(predicateNaming, statsCalculator, grouper, builder, DEFAULT_BUFFER_SIZE);
+		this.builder = builder;
 	}
 
 	@Override
 	protected void addMerge(final NodeMerge<TestNode> merge, int depth, final String mergeName) {
 		fillWithChar(depth);
-		this.builder.append("• ");
+		append("• ");
 		super.addMerge(merge, depth, mergeName);
 
 	}
 
 	@Override
 	protected void addMergeName(final String mergeName) {
-		this.builder.append(mergeName);
+		append(mergeName);
 	}
 
 	@Override
 	protected void addInMergeDelimiter() {
-		this.builder.append("; ");
+		append("; ");
 	}
 
 	@Override
 	protected void addMergeChildInfo(final long childCount, final long nonLeavesOfMergeCount) {
-		this.builder.append(childCount);
-		this.builder.append(" children in the ");
-		this.builder.append(nonLeavesOfMergeCount);
-		this.builder.append(" non-leaf nodes were merged as follows:");
+		append(childCount);
+		append(" children in the ");
+		append(nonLeavesOfMergeCount);
+		append(" non-leaf nodes were merged as follows:");
 	}
 
 	/**
@@ -68,32 +84,32 @@ public class OutputBuilder extends AbstractMergeOutputBuilder<TestNode> {
 	 */
 	@Override
 	protected void addMergeGroup(final int groupNodeCount, final String groupName) {
-		this.builder.append(groupNodeCount);
-		this.builder.append('×');
-		this.builder.append(groupName);
+		append(groupNodeCount);
+		append('×');
+		append(groupName);
 	}
 
 	@Override
 	protected void addMergeGroupDelimiter() {
-		this.builder.append(", ");
+		append(", ");
 	}
 
 	@Override
 	protected void addChildrenStatsHeader() {
-		this.builder.append(" | Stats for children:");
+		append(" | Stats for children:");
 	}
 
 	@Override
 	protected void addStat(final String predicateName, final int min, final int max, final GroupingStats stat) {
-		this.builder.append(" (");
-		this.builder.append(predicateName);
-		this.builder.append(":");
+		append(" (");
+		append(predicateName);
+		append(":");
 		addClosedInterval(min, max);
 		if (min != max) {
-			this.builder.append(",");
+			append(",");
 			this.addAverage(stat.getChildSum(), stat.getGroupCount(), stat.getAverage());
 		}
-		this.builder.append(")");
+		append(")");
 	}
 
 	/**
@@ -103,21 +119,21 @@ public class OutputBuilder extends AbstractMergeOutputBuilder<TestNode> {
 	 * @param max maximum value in the interval
 	 */
 	protected void addClosedInterval(final int min, final int max) {
-		this.builder.append('⟦');
-		this.builder.append(min);
-		this.builder.append(',');
-		this.builder.append(max);
-		this.builder.append('⟧');
+		append('⟦');
+		append(min);
+		append(',');
+		append(max);
+		append('⟧');
 	}
 
 	@Override
-	protected void addAverage(final int childSum, final int groupCount, final float average) {
-		this.builder.append("x̄=");
-		this.builder.append(childSum);
-		this.builder.append('÷');
-		this.builder.append(groupCount);
-		this.builder.append('=');
-		this.builder.append(average);
+	protected void addAverage(final long childSum, final long groupCount, final float average) {
+		append("x̄=");
+		append(childSum);
+		append('÷');
+		append(groupCount);
+		append('=');
+		append(Float.toString(average));
 	}
 
 	/**
@@ -126,10 +142,8 @@ public class OutputBuilder extends AbstractMergeOutputBuilder<TestNode> {
 	 * @param count how many times the character should be added
 	 */
 	protected void fillWithChar(final int count) {
-		if (count > 0) {
-			char[] array = new char[count * this.indentationMultipler];
-			Arrays.fill(array, this.indentationChar);
-			this.builder.append(array);
+		for (int i = 0; i < count * this.indentationMultipler; i++) {
+			append(this.indentationChar);
 		}
 	}
 
@@ -139,19 +153,24 @@ public class OutputBuilder extends AbstractMergeOutputBuilder<TestNode> {
 	 * The {@link #builder} will not be reset or cleared.
 	 * 
 	 * @return the build string
+	 * @throws IllegalStateException thrown if this instance writes to a channel
 	 */
 	@SuppressWarnings("null")
 	public String build() {
+		if (this.builder == null) {
+			throw new IllegalStateException("The output is written to a channel");
+		}
+		flush();
 		return this.builder.toString();
 	}
 
 	@Override
 	protected void addData(String dataAsString) {
-		this.builder.append(dataAsString);
+		append(dataAsString);
 	}
 
 	@Override
 	protected void addMergeSeparator() {
-		this.builder.append('\n');
+		append('\n');
 	}
 }
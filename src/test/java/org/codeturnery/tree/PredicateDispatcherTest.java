@@ -0,0 +1,179 @@
+package org.codeturnery.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({ "null", "javadoc" })
+class PredicateDispatcherTest {
+	@Test
+	void testFirstMatchingPredicate() {
+		final var txt = new TestNodeMatcher(".txt");
+		final var t = new TestNodeMatcher("t");
+		assertEquals(List.of("0 [a.txt]", "1 [at]"), group(List.of(txt, t), "a.txt", "at", "a.zip"));
+		assertEquals(List.of("0 [a.txt, at]"), group(List.of(t, txt), "a.txt", "at", "a.zip"));
+	}
+
+	@Test
+	void testMixedPredicates() {
+		final Predicate<TestNode> startsWithX = node -> node.toString().startsWith("x");
+		final var predicates = List.<Predicate<TestNode>>of(new TestNodeMatcher(".zip"), startsWithX,
+				new TestNodeMatcher(".txt"), new TestNodeMatcher(""));
+		assertEquals(List.of("0 [x.zip, a.zip]", "1 [x.txt, x]", "2 [a.txt]", "3 [a.png, ]"),
+				group(predicates, "x.zip", "x.txt", "a.txt", "a.zip", "a.png", "x", ""));
+	}
+
+	@Test
+	void testConjunction() {
+		final var conjunction = new AffixMatcher(Set.of(".png", ".jpg"), Set.of("img", "pic"), true);
+		final var disjunction = new AffixMatcher(Set.of(".png"), Set.of("img"), false);
+		assertEquals(List.of("0 [img1.png, pic.jpg]", "1 [a.png, img.txt]"),
+				group(List.of(conjunction, disjunction), "img1.png", "a.png", "img.txt", "pic.jpg", "a.jpg"));
+		assertEquals(List.of("0 [img1.png, a.png, img.txt]", "1 [pic.jpg]"),
+				group(List.of(disjunction, conjunction), "img1.png", "a.png", "img.txt", "pic.jpg", "a.jpg"));
+	}
+
+	@Test
+	void testEmptyAffixes() {
+		final var emptySuffix = new AffixMatcher(Set.of(""), Set.of(), false);
+		final var emptyPrefixConjunction = new AffixMatcher(Set.of(".txt"), Set.of(""), true);
+		final var nothing = new AffixMatcher(Set.of(), Set.of(), false);
+		assertEquals(List.of("1 [a.txt, .txt]", "2 [a, ]"),
+				group(List.of(nothing, emptyPrefixConjunction, emptySuffix), "a.txt", "a", "", ".txt"));
+	}
+
+	@Test
+	void testCaseFolding() {
+		final var folding = new TrieAffixMatcher(Set.of(".jpg"), true);
+		final var exact = new TrieAffixMatcher(Set.of(".JPG", ".png"), false);
+		assertEquals(List.of("0 [a.jpg, b.JPG, c.JpG]", "1 [d.png]"),
+				group(List.of(folding, exact), "a.jpg", "b.JPG", "c.JpG", "d.png", "e.PNG"));
+		assertEquals(List.of("0 [b.JPG, d.png]", "1 [a.jpg, c.JpG]"),
+				group(List.of(exact, folding), "a.jpg", "b.JPG", "c.JpG", "d.png", "e.PNG"));
+	}
+
+	@Test
+	void testStatefulStringSources() {
+		// the default key doesn't share the string derived by one instance with another one
+		final var firstCharacter = new CharacterMatcher(0, "a");
+		final var secondCharacter = new CharacterMatcher(1, "a");
+		assertEquals(List.of("0 [ab, aa]", "1 [ba]"),
+				group(List.of(firstCharacter, secondCharacter), "ab", "ba", "bb", "aa"));
+	}
+
+	@Test
+	void testSubclassDerivingOtherString() {
+		final var reversedName = new TestNodeMatcher("a") {
+			@Override
+			protected String getString(final TestNode node) {
+				return new StringBuilder(node.toString()).reverse().toString();
+			}
+		};
+		final var name = new TestNodeMatcher("b");
+		assertEquals(List.of("0 [ab, bb]", "1 [aa]"), group(List.of(name, reversedName), "ab", "ba", "bb", "aa"));
+		assertEquals(List.of("0 [ab, aa]", "1 [bb]"),
+				group(List.of(reversedName, name), "ab", "ba", "bb", "aa"));
+	}
+
+	@Test
+	void testOverridingSubclasses() {
+		final var notTxt = new AffixMatcher(Set.of(".txt"), Set.of(), false) {
+			@Override
+			protected boolean testSuffixes(final String string) {
+				return !super.testSuffixes(string);
+			}
+		};
+		final var trieNotTxt = new TrieAffixMatcher(Set.of(".txt"), false) {
+			@Override
+			public boolean test(final TestNode value) {
+				return !super.test(value);
+			}
+		};
+		final var txt = new TestNodeMatcher(".txt");
+		assertEquals(List.of("0 [a.zip]", "1 [b.txt]"), group(List.of(notTxt, txt), "a.zip", "b.txt"));
+		assertEquals(List.of("0 [a.zip]", "1 [b.txt]"), group(List.of(trieNotTxt, txt), "a.zip", "b.txt"));
+	}
+
+	@Test
+	void testManyPredicates() {
+		final var predicates = new ArrayList<Predicate<TestNode>>();
+		final var names = new ArrayList<String>();
+		final var expected = new ArrayList<String>();
+		for (int index = 0; index < 150; index++) {
+			predicates.add(new TestNodeMatcher("." + index));
+			names.add("file." + index);
+			expected.add(index + " [file." + index + "]");
+		}
+		assertEquals(expected, group(predicates, names.toArray(new String[0])));
+	}
+
+	@Test
+	void testGroupChildren() {
+		final var dispatcher = new PredicateDispatcher<>(new Config().getPredicates());
+		final var parent = new TestNode("dir", List.of(new TestNode("a.txt"), new TestNode("b.zip"),
+				new TestNode("c.jpg"), new TestNode("d.txt")));
+		assertEquals(dispatcher.group(parent.getChildren().get().stream()).stream().map(Group::getNodes)
+				.collect(Collectors.toList()), dispatcher.groupChildren(parent).stream().map(Group::getNodes)
+						.collect(Collectors.toList()));
+	}
+
+	private static List<String> group(final List<? extends Predicate<TestNode>> predicates, final String... names) {
+		final var dispatcher = new PredicateDispatcher<TestNode>(new ArrayList<>(predicates));
+		return dispatcher.group(Stream.of(names).map(TestNode::new)).stream()
+				.map(group -> dispatcher.getOrdinal(group.getPredicate()) + " " + group.getNodes())
+				.collect(Collectors.toList());
+	}
+
+	private static class AffixMatcher extends StringMatcher<TestNode> {
+		AffixMatcher(final Set<String> suffixes, final Set<String> prefixes, final boolean conjunction) {
+			super(suffixes, prefixes, conjunction);
+		}
+
+		@Override
+		protected String getString(final TestNode node) {
+			return node.toString();
+		}
+
+		@Override
+		protected Object getStringSourceKey() {
+			return AffixMatcher.class;
+		}
+	}
+
+	private static class TrieAffixMatcher extends TrieStringMatcher<TestNode> {
+		TrieAffixMatcher(final Set<String> suffixes, final boolean foldCase) {
+			super(suffixes, Set.of(), false, foldCase);
+		}
+
+		@Override
+		protected String getString(final TestNode node) {
+			return node.toString();
+		}
+
+		@Override
+		protected Object getStringSourceKey() {
+			return AffixMatcher.class;
+		}
+	}
+
+	private static class CharacterMatcher extends StringMatcher<TestNode> {
+		private final int index;
+
+		CharacterMatcher(final int index, final String character) {
+			super(Set.of(character), Set.of(), false);
+			this.index = index;
+		}
+
+		@Override
+		protected String getString(final TestNode node) {
+			return node.toString().substring(this.index, this.index + 1);
+		}
+	}
+}
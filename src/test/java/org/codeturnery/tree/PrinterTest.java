@@ -1,12 +1,26 @@
 package org.codeturnery.tree;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
 
 import org.codeturnery.typesystem.Iterables;
+import org.eclipse.jdt.annotation.Nullable;
 import org.junit.jupiter.api.Test;
 
 @SuppressWarnings({"null", "javadoc"})
@@ -72,8 +86,287 @@ public class PrinterTest {
 		assertEquals(OUTPUT_A2, builder.toString());
 	}
 
+	@Test
+	public void testPrintWithVerifiedFingerprints() {
+		final var config = new Config();
+		final var grouper = new Grouper<>(config.getPredicates());
+		final var hasher = new GroupPredicateHasher<>(grouper, config.getHashApproaches());
+		final var merger = new Merger<>(hasher, true);
+
+		final List<NodeMerge<TestNode>> topMerges = merger
+				.separateAndCreateMerges(getNoneOneMultipleTestTree().getChildren().orElseThrow()).sorted().toList();
+
+		final var statisticsCalculator = new StatisticsCalculator<>(grouper);
+		final var outputBuilder = new OutputBuilder(config.getPredicateNaming(), statisticsCalculator, grouper);
+		for (int i = 0; i < topMerges.size(); i++) {
+			outputBuilder.addMerge(topMerges.get(i), topMerges.size());
+		}
+
+		assertEquals(OUTPUT_A, outputBuilder.build());
+	}
+
+	@Test
+	public void testPrintWithFusedMerger() {
+		final var config = new Config();
+		final var grouper = new Grouper<>(config.getPredicates());
+		final var hasher = new GroupPredicateHasher<>(grouper, config.getHashApproaches());
+		final var merger = new FusedMerger<>(hasher);
+
+		final List<NodeMerge<TestNode>> topMerges = merger
+				.separateAndCreateMerges(getNoneOneMultipleTestTree().getChildren().orElseThrow()).sorted().toList();
+
+		final var statisticsCalculator = new StatisticsCalculator<>(grouper);
+		final var outputBuilder = new OutputBuilder(config.getPredicateNaming(), statisticsCalculator, grouper);
+		for (int i = 0; i < topMerges.size(); i++) {
+			outputBuilder.addMerge(topMerges.get(i), topMerges.size());
+		}
+
+		assertEquals(OUTPUT_A, outputBuilder.build());
+	}
+
+	@Test
+	public void testFusedMergerWithInterleavedCalls() {
+		final var config = new Config();
+		final var grouper = new Grouper<>(config.getPredicates());
+		final var hasher = new GroupPredicateHasher<>(grouper, config.getHashApproaches());
+		final var merger = new FusedMerger<>(hasher);
+
+		// the first stream is consumed after the second call, which must not affect it
+		final var firstMerges = merger.separateAndCreateMerges(getNoneOneMultipleTestTree().getChildren().orElseThrow());
+		final List<NodeMerge<TestNode>> secondMerges = merger
+				.separateAndCreateMerges(List.of(new TestNode("other", List.of(new TestNode("text.txt"))))).toList();
+		final List<NodeMerge<TestNode>> topMerges = firstMerges.sorted().toList();
+
+		assertEquals(1, secondMerges.size());
+		final var statisticsCalculator = new StatisticsCalculator<>(grouper);
+		final var outputBuilder = new OutputBuilder(config.getPredicateNaming(), statisticsCalculator, grouper);
+		for (int i = 0; i < topMerges.size(); i++) {
+			outputBuilder.addMerge(topMerges.get(i), topMerges.size());
+		}
+
+		assertEquals(OUTPUT_A, outputBuilder.build());
+	}
+
+	@Test
+	public void testPrintInParallel() {
+		final var config = new Config();
+		final var grouper = new Grouper<>(config.getPredicates(), true);
+		final var hasher = new GroupPredicateHasher<>(grouper, config.getHashApproaches());
+		final var pool = new ForkJoinPool(4);
+		try {
+			final var merger = new Merger<>(hasher, false, pool);
+
+			final List<NodeMerge<TestNode>> topMerges = merger
+					.separateAndCreateMerges(getNoneOneMultipleTestTree().getChildren().orElseThrow()).sorted()
+					.toList();
+
+			final var statisticsCalculator = new StatisticsCalculator<>(grouper, pool);
+			final var outputBuilder = new OutputBuilder(config.getPredicateNaming(), statisticsCalculator, grouper);
+			for (int i = 0; i < topMerges.size(); i++) {
+				outputBuilder.addMerge(topMerges.get(i), topMerges.size());
+			}
+
+			assertEquals(OUTPUT_A, outputBuilder.build());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testParallelMergesInSequentialOrder() {
+		final var config = new Config();
+		final var pool = new ForkJoinPool(4);
+		try {
+			for (final TestNode root : List.of(getNoneOneMultipleTestTree(), getTestTreeDiverse(), getWideTestTree())) {
+				final List<TestNode> nodes = root.getChildren().orElseThrow();
+				final var sequentialMerger = new Merger<>(
+						new GroupPredicateHasher<>(new Grouper<>(config.getPredicates()), config.getHashApproaches()));
+				final var parallelMerger = new Merger<>(new GroupPredicateHasher<>(
+						new Grouper<>(config.getPredicates(), true), config.getHashApproaches()), false, pool);
+
+				// not sorted, the order of the merges and their nodes must be the same already
+				final List<List<Object>> sequentialMerges = sequentialMerger.separateAndCreateMerges(nodes)
+						.map(PrinterTest::describe).toList();
+				final List<List<Object>> parallelMerges = parallelMerger.separateAndCreateMerges(nodes)
+						.map(PrinterTest::describe).toList();
+				assertEquals(sequentialMerges, parallelMerges);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * @return the nodes of the given merge and its submerges, compared by identity
+	 */
+	private static List<Object> describe(final NodeMerge<TestNode> merge) {
+		return List.of(merge instanceof NodeSubMerge ? ((NodeSubMerge<TestNode>) merge).getParents() : List.of(),
+				merge.getLeaves(), merge.getSubmerges().stream().map(PrinterTest::describe).toList());
+	}
+
+	/**
+	 * @return a tree with many directories of few different structures
+	 */
+	private static TestNode getWideTestTree() {
+		final var directories = new ArrayList<TestNode>();
+		for (int index = 0; index < 200; index++) {
+			final var children = new ArrayList<TestNode>();
+			for (int child = 0; child < index % 7; child++) {
+				children.add(new TestNode(child % 2 == 0 ? "text.txt" : "image.png"));
+			}
+			if (index % 3 == 0) {
+				children.add(new TestNode("sub", List.of(new TestNode("archive.zip"), new TestNode("sub",
+						index % 5 == 0 ? List.of(new TestNode("text.txt")) : List.of()))));
+			}
+			directories.add(new TestNode("dir " + index, children));
+		}
+		return new TestNode("root", directories);
+	}
+
+	@Test
+	public void testPrintToChannel() {
+		final var config = new Config();
+		final var grouper = new Grouper<>(config.getPredicates());
+		final var hasher = new GroupPredicateHasher<>(grouper, config.getHashApproaches());
+		final var merger = new Merger<>(hasher);
+
+		final List<NodeMerge<TestNode>> topMerges = merger
+				.separateAndCreateMerges(getNoneOneMultipleTestTree().getChildren().orElseThrow()).sorted().toList();
+
+		final var bytes = new ByteArrayOutputStream();
+		// a tiny buffer, so that multi-byte characters are split across writes
+		try (final var outputBuilder = new OutputBuilder(config.getPredicateNaming(),
+				new StatisticsCalculator<>(grouper), grouper, Channels.newChannel(bytes), StandardCharsets.UTF_8, 7)) {
+			for (int i = 0; i < topMerges.size(); i++) {
+				outputBuilder.addMerge(topMerges.get(i), topMerges.size());
+			}
+		}
+
+		assertEquals(OUTPUT_A, bytes.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testCloseFailures() {
+		final var writeFailure = new IOException("write");
+		final var closeFailure = new IOException("close");
+
+		final var failingChannel = new FailingChannel(writeFailure, closeFailure);
+		final UncheckedIOException exception = assertThrows(UncheckedIOException.class,
+				() -> printToChannel(failingChannel));
+		assertSame(writeFailure, exception.getCause());
+		assertArrayEquals(new Object[] { closeFailure }, exception.getSuppressed());
+		assertFalse(failingChannel.isOpen());
+
+		final var failingWriteChannel = new FailingChannel(writeFailure, null);
+		assertSame(writeFailure, assertThrows(UncheckedIOException.class, () -> printToChannel(failingWriteChannel))
+				.getCause());
+		assertFalse(failingWriteChannel.isOpen());
+
+		final var failingCloseChannel = new FailingChannel(null, closeFailure);
+		assertSame(closeFailure, assertThrows(UncheckedIOException.class, () -> printToChannel(failingCloseChannel))
+				.getCause());
+		assertFalse(failingCloseChannel.isOpen());
+	}
+
+	private static void printToChannel(final WritableByteChannel channel) {
+		final var config = new Config();
+		final var grouper = new Grouper<>(config.getPredicates());
+		final var outputBuilder = new OutputBuilder(config.getPredicateNaming(), new StatisticsCalculator<>(grouper),
+				grouper, channel, StandardCharsets.UTF_8, 4096);
+		// only buffered, written on close
+		outputBuilder.addData("output");
+		try {
+			outputBuilder.close();
+		} finally {
+			// closing again has no effect, even after a failure
+			outputBuilder.close();
+		}
+	}
+
+	/**
+	 * Channel failing to write and to close with the given exceptions, if any.
+	 */
+	private static final class FailingChannel implements WritableByteChannel {
+		private final @Nullable IOException writeFailure;
+		private final @Nullable IOException closeFailure;
+		private boolean open = true;
+
+		FailingChannel(final @Nullable IOException writeFailure, final @Nullable IOException closeFailure) {
+			this.writeFailure = writeFailure;
+			this.closeFailure = closeFailure;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return this.open;
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.open = false;
+			if (this.closeFailure != null) {
+				throw this.closeFailure;
+			}
+		}
+
+		@Override
+		public int write(final ByteBuffer source) throws IOException {
+			if (this.writeFailure != null) {
+				throw this.writeFailure;
+			}
+			final int count = source.remaining();
+			source.position(source.limit());
+			return count;
+		}
+	}
+
+	@Test
+	public void testPrintFromPublisher() {
+		final var config = new Config();
+		final var grouper = new Grouper<>(config.getPredicates());
+		final var hasher = new GroupPredicateHasher<>(grouper, config.getHashApproaches());
+		final var publisher = new MergePublisher<>(new Merger<>(hasher),
+				getNoneOneMultipleTestTree().getChildren().orElseThrow());
+
+		final var receivedMerges = new ArrayList<NodeMerge<TestNode>>();
+		publisher.subscribe(new Flow.Subscriber<NodeMerge<TestNode>>() {
+			private Flow.Subscription subscription;
+
+			@Override
+			public void onSubscribe(final Flow.Subscription newSubscription) {
+				this.subscription = newSubscription;
+				newSubscription.request(1);
+			}
+
+			@Override
+			public void onNext(final NodeMerge<TestNode> merge) {
+				receivedMerges.add(merge);
+				this.subscription.request(1);
+			}
+
+			@Override
+			public void onError(final Throwable throwable) {
+				throw new AssertionError(throwable);
+			}
+
+			@Override
+			public void onComplete() {
+				// nothing to do
+			}
+		});
+		final List<NodeMerge<TestNode>> topMerges = receivedMerges.stream().sorted().toList();
+
+		final var statisticsCalculator = new StatisticsCalculator<>(grouper);
+		final var outputBuilder = new OutputBuilder(config.getPredicateNaming(), statisticsCalculator, grouper);
+		for (int i = 0; i < topMerges.size(); i++) {
+			outputBuilder.addMerge(topMerges.get(i), topMerges.size());
+		}
+
+		assertEquals(OUTPUT_A, outputBuilder.build());
+	}
+
 	/**
-	 * TODO: currently unused, add test case using this data
+	 * TODO: only used to compare merges yet, add a printing test case using this data
 	 */
 	protected TestNode getTestTreeDiverse() {
 		return new TestNode("root", List.of(
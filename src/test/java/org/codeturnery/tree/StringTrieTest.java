@@ -0,0 +1,87 @@
+package org.codeturnery.tree;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({ "null", "javadoc" })
+class StringTrieTest {
+	@Test
+	void testPrefixes() {
+		final var trie = new StringTrie(false, false);
+		assertTrue(trie.isEmpty());
+		trie.add("ab", 0);
+		trie.add("abc", 1);
+		trie.add("b", 2);
+		trie.add("ab", 3);
+		assertFalse(trie.isEmpty());
+
+		assertArrayEquals(new long[] { 0b1011L }, matches(trie, "abcd", 1));
+		assertArrayEquals(new long[] { 0b1001L }, matches(trie, "ab", 1));
+		assertArrayEquals(new long[] { 0b0100L }, matches(trie, "bc", 1));
+		assertArrayEquals(new long[] { 0L }, matches(trie, "a", 1));
+		assertArrayEquals(new long[] { 0L }, matches(trie, "", 1));
+		assertTrue(trie.matchesAny("abx"));
+		assertFalse(trie.matchesAny("a"));
+		assertFalse(trie.matchesAny("cab"));
+	}
+
+	@Test
+	void testSuffixes() {
+		final var trie = new StringTrie(true, false);
+		trie.add(".txt", 0);
+		trie.add("txt", 1);
+		trie.add(".TXT", 2);
+
+		assertArrayEquals(new long[] { 0b011L }, matches(trie, "a.txt", 1));
+		assertArrayEquals(new long[] { 0b010L }, matches(trie, "atxt", 1));
+		assertArrayEquals(new long[] { 0b100L }, matches(trie, "A.TXT", 1));
+		assertTrue(trie.matchesAny("txt"));
+		assertFalse(trie.matchesAny("a.txt.zip"));
+	}
+
+	@Test
+	void testCaseFolding() {
+		final var trie = new StringTrie(true, true);
+		trie.add(".JPG", 0);
+		trie.add(".jpeg", 1);
+
+		assertArrayEquals(new long[] { 0b01L }, matches(trie, "a.jpg", 1));
+		assertArrayEquals(new long[] { 0b01L }, matches(trie, "a.JpG", 1));
+		assertArrayEquals(new long[] { 0b10L }, matches(trie, "a.JPEG", 1));
+		// only ASCII letters are folded
+		assertFalse(trie.matchesAny("a.jpÉg"));
+	}
+
+	@Test
+	void testEmptyString() {
+		final var trie = new StringTrie(false, false);
+		trie.add("", 0);
+		trie.add("a", 1);
+
+		assertFalse(trie.isEmpty());
+		assertArrayEquals(new long[] { 0b01L }, matches(trie, "", 1));
+		assertArrayEquals(new long[] { 0b11L }, matches(trie, "ab", 1));
+		assertTrue(trie.matchesAny(""));
+		assertTrue(trie.matchesAny("b"));
+	}
+
+	@Test
+	void testValuesBeyondFirstWord() {
+		final var trie = new StringTrie(false, false);
+		trie.add("a", 0);
+		trie.add("a", 64);
+		trie.add("ab", 129);
+
+		assertArrayEquals(new long[] { 1L, 1L, 0L }, matches(trie, "a", 3));
+		assertArrayEquals(new long[] { 1L, 1L, 0b10L }, matches(trie, "abc", 3));
+	}
+
+	private static long[] matches(final StringTrie trie, final String string, final int length) {
+		final var matches = new long[length];
+		trie.addMatches(string, matches);
+		return matches;
+	}
+}
@@ -12,4 +12,9 @@ public class TestNodeMatcher extends StringMatcher<TestNode> {
 	protected String getString(final TestNode node) {
 		return node.toString();
 	}
+
+	@Override
+	protected Object getStringSourceKey() {
+		return getClass();
+	}
 }
@@ -0,0 +1,141 @@
+package org.codeturnery.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({ "null", "javadoc" })
+class TreeStreamsTest {
+	@Test
+	void testDepthFirstOrder() {
+		assertEquals(List.of("root", "a", "a1", "a2", "b", "c", "c1", "c11"),
+				TreeStreams.depthFirst(createTree(), false).map(TestNode::toString).collect(Collectors.toList()));
+	}
+
+	@Test
+	void testBreadthFirstOrder() {
+		assertEquals(List.of("root", "a", "b", "c", "a1", "a2", "c1", "c11"),
+				TreeStreams.breadthFirst(createTree(), false).map(TestNode::toString).collect(Collectors.toList()));
+		final TestNode tree = createWideTree(3, 5);
+		assertEquals(TreeStreams.breadthFirst(tree, false).collect(Collectors.toList()),
+				TreeStreams.breadthFirst(tree, true).collect(Collectors.toList()));
+	}
+
+	@Test
+	void testSplittingOrder() {
+		final TestNode tree = createTree();
+		final var spliterator = new TreeSpliterator<>(tree);
+		// the root of the only subtree is separated from its children, then the first half is split off
+		final Spliterator<TestNode> prefix = spliterator.trySplit();
+		final var prefixNames = new ArrayList<String>();
+		prefix.forEachRemaining(node -> prefixNames.add(node.toString()));
+		assertEquals(List.of("root", "a", "a1", "a2"), prefixNames);
+		final var remainingNames = new ArrayList<String>();
+		spliterator.forEachRemaining(node -> remainingNames.add(node.toString()));
+		assertEquals(List.of("b", "c", "c1", "c11"), remainingNames);
+
+		final var allNames = new ArrayList<String>();
+		final var splitSpliterator = new TreeSpliterator<>(tree);
+		collectSplit(splitSpliterator, allNames);
+		assertEquals(List.of("root", "a", "a1", "a2", "b", "c", "c1", "c11"), allNames);
+	}
+
+	@Test
+	void testSplitHalvesEstimate() {
+		final var spliterator = new TreeSpliterator<>(createTree());
+		assertEquals(Long.MAX_VALUE, spliterator.estimateSize());
+		assertEquals(-1L, spliterator.getExactSizeIfKnown());
+		final Spliterator<TestNode> prefix = spliterator.trySplit();
+		assertEquals(Long.MAX_VALUE >>> 1, spliterator.estimateSize());
+		assertEquals(Long.MAX_VALUE >>> 1, prefix.estimateSize());
+		prefix.forEachRemaining(node -> {
+			// consume
+		});
+		assertEquals(0L, prefix.estimateSize());
+		assertFalse(prefix.tryAdvance(node -> {
+			// never called
+		}));
+
+		final var leaf = new TreeSpliterator<>(new TestNode("leaf"));
+		assertNull(leaf.trySplit());
+		assertTrue(leaf.tryAdvance(node -> assertEquals("leaf", node.toString())));
+		assertEquals(0L, leaf.estimateSize());
+	}
+
+	@Test
+	void testNoChildCountsForEstimate() {
+		final var countCalls = new AtomicInteger();
+		final var root = new TestNode("root", List.of(new TestNode("a", List.of(new TestNode("a1"))),
+				new TestNode("b", List.of()))) {
+			@Override
+			public int getChildrenCount() {
+				countCalls.incrementAndGet();
+				return super.getChildrenCount();
+			}
+		};
+		final var spliterator = new TreeSpliterator<>(root);
+		spliterator.estimateSize();
+		spliterator.trySplit();
+		spliterator.estimateSize();
+		assertEquals(0, countCalls.get());
+	}
+
+	@Test
+	void testParallelEncounterOrder() {
+		final TestNode tree = createWideTree(4, 6);
+		final List<TestNode> sequential = TreeStreams.depthFirst(tree, false).collect(Collectors.toList());
+		assertEquals((long) sequential.size(), TreeStreams.depthFirst(tree, true).count());
+		final var pool = new ForkJoinPool(4);
+		try {
+			final List<TestNode> parallel = pool
+					.submit(() -> TreeStreams.depthFirst(tree, true).collect(Collectors.toList())).join();
+			assertEquals(sequential, parallel);
+			final var ordered = new ArrayList<TestNode>();
+			pool.submit(() -> TreeStreams.depthFirst(tree, true).forEachOrdered(ordered::add)).join();
+			assertEquals(sequential, ordered);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static void collectSplit(final Spliterator<TestNode> spliterator, final List<String> names) {
+		final Spliterator<TestNode> prefix = spliterator.trySplit();
+		if (prefix != null) {
+			collectSplit(prefix, names);
+			collectSplit(spliterator, names);
+		} else {
+			spliterator.forEachRemaining(node -> names.add(node.toString()));
+		}
+	}
+
+	private static TestNode createTree() {
+		return new TestNode("root",
+				List.of(new TestNode("a", List.of(new TestNode("a1"), new TestNode("a2"))), new TestNode("b"),
+						new TestNode("c", List.of(new TestNode("c1", List.of(new TestNode("c11")))))));
+	}
+
+	private static TestNode createWideTree(final int depth, final int width) {
+		return createWideTree("n", depth, width);
+	}
+
+	private static TestNode createWideTree(final String name, final int depth, final int width) {
+		if (depth == 0) {
+			return new TestNode(name);
+		}
+		final var children = new ArrayList<TestNode>();
+		for (int index = 0; index < width; index++) {
+			children.add(createWideTree(name + "-" + index, depth - 1, width));
+		}
+		return new TestNode(name, children);
+	}
+}
@@ -0,0 +1,158 @@
+package org.codeturnery.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings({ "null", "javadoc" })
+class TreeWalkerTest {
+	private static final Predicate<TestNode> NO_ARCHIVES = node -> !node.toString().endsWith(".zip");
+
+	@Test
+	void testEnterAndLeaveOrder() {
+		final var events = new ArrayList<String>();
+		new TreeWalker<TestNode>(node -> true, true).walk(createTree(), new RecordingVisitor(events, node -> true));
+		assertEquals(List.of("enter a.txt 1", "leave a.txt 1", "enter dir1 1", "enter b.txt 2", "leave b.txt 2",
+				"enter c.zip 2", "leave c.zip 2", "leave dir1 1", "enter d.zip 1", "leave d.zip 1", "enter dir2 1",
+				"enter dir3 2", "enter e.txt 3", "leave e.txt 3", "leave dir3 2", "leave dir2 1"), events);
+	}
+
+	@Test
+	void testFiltering() {
+		final TestNode root = createTree();
+		final var recursiveNames = new ArrayList<String>();
+		new TreeWalker<>(NO_ARCHIVES, true).walk(root, new RecordingVisitor(recursiveNames, node -> true) {
+			@Override
+			public void leave(final TestNode node, final int depth) {
+				// only record entered nodes
+			}
+		});
+		assertEquals(List.of("enter a.txt 1", "enter dir1 1", "enter b.txt 2", "enter dir2 1", "enter dir3 2",
+				"enter e.txt 3"), recursiveNames);
+
+		final var nonRecursiveNames = new ArrayList<String>();
+		new TreeWalker<>(NO_ARCHIVES, false).walk(root, new RecordingVisitor(nonRecursiveNames, node -> true) {
+			@Override
+			public void leave(final TestNode node, final int depth) {
+				// only record entered nodes
+			}
+		});
+		assertEquals(List.of("enter a.txt 1", "enter dir1 1", "enter b.txt 2", "enter c.zip 2", "enter dir2 1",
+				"enter dir3 2", "enter e.txt 3"), nonRecursiveNames);
+
+		// the same nodes as visited via ChildFilteringNode
+		for (final boolean recursive : new boolean[] { true, false }) {
+			final var filteredNames = new ArrayList<String>();
+			collectNames(root.getChildren(NO_ARCHIVES, recursive), 1, filteredNames);
+			final var walkedNames = new ArrayList<String>();
+			new TreeWalker<>(NO_ARCHIVES, recursive).walk(root, (node, depth) -> {
+				walkedNames.add(node + " " + depth);
+				return true;
+			});
+			assertEquals(filteredNames, walkedNames);
+		}
+	}
+
+	@Test
+	void testSkippingSubtrees() {
+		final var events = new ArrayList<String>();
+		new TreeWalker<>(NO_ARCHIVES, true).walk(createTree(),
+				new RecordingVisitor(events, node -> !node.toString().startsWith("dir")));
+		assertEquals(List.of("enter a.txt 1", "leave a.txt 1", "enter dir1 1", "leave dir1 1", "enter dir2 1",
+				"leave dir2 1"), events);
+	}
+
+	@Test
+	void testCounting() {
+		final TestNode root = createTree();
+		final var recursiveWalker = new TreeWalker<>(NO_ARCHIVES, true);
+		assertEquals(6L, recursiveWalker.countDescendants(root));
+		assertEquals(3, recursiveWalker.countChildren(root));
+		assertEquals(1, recursiveWalker.countChildren(root.getChild(1)));
+		assertEquals(0, recursiveWalker.countChildren(root.getChild(0)));
+		assertEquals(7L, new TreeWalker<>(NO_ARCHIVES, false).countDescendants(root));
+		assertEquals(8L, new TreeWalker<TestNode>(node -> true, false).countDescendants(root));
+
+		final var filteringNode = new ChildFilteringNode<>(root, NO_ARCHIVES, true);
+		assertEquals(3, filteringNode.getChildrenCount());
+		assertEquals(filteringNode.getChildren().orElseThrow().size(), filteringNode.getChildrenCount());
+		assertEquals(1, filteringNode.getChildren().orElseThrow().get(1).getChildrenCount());
+		assertEquals(2, new ChildFilteringNode<>(root, NO_ARCHIVES, false).getChildren().orElseThrow().get(1)
+				.getChildrenCount());
+	}
+
+	@Test
+	void testDeepAndWideTrees() {
+		TestNode deepNode = new TestNode("leaf");
+		for (int depth = 0; depth < 100_000; depth++) {
+			deepNode = new TestNode("dir", List.of(deepNode));
+		}
+		final var walker = new TreeWalker<TestNode>(node -> true, true);
+		assertEquals(100_000L, walker.countDescendants(deepNode));
+
+		final var children = new ArrayList<TestNode>();
+		for (int index = 0; index < 1000; index++) {
+			children.add(new TestNode("child " + index));
+		}
+		final var names = new ArrayList<String>();
+		walker.walk(new TestNode("root", children), (node, depth) -> names.add(node.toString()));
+		assertEquals(children.stream().map(TestNode::toString).toList(), names);
+	}
+
+	@Test
+	void testNestedWalk() {
+		final TestNode root = createTree();
+		final var walker = new TreeWalker<TestNode>(node -> true, true);
+		assertThrows(IllegalStateException.class, () -> walker.walk(root, (node, depth) -> {
+			walker.walk(node, (child, childDepth) -> true);
+			return true;
+		}));
+		// usable again after the failed walk
+		assertEquals(8L, walker.countDescendants(root));
+	}
+
+	private static void collectNames(final Optional<? extends Stream<? extends ChildableNode<?>>> children,
+			final int depth, final List<String> names) {
+		children.ifPresent(stream -> stream.forEach(child -> {
+			names.add(((ChildFilteringNode<?>) child).getBaseNode() + " " + depth);
+			collectNames(child.getChildrenStream(), depth + 1, names);
+		}));
+	}
+
+	/**
+	 * @return a tree containing directories, archives and text files
+	 */
+	private static TestNode createTree() {
+		return new TestNode("root", List.of(new TestNode("a.txt"),
+				new TestNode("dir1", List.of(new TestNode("b.txt"), new TestNode("c.zip"))), new TestNode("d.zip"),
+				new TestNode("dir2", List.of(new TestNode("dir3", List.of(new TestNode("e.txt")))))));
+	}
+
+	private static class RecordingVisitor implements TreeWalker.Visitor<TestNode> {
+		private final List<String> events;
+		private final Predicate<TestNode> enterChildren;
+
+		RecordingVisitor(final List<String> events, final Predicate<TestNode> enterChildren) {
+			this.events = events;
+			this.enterChildren = enterChildren;
+		}
+
+		@Override
+		public boolean enter(final TestNode node, final int depth) {
+			this.events.add("enter " + node + " " + depth);
+			return this.enterChildren.test(node);
+		}
+
+		@Override
+		public void leave(final TestNode node, final int depth) {
+			this.events.add("leave " + node + " " + depth);
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package org.codeturnery.tree.directory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings({ "null", "javadoc" })
+class CompactFsTreeTest {
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testLayoutOfNestedTree() throws IOException {
+		DirectoryScannerTest.createTestTree(this.tempDir);
+		final var root = new FsGroupingNode(this.tempDir);
+		final CompactFsTree tree = CompactFsTree.of(root);
+
+		final List<FsGroupingNode> nodes = listBreadthFirst(root);
+		assertEquals(nodes.size(), tree.getNodeCount());
+		assertEquals(-1, tree.getParentIndex(0));
+		assertEquals(this.tempDir, tree.getPath(0));
+		for (int i = 0; i < nodes.size(); i++) {
+			final FsGroupingNode node = nodes.get(i);
+			assertEquals(node.getPath(), tree.getPath(i));
+			assertEquals(node.getChildren().isPresent(), tree.isDirectory(i));
+			assertEquals(node.getChildrenCount(), tree.getChildCount(i));
+			// the children occupy a consecutive range pointing back to their parent
+			for (int j = 0; j < tree.getChildCount(i); j++) {
+				final int childIndex = tree.getFirstChildIndex(i) + j;
+				assertEquals(i, tree.getParentIndex(childIndex));
+				assertEquals(node.getChildren().orElseThrow().get(j).getPath(), tree.getPath(childIndex));
+			}
+		}
+		// the ranges of all nodes cover all nodes except the root exactly once
+		int nextChild = 1;
+		for (int i = 0; i < nodes.size(); i++) {
+			if (tree.getChildCount(i) > 0) {
+				assertEquals(nextChild, tree.getFirstChildIndex(i));
+				nextChild += tree.getChildCount(i);
+			}
+		}
+		assertEquals(nodes.size(), nextChild);
+	}
+
+	@Test
+	void testNodeViews() throws IOException {
+		DirectoryScannerTest.createTestTree(this.tempDir);
+		final CompactFsTree tree = CompactFsTree.of(new FsSnapshotWalker().walk(this.tempDir));
+		final CompactFsNode root = tree.getRoot();
+		assertNull(root.getParent());
+
+		final CompactFsNode deep = find(root, this.tempDir.resolve("b/ba/baa/deep.jpg"));
+		assertEquals("deep.jpg", deep.getName());
+		assertEquals("b/ba/baa/deep.jpg".length(), deep.getSize());
+		assertTrue(deep.isLeaf());
+		assertFalse(deep.getChildren().isPresent());
+		assertEquals(this.tempDir.resolve("b/ba/baa"), deep.getParent().getPath());
+		assertEquals(tree.getNode(deep.getIndex()), deep);
+
+		final CompactFsNode empty = find(root, this.tempDir.resolve("c"));
+		assertTrue(empty.isDirectory());
+		assertFalse(empty.isLeaf());
+		assertEquals(0, empty.getChildrenCount());
+		assertEquals(List.of(), empty.getChildren().orElseThrow());
+
+		final CompactFsNode directory = find(root, this.tempDir.resolve("a/ab"));
+		final var forEachChildren = new ArrayList<CompactFsNode>();
+		directory.forEachChild(forEachChildren::add);
+		assertEquals(directory.getChildren().orElseThrow(), forEachChildren);
+		assertEquals(forEachChildren.get(1), directory.getChild(1));
+	}
+
+	@Test
+	void testEmptyRootDirectory() {
+		final CompactFsTree tree = CompactFsTree.of(new FsGroupingNode(this.tempDir));
+		assertEquals(1, tree.getNodeCount());
+		assertTrue(tree.isDirectory(0));
+		assertEquals(0, tree.getChildCount(0));
+		assertEquals(this.tempDir, tree.getRoot().getPath());
+	}
+
+	@Test
+	void testCopyOfIndex() throws IOException {
+		DirectoryScannerTest.createTestTree(this.tempDir.resolve("tree"));
+		final FsSnapshotNode snapshot = new FsSnapshotWalker().walk(this.tempDir.resolve("tree"));
+		final Path indexFile = this.tempDir.resolve("index.bin");
+		FsSnapshotIndex.write(snapshot, indexFile, null);
+
+		final CompactFsTree expected = CompactFsTree.of(snapshot);
+		final CompactFsTree tree = CompactFsTree.of(FsSnapshotIndex.open(indexFile));
+		assertEquals(expected.getNodeCount(), tree.getNodeCount());
+		for (int i = 0; i < tree.getNodeCount(); i++) {
+			assertEquals(expected.getPath(i), tree.getPath(i));
+			assertEquals(expected.getParentIndex(i), tree.getParentIndex(i));
+			assertEquals(expected.getChildCount(i), tree.getChildCount(i));
+			assertEquals(expected.isDirectory(i), tree.isDirectory(i));
+			assertEquals(expected.getSize(i), tree.getSize(i));
+			if (tree.getChildCount(i) > 0) {
+				assertEquals(expected.getFirstChildIndex(i), tree.getFirstChildIndex(i));
+			}
+		}
+	}
+
+	private static CompactFsNode find(final CompactFsNode root, final Path path) {
+		final var pending = new ArrayList<CompactFsNode>();
+		pending.add(root);
+		while (!pending.isEmpty()) {
+			final CompactFsNode node = pending.remove(pending.size() - 1);
+			if (node.getPath().equals(path)) {
+				return node;
+			}
+			node.forEachChild(pending::add);
+		}
+		throw new AssertionError("Not found: " + path);
+	}
+
+	private static List<FsGroupingNode> listBreadthFirst(final FsGroupingNode root) {
+		final var nodes = new ArrayList<FsGroupingNode>();
+		nodes.add(root);
+		for (int i = 0; i < nodes.size(); i++) {
+			nodes.get(i).getChildren().ifPresent(nodes::addAll);
+		}
+		return nodes;
+	}
+}
@@ -0,0 +1,205 @@
+package org.codeturnery.tree.directory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.codeturnery.tree.GroupPredicateHasher;
+import org.codeturnery.tree.Grouper;
+import org.codeturnery.tree.HashApproach;
+import org.codeturnery.tree.Hasher;
+import org.codeturnery.tree.TreeStreams;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings({ "null", "javadoc" })
+class DirectoryScannerTest {
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testForkJoinScan() throws IOException {
+		createTestTree(this.tempDir);
+		final var expected = describe(new FsGroupingNode(this.tempDir));
+
+		try (final var scanner = new ForkJoinDirectoryScanner(4)) {
+			assertEquals(expected, describe(scanner.scan(this.tempDir)));
+		}
+	}
+
+	@Test
+	void testConcurrentCrawl() throws IOException, InterruptedException {
+		createTestTree(this.tempDir);
+		final var expected = describe(new FsGroupingNode(this.tempDir));
+
+		try (final var crawler = new ConcurrentDirectoryCrawler(2)) {
+			assertEquals(expected, describe(crawler.crawl(this.tempDir)));
+		}
+	}
+
+	@Test
+	void testConcurrentCrawlWithRejectingExecutor() throws IOException, InterruptedException {
+		createTestTree(this.tempDir);
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		executor.shutdown();
+
+		try (final var crawler = new ConcurrentDirectoryCrawler(executor, 2)) {
+			// must fail instead of waiting forever for the rejected listing
+			assertThrows(RejectedExecutionException.class, () -> crawler.crawl(this.tempDir));
+		}
+	}
+
+	@Test
+	void testConcurrentCrawlWithExecutorRejectingSubdirectories() throws IOException, InterruptedException {
+		createTestTree(this.tempDir);
+		// the only thread is busy listing the root when the subdirectories are
+		// submitted, and there is no queue to hold them
+		final ExecutorService executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new SynchronousQueue<>());
+
+		try (final var crawler = new ConcurrentDirectoryCrawler(executor, 2)) {
+			assertThrows(RejectedExecutionException.class, () -> crawler.crawl(this.tempDir));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void testSnapshotWalk() throws IOException {
+		createTestTree(this.tempDir);
+		final var expected = describe(new FsGroupingNode(this.tempDir));
+
+		final FsSnapshotNode snapshot = new FsSnapshotWalker().walk(this.tempDir);
+		assertEquals(expected, describe(snapshot));
+
+		final var file = (FsSnapshotNode) snapshot.getChildren().orElseThrow().stream()
+				.filter(node -> node.getPath().endsWith("x.txt")).findAny().orElseThrow();
+		assertEquals(5, file.getSize());
+		assertFalse(file.isDirectory());
+		assertEquals(4, snapshot.getChildrenCount());
+	}
+
+	@Test
+	void testIndexRoundTrip() throws IOException {
+		createTestTree(this.tempDir.resolve("tree"));
+		final FsSnapshotNode snapshot = new FsSnapshotWalker().walk(this.tempDir.resolve("tree"));
+		final Path indexFile = this.tempDir.resolve("index.bin");
+		FsSnapshotIndex.write(snapshot, indexFile, null);
+
+		final FsSnapshotIndex index = FsSnapshotIndex.open(indexFile);
+		assertEquals(14, index.getNodeCount());
+		assertEquals(this.tempDir.resolve("tree"), index.getPath(0));
+		assertFalse(index.hasHashes());
+		assertEquals(describe(snapshot), describe(index.toTree(null)));
+	}
+
+	@Test
+	void testIndexRoundTripWithHashes() throws IOException {
+		createTestTree(this.tempDir.resolve("tree"));
+		final FsSnapshotNode snapshot = new FsSnapshotWalker().walk(this.tempDir.resolve("tree"));
+		final Path indexFile = this.tempDir.resolve("index.bin");
+		final Hasher<FsGroupingNode> writingHasher = createHasher();
+		FsSnapshotIndex.write(snapshot, indexFile, writingHasher);
+
+		// new predicate instances, as after a restart
+		final Hasher<FsGroupingNode> readingHasher = createHasher();
+		final FsSnapshotIndex index = FsSnapshotIndex.open(indexFile);
+		assertTrue(index.hasHashes());
+		final FsSnapshotNode reloaded = index.toTree(readingHasher);
+
+		final Hasher<FsGroupingNode> freshHasher = createHasher();
+		final List<FsGroupingNode> nodes = TreeStreams.depthFirst((FsGroupingNode) snapshot, false).toList();
+		final List<FsGroupingNode> reloadedNodes = TreeStreams.depthFirst((FsGroupingNode) reloaded, false).toList();
+		assertEquals(nodes.size(), reloadedNodes.size());
+		for (int i = 0; i < nodes.size(); i++) {
+			final int hash = writingHasher.getHash(nodes.get(i));
+			assertEquals(hash, readingHasher.getHash(reloadedNodes.get(i)));
+			// the reloaded hashes must match hashes calculated for freshly scanned nodes
+			assertEquals(hash, freshHasher.getHash(reloadedNodes.get(i)));
+		}
+		final FsSnapshotNode rescanned = new FsSnapshotWalker().walk(this.tempDir.resolve("tree"));
+		assertEquals(readingHasher.getHash(reloaded), readingHasher.getHash(rescanned));
+	}
+
+	@Test
+	void testFilenameSuffixMatcherSubclass() throws IOException {
+		createTestTree(this.tempDir);
+		// matches the path, hence must not share the file name of the other matcher
+		final Predicate<FsGroupingNode> firstText = new FilenameSuffixMatcher("ab/1.txt") {
+			@Override
+			protected String getString(final FsGroupingNode value) {
+				return value.getPath().toString().replace(value.getPath().getFileSystem().getSeparator(), "/");
+			}
+		};
+		final Predicate<FsGroupingNode> text = new FilenameSuffixMatcher(".txt");
+		final var grouper = new Grouper<>(List.of(text, firstText));
+		final var reversedGrouper = new Grouper<>(List.of(firstText, text));
+		final var directory = new FsGroupingNode(this.tempDir.resolve("a/ab"));
+
+		assertEquals(List.of(List.of("1.txt", "2.txt")), getGroupedNames(grouper, directory));
+		assertEquals(List.of(List.of("1.txt"), List.of("2.txt")), getGroupedNames(reversedGrouper, directory));
+	}
+
+	private static List<List<String>> getGroupedNames(final Grouper<FsGroupingNode> grouper,
+			final FsGroupingNode directory) {
+		return grouper.getGroups(directory).orElseThrow().stream()
+				.map(group -> group.getNodes().stream().map(node -> node.getPath().getFileName().toString())
+						.sorted().toList())
+				.toList();
+	}
+
+	private static Hasher<FsGroupingNode> createHasher() {
+		final Predicate<FsGroupingNode> text = new FilenameSuffixMatcher(".txt");
+		final Predicate<FsGroupingNode> image = new FilenameSuffixMatcher(".png", ".jpg");
+		final Predicate<FsGroupingNode> directory = node -> node.getChildren().isPresent();
+		final Predicate<FsGroupingNode> other = node -> true;
+		return new GroupPredicateHasher<>(new Grouper<>(List.of(text, image, directory, other)),
+				Map.of(text, HashApproach.EXACT_COUNT, image, HashApproach.DIFFERENCIATE_NONE_ONE_MULTIPLE));
+	}
+
+	/**
+	 * Creates a few nested directories with files in them.
+	 */
+	static void createTestTree(final Path root) throws IOException {
+		for (final String dir : List.of("a", "a/aa", "a/ab", "b", "b/ba", "b/ba/baa", "c")) {
+			Files.createDirectories(root.resolve(dir));
+		}
+		for (final String file : List.of("x.txt", "a/y.png", "a/aa/z.zip", "a/ab/1.txt", "a/ab/2.txt",
+				"b/ba/baa/deep.jpg")) {
+			Files.writeString(root.resolve(file), file);
+		}
+	}
+
+	/**
+	 * Creates a sorted string representation of the tree below the given node, to
+	 * compare trees regardless of the order their children were listed in.
+	 */
+	static String describe(final FsGroupingNode node) {
+		final var builder = new StringBuilder();
+		describe(node, 0, builder);
+		return builder.toString();
+	}
+
+	private static void describe(final FsGroupingNode node, final int depth, final StringBuilder builder) {
+		builder.append(" ".repeat(depth)).append(node.getPath().getFileName());
+		final Optional<List<FsGroupingNode>> children = node.getChildren();
+		builder.append(children.isPresent() ? "/\n" : "\n");
+		children.ifPresent(list -> list.stream()
+				.sorted((a, b) -> a.getPath().compareTo(b.getPath()))
+				.forEach(child -> describe(child, depth + 1, builder)));
+	}
+}
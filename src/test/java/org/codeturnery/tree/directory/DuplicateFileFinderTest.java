@@ -0,0 +1,116 @@
+package org.codeturnery.tree.directory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.codeturnery.tree.directory.DuplicateFileFinder.Tier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings({ "null", "javadoc" })
+class DuplicateFileFinderTest {
+	private static final int SAMPLE_SIZE = 4;
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testUniqueSizesAreNotRead() throws IOException, NoSuchAlgorithmException {
+		write("a", "1");
+		write("b", "22");
+		write("c", "333");
+
+		final DuplicateFileReport report = find();
+		assertEquals(List.of(), report.getDuplicates());
+		assertEquals(3, report.getCandidateCount(Tier.SIZE));
+		assertEquals(0, report.getCandidateCount(Tier.SAMPLE_CRC));
+		assertEquals(0, report.getTotalBytesRead());
+	}
+
+	@Test
+	void testDifferentSamplesAreNotDigested() throws IOException, NoSuchAlgorithmException {
+		// same size, different start
+		write("a", "abcdefghij");
+		write("b", "Xbcdefghij");
+		// same size, smaller than two samples, different end
+		write("c", "123456");
+		write("d", "12345X");
+
+		final DuplicateFileReport report = find();
+		assertEquals(List.of(), report.getDuplicates());
+		assertEquals(4, report.getCandidateCount(Tier.SAMPLE_CRC));
+		// both samples of the 10 byte files, but each byte of the 6 byte files once
+		assertEquals(2 * 8 + 2 * 6, report.getBytesRead(Tier.SAMPLE_CRC));
+		assertEquals(0, report.getCandidateCount(Tier.FULL_DIGEST));
+		assertEquals(0, report.getBytesRead(Tier.FULL_DIGEST));
+	}
+
+	@Test
+	void testSameSamplesAreDigested() throws IOException, NoSuchAlgorithmException {
+		// differing in the middle only
+		write("a", "abcd-middle-wxyz");
+		write("b", "abcd-MIDDLE-wxyz");
+		// identical
+		write("c", "identical content");
+		write("d", "identical content");
+
+		final DuplicateFileReport report = find();
+		assertEquals(Set.of(Set.of(path("c"), path("d"))), toPathSets(report));
+		assertEquals(4, report.getCandidateCount(Tier.SAMPLE_CRC));
+		assertEquals(4 * 8, report.getBytesRead(Tier.SAMPLE_CRC));
+		assertEquals(4, report.getCandidateCount(Tier.FULL_DIGEST));
+		assertEquals(2 * 16 + 2 * 17, report.getBytesRead(Tier.FULL_DIGEST));
+		assertEquals(4 * 8 + 2 * 16 + 2 * 17, report.getTotalBytesRead());
+	}
+
+	@Test
+	void testEmptyFilesAreDuplicates() throws IOException, NoSuchAlgorithmException {
+		write("a", "");
+		write("b", "");
+		write("c", "content");
+
+		final DuplicateFileReport report = find();
+		assertEquals(Set.of(Set.of(path("a"), path("b"))), toPathSets(report));
+		assertEquals(0, report.getTotalBytesRead());
+	}
+
+	@Test
+	void testRepeatedSearch() throws IOException, NoSuchAlgorithmException {
+		write("dir/a", "identical content");
+		write("dir/b", "identical content");
+		write("c", "identical content");
+		write("d", "other content 123");
+
+		final var finder = new DuplicateFileFinder(SAMPLE_SIZE, "SHA-256", 5);
+		final var expected = Set.of(Set.of(path("dir/a"), path("dir/b"), path("c")));
+		assertEquals(expected, toPathSets(finder.find(new FsSnapshotWalker().walk(this.tempDir))));
+		// the digest instance is reused
+		assertEquals(expected, toPathSets(finder.find(new FsGroupingNode(this.tempDir))));
+	}
+
+	private DuplicateFileReport find() throws NoSuchAlgorithmException {
+		return new DuplicateFileFinder(SAMPLE_SIZE, "SHA-256", 3).find(new FsSnapshotWalker().walk(this.tempDir));
+	}
+
+	private void write(final String file, final String content) throws IOException {
+		Files.createDirectories(path(file).getParent());
+		Files.writeString(path(file), content);
+	}
+
+	private Path path(final String file) {
+		return this.tempDir.resolve(file);
+	}
+
+	private static Set<Set<Path>> toPathSets(final DuplicateFileReport report) {
+		return report.getDuplicates().stream()
+				.map(files -> files.stream().map(FsGroupingNode::getPath).collect(Collectors.toSet()))
+				.collect(Collectors.toSet());
+	}
+}
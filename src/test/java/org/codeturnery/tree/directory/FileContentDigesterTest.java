@@ -0,0 +1,101 @@
+package org.codeturnery.tree.directory;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings({ "null", "javadoc" })
+class FileContentDigesterTest {
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testDigest() throws IOException, NoSuchAlgorithmException, InterruptedException {
+		final Path file = this.tempDir.resolve("file.txt");
+		Files.writeString(file, "some content longer than the buffer");
+
+		try (final var digester = new FileContentDigester("SHA-256", 1, 4)) {
+			final byte[] digest = digester.getDigest(new FsGroupingNode(file));
+			assertArrayEquals(sha256(Files.readAllBytes(file)), digest);
+			assertEquals(ByteBuffer.wrap(digest).getInt(), digester.applyAsInt(new FsGroupingNode(file)));
+			assertEquals(0, digester.applyAsInt(new FsGroupingNode(this.tempDir)));
+		}
+	}
+
+	@Test
+	void testCachingAndInvalidation() throws IOException, NoSuchAlgorithmException, InterruptedException {
+		final Path file = this.tempDir.resolve("file.txt");
+		Files.writeString(file, "before");
+
+		try (final var digester = new FileContentDigester("SHA-256", 1, 16)) {
+			final var node = new FsGroupingNode(file);
+			final byte[] digest = digester.getDigest(node);
+			Files.writeString(file, "after");
+			assertArrayEquals(digest, digester.getDigest(node));
+
+			digester.invalidate(node);
+			assertArrayEquals(sha256("after".getBytes(StandardCharsets.UTF_8)), digester.getDigest(node));
+		}
+	}
+
+	@Test
+	void testFailedReadDoesNotAffectNextDigest() throws IOException, NoSuchAlgorithmException, InterruptedException {
+		final Path file = this.tempDir.resolve("file.txt");
+		Files.writeString(file, "content");
+
+		try (final var digester = new FileContentDigester("SHA-256", 1, 16)) {
+			// reading a directory as file fails
+			assertThrows(UncheckedIOException.class, () -> digester.getDigest(new FsSnapshotNode(this.tempDir, null,
+					ForkJoinDirectoryScanner.readAttributes(file))));
+			assertArrayEquals(sha256(Files.readAllBytes(file)), digester.getDigest(new FsGroupingNode(file)));
+		}
+	}
+
+	@Test
+	void testDigestAll() throws IOException, NoSuchAlgorithmException, InterruptedException {
+		// more files than may be pending at the same time
+		for (int i = 0; i < 100; i++) {
+			final Path directory = this.tempDir.resolve("dir" + i % 7);
+			Files.createDirectories(directory);
+			Files.writeString(directory.resolve(i + ".txt"), "file " + i);
+		}
+
+		try (final var digester = new FileContentDigester("SHA-256", 2, 8)) {
+			digester.digestAll(new FsGroupingNode(this.tempDir));
+			for (int i = 0; i < 100; i++) {
+				final Path file = this.tempDir.resolve("dir" + i % 7).resolve(i + ".txt");
+				final byte[] expected = sha256(Files.readAllBytes(file));
+				// changed files keep their digest until invalidated, i.e. all were cached
+				Files.writeString(file, "changed");
+				assertArrayEquals(expected, digester.getDigest(new FsGroupingNode(file)));
+			}
+		}
+	}
+
+	@Test
+	void testDigestAllFailure() throws IOException, NoSuchAlgorithmException {
+		Files.writeString(this.tempDir.resolve("file.txt"), "content");
+		final var missingFile = new FsSnapshotNode(this.tempDir.resolve("missing.txt"), null,
+				ForkJoinDirectoryScanner.readAttributes(this.tempDir.resolve("file.txt")));
+
+		try (final var digester = new FileContentDigester("SHA-256", 2, 8)) {
+			assertThrows(UncheckedIOException.class, () -> digester.digestAll(missingFile));
+		}
+	}
+
+	private static byte[] sha256(final byte[] content) throws NoSuchAlgorithmException {
+		return MessageDigest.getInstance("SHA-256").digest(content);
+	}
+}
@@ -0,0 +1,124 @@
+package org.codeturnery.tree.directory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.codeturnery.tree.ChildableNode;
+import org.codeturnery.tree.GroupPredicateHasher;
+import org.codeturnery.tree.Grouper;
+import org.codeturnery.tree.HashApproach;
+import org.codeturnery.tree.Merger;
+import org.codeturnery.tree.TreeStreams;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings({ "null", "javadoc" })
+class SnapshotWatcherTest {
+	@TempDir
+	Path tempDir;
+
+	/**
+	 * Records the nodes whose hash is calculated instead of taken from the cache.
+	 */
+	static class RecordingHasher extends GroupPredicateHasher<FsGroupingNode> {
+		final Set<Path> hashedPaths = new HashSet<>();
+
+		RecordingHasher(final Grouper<FsGroupingNode> grouper,
+				final Map<Predicate<FsGroupingNode>, HashApproach> hashApproaches) {
+			super(grouper, hashApproaches);
+		}
+
+		@Override
+		protected int calculateHashFromGroupHashes(final ChildableNode<FsGroupingNode> node) {
+			this.hashedPaths.add(((FsGroupingNode) node).getPath());
+			return super.calculateHashFromGroupHashes(node);
+		}
+	}
+
+	@Test
+	void testChangeInvalidatesAncestorsOnly() throws IOException, InterruptedException {
+		DirectoryScannerTest.createTestTree(this.tempDir);
+		final FsSnapshotNode root = new FsSnapshotWalker().walk(this.tempDir);
+		final Predicate<FsGroupingNode> text = new FilenameSuffixMatcher(".txt");
+		final Predicate<FsGroupingNode> directory = node -> node.getChildren().isPresent();
+		final Predicate<FsGroupingNode> other = node -> true;
+		final var hasher = new RecordingHasher(new Grouper<>(List.of(text, directory, other)),
+				Map.of(text, HashApproach.EXACT_COUNT, directory, HashApproach.EXACT_COUNT));
+
+		final Map<Path, Integer> initialHashes = hashAll(root, hasher);
+		hasher.hashedPaths.clear();
+
+		try (final var watcher = new SnapshotWatcher(root, hasher)) {
+			Files.writeString(this.tempDir.resolve("a/ab/3.txt"), "3");
+			final Set<FsSnapshotNode> invalidatedNodes = watcher.poll(10, TimeUnit.SECONDS);
+
+			final Set<Path> changedPaths = Set.of(this.tempDir, this.tempDir.resolve("a"),
+					this.tempDir.resolve("a/ab"));
+			assertEquals(changedPaths,
+					invalidatedNodes.stream().map(FsGroupingNode::getPath).collect(Collectors.toSet()));
+
+			final Map<Path, Integer> updatedHashes = hashAll(root, hasher);
+			final var rehashedPaths = new HashSet<>(changedPaths);
+			rehashedPaths.add(this.tempDir.resolve("a/ab/3.txt"));
+			assertEquals(rehashedPaths, hasher.hashedPaths);
+			assertNotEquals(initialHashes.get(this.tempDir.resolve("a/ab")),
+					updatedHashes.get(this.tempDir.resolve("a/ab")));
+			for (final Map.Entry<Path, Integer> entry : initialHashes.entrySet()) {
+				if (!changedPaths.contains(entry.getKey())) {
+					assertEquals(entry.getValue(), updatedHashes.get(entry.getKey()), entry.getKey().toString());
+				}
+			}
+		}
+	}
+
+	@Test
+	void testMergingAfterChangeOnlyRegroupsAndRehashesChangedNodes() throws IOException, InterruptedException {
+		DirectoryScannerTest.createTestTree(this.tempDir);
+		final FsSnapshotNode root = new FsSnapshotWalker().walk(this.tempDir);
+		final Predicate<FsGroupingNode> text = new FilenameSuffixMatcher(".txt");
+		final Predicate<FsGroupingNode> directory = node -> node.getChildren().isPresent();
+		final Predicate<FsGroupingNode> other = node -> true;
+		final var grouper = new Grouper<>(List.of(text, directory, other));
+		final var hasher = new RecordingHasher(grouper,
+				Map.of(text, HashApproach.EXACT_COUNT, directory, HashApproach.EXACT_COUNT));
+		final var merger = new Merger<>(hasher);
+		final long initialMergeCount = merger.separateAndCreateMerges(root.getChildren().orElseThrow()).count();
+		final long nodeCount = TreeStreams.depthFirst((FsGroupingNode) root, false).count();
+		// all nodes but the root were grouped and hashed once
+		assertEquals(nodeCount - 1, grouper.getCache().getMissCount());
+		assertEquals(nodeCount - 1, hasher.hashedPaths.size());
+		hasher.hashedPaths.clear();
+
+		try (final var watcher = new SnapshotWatcher(root, hasher)) {
+			Files.writeString(this.tempDir.resolve("a/ab/3.txt"), "3");
+			watcher.poll(10, TimeUnit.SECONDS);
+
+			// all merges are created again, but from cached groups and hashes
+			assertEquals(initialMergeCount, merger.separateAndCreateMerges(root.getChildren().orElseThrow()).count());
+			// only the changed directory, its ancestors below the merged root and the new file
+			final Set<Path> regroupedPaths = Set.of(this.tempDir.resolve("a"), this.tempDir.resolve("a/ab"),
+					this.tempDir.resolve("a/ab/3.txt"));
+			assertEquals(regroupedPaths, hasher.hashedPaths);
+			assertEquals(nodeCount - 1 + regroupedPaths.size(), grouper.getCache().getMissCount());
+		}
+	}
+
+	private static Map<Path, Integer> hashAll(final FsSnapshotNode root, final RecordingHasher hasher) {
+		final var hashes = new HashMap<Path, Integer>();
+		TreeStreams.depthFirst((FsGroupingNode) root, false)
+				.forEach(node -> hashes.put(node.getPath(), Integer.valueOf(hasher.getHash(node))));
+		return hashes;
+	}
+}
@@ -0,0 +1,206 @@
+package org.codeturnery.tree.directory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.codeturnery.tree.GroupPredicateHasher;
+import org.codeturnery.tree.Grouper;
+import org.codeturnery.tree.HashApproach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings({ "null", "javadoc" })
+class ZipArchiveNodeTest {
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testEntries() throws IOException {
+		final Path archivePath = this.tempDir.resolve("archive.zip");
+		writeArchive(archivePath, Map.of("top.txt", "top", "dir/", "", "dir/sub/nested.txt", "nested content"));
+		final var archive = new ZipArchiveNode(archivePath);
+
+		assertFalse(archive.isLeaf());
+		final List<FsGroupingNode> entries = archive.getChildren().orElseThrow();
+		assertEquals(List.of(archivePath.resolve("dir"), archivePath.resolve("top.txt")), sortedPaths(entries));
+		assertEquals(2, archive.getChildrenCount());
+		// the entries are read once
+		assertSame(entries, archive.getChildren().orElseThrow());
+
+		final ZipEntryNode top = find(archive, archivePath.resolve("top.txt"));
+		assertTrue(top.isLeaf());
+		assertEquals(3, top.getSize());
+		assertSame(archive, top.getParent());
+
+		// the directory of the nested file is not listed in the archive
+		final ZipEntryNode sub = find(archive, archivePath.resolve("dir/sub"));
+		assertTrue(sub.isDirectory());
+		assertSame(find(archive, archivePath.resolve("dir")), sub.getParent());
+		final ZipEntryNode nested = (ZipEntryNode) sub.getChildren().orElseThrow().get(0);
+		assertEquals(archivePath.resolve("dir/sub/nested.txt"), nested.getPath());
+		assertEquals("nested content".length(), nested.getSize());
+		assertEquals(crc("nested content"), nested.getCrc());
+	}
+
+	@Test
+	void testConcurrentFirstAccess() throws IOException, InterruptedException, ExecutionException {
+		final Path archivePath = this.tempDir.resolve("archive.zip");
+		final var entries = new HashMap<String, String>();
+		for (int index = 0; index < 100; index++) {
+			entries.put("dir" + index % 10 + "/file" + index + ".txt", "content " + index);
+		}
+		writeArchive(archivePath, entries);
+
+		final int threadCount = 8;
+		final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			for (int attempt = 0; attempt < 20; attempt++) {
+				final var archive = new ZipArchiveNode(archivePath);
+				final var barrier = new CyclicBarrier(threadCount);
+				final var results = new ArrayList<Future<List<FsGroupingNode>>>();
+				for (int thread = 0; thread < threadCount; thread++) {
+					results.add(executor.submit(() -> {
+						barrier.await();
+						return archive.getChildren().orElseThrow();
+					}));
+				}
+				// all threads get the same nodes, as the central directory is read once
+				for (final Future<List<FsGroupingNode>> result : results) {
+					assertSame(archive.getChildren().orElseThrow(), result.get());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void testEmptyArchive() throws IOException {
+		final Path archivePath = this.tempDir.resolve("empty.zip");
+		writeArchive(archivePath, Map.of());
+		final var archive = new ZipArchiveNode(archivePath);
+
+		assertFalse(archive.isLeaf());
+		assertEquals(List.of(), archive.getChildren().orElseThrow());
+	}
+
+	@Test
+	void testInvalidArchiveIsLeaf() throws IOException {
+		final Path textPath = this.tempDir.resolve("text.zip");
+		Files.writeString(textPath, "not an archive");
+		final Path truncatedPath = this.tempDir.resolve("truncated.zip");
+		writeArchive(truncatedPath, Map.of("file.txt", "content"));
+		final byte[] bytes = Files.readAllBytes(truncatedPath);
+		// keeps the end of central directory record, but cuts the central directory
+		final byte[] truncatedBytes = new byte[bytes.length - 30];
+		System.arraycopy(bytes, 30, truncatedBytes, 0, truncatedBytes.length);
+		Files.write(truncatedPath, truncatedBytes);
+
+		for (final Path path : List.of(textPath, truncatedPath, this.tempDir.resolve("missing.zip"))) {
+			final var archive = new ZipArchiveNode(path);
+			assertTrue(archive.isLeaf(), path.toString());
+			assertFalse(archive.getChildren().isPresent(), path.toString());
+			assertEquals(0, archive.getChildrenCount());
+			archive.forEachChild(child -> {
+				throw new AssertionError(child.getPath().toString());
+			});
+		}
+	}
+
+	@Test
+	void testArchivesInDirectories() throws IOException {
+		writeArchive(this.tempDir.resolve("a.zip"), Map.of("file.txt", "content"));
+		writeArchive(this.tempDir.resolve("dir/b.zip"), Map.of("file.txt", "content"));
+		Files.writeString(this.tempDir.resolve("c.zip"), "not an archive");
+		final var root = new ArchiveAwareFsGroupingNode(this.tempDir);
+
+		final ZipArchiveNode archive = (ZipArchiveNode) find(root.getChildren().orElseThrow(),
+				this.tempDir.resolve("a.zip"));
+		final List<FsGroupingNode> entries = archive.getChildren().orElseThrow();
+		// listing the directory again keeps the archive node and its entries
+		assertSame(archive, find(root.getChildren().orElseThrow(), this.tempDir.resolve("a.zip")));
+		final var forEachChildren = new ArrayList<FsGroupingNode>();
+		root.forEachChild(forEachChildren::add);
+		assertSame(archive, find(forEachChildren, this.tempDir.resolve("a.zip")));
+		assertSame(entries, archive.getChildren().orElseThrow());
+
+		// hashing succeeds despite the invalid archive, which is treated like a file
+		final Predicate<FsGroupingNode> leaf = FsGroupingNode::isLeaf;
+		final Predicate<FsGroupingNode> other = node -> true;
+		final var hasher = new GroupPredicateHasher<>(new Grouper<>(List.of(leaf, other)),
+				Map.of(leaf, HashApproach.EXACT_COUNT, other, HashApproach.EXACT_COUNT));
+		final FsGroupingNode invalid = find(root.getChildren().orElseThrow(), this.tempDir.resolve("c.zip"));
+		assertTrue(invalid.isLeaf());
+		assertEquals(hasher.getHash(find(entries, this.tempDir.resolve("a.zip/file.txt"))), hasher.getHash(invalid));
+		final ZipArchiveNode nestedArchive = (ZipArchiveNode) find(
+				find(root.getChildren().orElseThrow(), this.tempDir.resolve("dir")).getChildren().orElseThrow(),
+				this.tempDir.resolve("dir/b.zip"));
+		assertEquals(hasher.getHash(archive), hasher.getHash(nestedArchive));
+		hasher.getHash(root);
+
+		// a removed archive is no longer listed
+		Files.delete(this.tempDir.resolve("a.zip"));
+		assertEquals(List.of(this.tempDir.resolve("c.zip"), this.tempDir.resolve("dir")),
+				sortedPaths(root.getChildren().orElseThrow()));
+	}
+
+	private static void writeArchive(final Path path, final Map<String, String> entries) throws IOException {
+		Files.createDirectories(path.getParent());
+		try (OutputStream output = Files.newOutputStream(path); var zipOutput = new ZipOutputStream(output)) {
+			for (final Map.Entry<String, String> entry : entries.entrySet()) {
+				zipOutput.putNextEntry(new ZipEntry(entry.getKey()));
+				zipOutput.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+				zipOutput.closeEntry();
+			}
+		}
+	}
+
+	private static long crc(final String content) {
+		final var crc = new CRC32();
+		crc.update(content.getBytes(StandardCharsets.UTF_8));
+		return crc.getValue();
+	}
+
+	private static ZipEntryNode find(final FsGroupingNode root, final Path path) {
+		final var pending = new ArrayList<FsGroupingNode>();
+		pending.add(root);
+		while (!pending.isEmpty()) {
+			final FsGroupingNode node = pending.remove(pending.size() - 1);
+			if (node.getPath().equals(path)) {
+				return (ZipEntryNode) node;
+			}
+			node.forEachChild(pending::add);
+		}
+		throw new AssertionError("Not found: " + path);
+	}
+
+	private static FsGroupingNode find(final List<FsGroupingNode> nodes, final Path path) {
+		return nodes.stream().filter(node -> node.getPath().equals(path)).findAny()
+				.orElseThrow(() -> new AssertionError("Not found: " + path));
+	}
+
+	private static List<Path> sortedPaths(final List<FsGroupingNode> nodes) {
+		return nodes.stream().map(FsGroupingNode::getPath).sorted().toList();
+	}
+}